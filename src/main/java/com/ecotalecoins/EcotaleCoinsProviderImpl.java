@@ -2,9 +2,12 @@ package com.ecotalecoins;
 
 import com.ecotale.api.CoinOperationResult;
 import com.ecotale.api.PhysicalCoinsProvider;
+import com.ecotalecoins.currency.AutoBank;
 import com.ecotalecoins.currency.BankManager;
 import com.ecotalecoins.currency.CoinDropper;
 import com.ecotalecoins.currency.CoinManager;
+import com.ecotalecoins.currency.CoinScan;
+import com.ecotalecoins.currency.ContainerPolicy;
 import com.ecotalecoins.currency.InventorySpaceCalculator;
 import com.ecotalecoins.currency.InventorySpaceCalculator.SpaceResult;
 import com.hypixel.hytale.component.CommandBuffer;
@@ -12,10 +15,12 @@ import com.hypixel.hytale.component.ComponentAccessor;
 import com.hypixel.hytale.component.Ref;
 import com.hypixel.hytale.math.vector.Vector3d;
 import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 
 import javax.annotation.Nonnull;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Implementation of PhysicalCoinsProvider for EcotaleCoins addon.
@@ -84,12 +89,13 @@ public class EcotaleCoinsProviderImpl implements PhysicalCoinsProvider {
             return amount == 0 ? CoinOperationResult.success(0) : CoinOperationResult.invalidAmount(amount);
         }
         
-        long balance = CoinManager.countCoins(player);
+        CoinScan scan = CoinScan.of(player);
+        long balance = ContainerPolicy.get().takeValue(scan);
         if (balance < amount) {
             return CoinOperationResult.insufficientFunds(amount, balance);
         }
         
-        boolean success = CoinManager.takeCoins(player, amount);
+        boolean success = CoinManager.takeCoins(player, scan, amount);
         return success ? CoinOperationResult.success(amount)
                        : CoinOperationResult.insufficientFunds(amount, balance);
     }
@@ -113,6 +119,13 @@ public class EcotaleCoinsProviderImpl implements PhysicalCoinsProvider {
         @Nonnull CommandBuffer<EntityStore> commandBuffer,
         long amount
     ) {
+        // Auto-bank: a player's reward for killing a non-player goes straight to their bank, no coins spawned
+        if (AutoBank.isEnabled() && amount > 0) {
+            PlayerRef killer = AutoBank.findKiller(entityRef, store);
+            if (killer != null && AutoBank.credit(killer, amount)) {
+                return;
+            }
+        }
         CoinDropper.dropCoinsAtEntity(entityRef, store, commandBuffer, amount);
     }
     
@@ -143,9 +156,7 @@ public class EcotaleCoinsProviderImpl implements PhysicalCoinsProvider {
             return CoinOperationResult.insufficientFunds(amount, balance);
         }
         
-        boolean success = BankManager.deposit(player, playerUuid, amount);
-        return success ? CoinOperationResult.success(amount)
-                       : CoinOperationResult.insufficientFunds(amount, balance);
+        return queued(BankManager.deposit(player, playerUuid, amount), amount, balance);
     }
     
     @Override
@@ -169,9 +180,19 @@ public class EcotaleCoinsProviderImpl implements PhysicalCoinsProvider {
             return spaceCheck;
         }
         
-        boolean success = BankManager.withdraw(player, playerUuid, amount);
-        return success ? CoinOperationResult.success(amount)
-                       : CoinOperationResult.insufficientFunds(amount, bankBalance);
+        return queued(BankManager.withdraw(player, playerUuid, amount), amount, bankBalance);
+    }
+    
+    /**
+     * Result of a bank transfer handed to the player's mailbox. The caller isn't
+     * blocked on the bank: the checks above catch the usual failures, and a
+     * transfer that fails later is rolled back by the transaction itself.
+     */
+    private static CoinOperationResult queued(@Nonnull CompletableFuture<Boolean> transfer, long amount, long available) {
+        if (transfer.isDone() && (transfer.isCompletedExceptionally() || !transfer.join())) {
+            return CoinOperationResult.insufficientFunds(amount, available);
+        }
+        return CoinOperationResult.success(amount);
     }
     
     @Override
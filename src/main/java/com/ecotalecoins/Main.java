@@ -3,14 +3,33 @@ package com.ecotalecoins;
 import com.ecotale.api.EcotaleAPI;
 import com.ecotalecoins.commands.BankCommand;
 import com.ecotalecoins.config.CoinConfig;
+import com.ecotalecoins.currency.AutoBank;
+import com.ecotalecoins.currency.BalanceCache;
 import com.ecotalecoins.currency.CoinAssetManager;
+import com.ecotalecoins.currency.CoinDespawner;
+import com.ecotalecoins.currency.CoinLedger;
+import com.ecotalecoins.currency.CoinType;
+import com.ecotalecoins.currency.DenominationTable;
+import com.ecotalecoins.currency.GroundCoinIndex;
+import com.ecotalecoins.transaction.BankGateway;
+import com.ecotalecoins.transaction.BanknoteRegistry;
+import com.ecotalecoins.transaction.PlayerMailbox;
+import com.ecotalecoins.transaction.SecureTransaction;
+import com.ecotalecoins.transaction.TransactionId;
+import com.ecotalecoins.transaction.TransactionJournal;
 import com.hypixel.hytale.server.core.HytaleServer;
 import com.hypixel.hytale.server.core.ShutdownReason;
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.event.events.entity.LivingEntityInventoryChangeEvent;
+import com.hypixel.hytale.server.core.event.events.player.PlayerDisconnectEvent;
 import com.hypixel.hytale.server.core.plugin.JavaPlugin;
 import com.hypixel.hytale.server.core.plugin.JavaPluginInit;
+import com.hypixel.hytale.server.core.universe.world.events.RemoveWorldEvent;
 import org.checkerframework.checker.nullness.compatqual.NonNullDecl;
 
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 /**
@@ -57,6 +76,36 @@ public class Main extends JavaPlugin {
             return;
         }
         
+        CoinLedger.setVerify(this.coinConfig.debugVerifyCoinLedger());
+        BalanceCache.configure(this.coinConfig.getBankBalanceCacheTtlMs());
+        
+        TransactionId.setNodeId(this.coinConfig.getTransactionNodeId());
+        SecureTransaction.configureLog(this.coinConfig.getTransactionLogCapacity(),
+            TimeUnit.MINUTES.toMillis(this.coinConfig.getTransactionLogMaxAgeMinutes()));
+        
+        // Open the transaction journal and settle anything a crash left unfinished
+        TransactionJournal.FsyncPolicy fsync = TransactionJournal.FsyncPolicy.parse(
+            this.coinConfig.getJournalFsync(), TransactionJournal.FsyncPolicy.GROUP);
+        try {
+            SecureTransaction.openJournal(this.getDataDirectory().resolve("transactions.journal"),
+                fsync, this.coinConfig.getJournalGroupCommitMs());
+        } catch (IOException e) {
+            this.getLogger().at(Level.SEVERE).withCause(e).log("[EcotaleCoins] Failed to open transaction journal - transactions will not survive a crash");
+        }
+        try {
+            BankGateway.open(this.getDataDirectory().resolve("bank-buffer.journal"),
+                fsync, this.coinConfig.getBankFlushIntervalMs());
+        } catch (IOException e) {
+            this.getLogger().at(Level.SEVERE).withCause(e).log("[EcotaleCoins] Failed to open bank buffer - bank calls will not be batched");
+        }
+        try {
+            SecureTransaction.openBanknotes(this.getDataDirectory().resolve("banknotes.dat"),
+                this.getDataDirectory().resolve("banknote.key"));
+        } catch (IOException e) {
+            this.getLogger().at(Level.SEVERE).withCause(e).log("[EcotaleCoins] Failed to open banknote registry - banknotes can't be issued or redeemed");
+        }
+        SecureTransaction.recoverPendingTransactions();
+        
         // Log enabled coins
         this.getLogger().at(Level.INFO).log("[EcotaleCoins] Enabled coins:");
         this.coinConfig.getEnabledCoinsInOrder().forEach((name, config) -> {
@@ -77,6 +126,22 @@ public class Main extends JavaPlugin {
         // Register commands
         this.getCommandRegistry().registerCommand(new BankCommand());
         
+        // Keep cached coin balances in sync with inventory changes
+        this.getEventRegistry().registerGlobal(LivingEntityInventoryChangeEvent.class, event -> {
+            if (event.getEntity() instanceof Player player) {
+                CoinLedger.invalidate(player);
+            }
+        });
+        this.getEventRegistry().registerGlobal(PlayerDisconnectEvent.class, event -> {
+            CoinLedger.remove(event.getPlayerRef().getUuid());
+            BalanceCache.invalidate(event.getPlayerRef().getUuid());
+            AutoBank.forget(event.getPlayerRef().getUuid());
+        });
+        // Release the world's ground coin index, whether or not despawning is on
+        this.getEventRegistry().registerGlobal(RemoveWorldEvent.class, event -> {
+            GroundCoinIndex.removeWorld(event.getWorld());
+        });
+        
         // First-time setup check
         if (this.coinAssetManager.isFirstTimeSetup()) {
             scheduleFirstTimeRestart();
@@ -86,9 +151,59 @@ public class Main extends JavaPlugin {
         this.getLogger().at(Level.INFO).log("[EcotaleCoins] Physical coins system loaded!");
     }
     
+    @Override
+    protected void start() {
+        super.start();
+        if (this.coinConfig == null) {
+            return;
+        }
+        
+        // Item assets are loaded by now - pick up the coin items' real stack limits
+        DenominationTable.rebuild(this.coinConfig);
+        for (CoinType type : DenominationTable.get().enabledTypes()) {
+            int maxStack = DenominationTable.get().maxStack(type);
+            if (maxStack != DenominationTable.DEFAULT_MAX_STACK) {
+                this.getLogger().at(Level.INFO).log("[EcotaleCoins] " + type.getItemId() + " stacks to " + maxStack);
+            }
+        }
+    }
+    
     @Override
     protected void shutdown() {
         EcotaleAPI.unregisterPhysicalCoinsProvider();
+        if (!PlayerMailbox.shutdown(5_000L)) {
+            this.getLogger().at(Level.WARNING).log("[EcotaleCoins] Bank operations still running at shutdown - check the transaction journal on next start");
+        }
+        AutoBank.shutdown();
+        CoinDespawner.shutdown();
+        BankGateway.close();
+        SecureTransaction.closeBanknotes();
+        SecureTransaction.closeJournal();
+        
+        BankGateway.Stats bank = BankGateway.getStats();
+        if (bank.flushes() > 0) {
+            this.getLogger().at(Level.INFO).log("[EcotaleCoins] Bank buffer: " + bank.operations() + " deposits in " + bank.accounts()
+                + " bank calls over " + bank.flushes() + " flushes, avg " + String.format("%.1f", bank.averageBatch()) + " per call, max "
+                + bank.maxBatch() + "; " + bank.netted() + " withdrawals netted locally");
+        }
+        BalanceCache.Stats balances = BalanceCache.getStats();
+        if (balances.hits() + balances.misses() > 0) {
+            this.getLogger().at(Level.INFO).log("[EcotaleCoins] Bank balance cache: " + balances.hits() + " hits, "
+                + balances.misses() + " misses (" + String.format("%.1f", balances.hitRate() * 100) + "% hit rate)");
+        }
+        if (AutoBank.getCreditCount() > 0) {
+            this.getLogger().at(Level.INFO).log("[EcotaleCoins] Auto-bank: " + AutoBank.getCreditCount() + " rewards paid in with "
+                + AutoBank.getDepositCount() + " deposits");
+        }
+        BanknoteRegistry.Stats notes = SecureTransaction.getBanknoteStats();
+        if (notes != null && notes.issued() > 0) {
+            this.getLogger().at(Level.INFO).log("[EcotaleCoins] Banknotes: " + notes.issued() + " issued, " + notes.redeemed()
+                + " redeemed or voided, " + notes.outstandingValue() + " base units outstanding");
+        }
+        if (CoinDespawner.getDespawnedCount() > 0) {
+            this.getLogger().at(Level.INFO).log("[EcotaleCoins] Despawned " + CoinDespawner.getDespawnedCount()
+                + " coin piles worth " + CoinDespawner.getDespawnedValue() + " base units");
+        }
         this.getLogger().at(Level.INFO).log("[EcotaleCoins] Shutdown complete.");
     }
     
@@ -2,6 +2,7 @@ package com.ecotalecoins.commands;
 
 import com.ecotalecoins.currency.BankManager;
 import com.ecotalecoins.currency.CoinManager;
+import com.ecotalecoins.transaction.PlayerMailbox;
 import com.ecotalecoins.transaction.SecureTransaction;
 import com.ecotale.api.EcotaleAPI;
 import com.hypixel.hytale.component.Ref;
@@ -29,6 +30,8 @@ import java.util.concurrent.CompletableFuture;
  * - /bank                      → Shows balance info
  * - /bank deposit <amount|all> → Deposit coins from inventory to bank
  * - /bank withdraw <amount|all> → Withdraw coins from bank to inventory
+ * - /bank note <amount|all>    → Withdraw as a single banknote
+ * - /bank redeem               → Pay the banknotes in your inventory into the bank
  * 
  * @author Ecotale
  * @since 1.0.0
@@ -41,6 +44,8 @@ public class BankCommand extends AbstractAsyncCommand {
         
         this.addSubCommand(new BankDepositCommand());
         this.addSubCommand(new BankWithdrawCommand());
+        this.addSubCommand(new BankNoteCommand());
+        this.addSubCommand(new BankRedeemCommand());
     }
     
     @NonNullDecl
@@ -127,9 +132,10 @@ public class BankCommand extends AbstractAsyncCommand {
 
             String amountStr = ctx.get(amountArg);
             
-            return CompletableFuture.runAsync(() -> {
+            // Inventory checks run on the world thread; the deposit itself goes through the player's mailbox
+            return CompletableFuture.supplyAsync(() -> {
                 PlayerRef playerRef = store.getComponent(ref, PlayerRef.getComponentType());
-                if (playerRef == null) return;
+                if (playerRef == null) return null;
                 
                 UUID playerUuid = playerRef.getUuid();
                 
@@ -141,13 +147,13 @@ public class BankCommand extends AbstractAsyncCommand {
                         amount = Long.parseLong(amountStr);
                     } catch (NumberFormatException e) {
                         ctx.sendMessage(Message.raw("Invalid amount. Use a number or 'all'").color(Color.RED));
-                        return;
+                        return null;
                     }
                 }
 
                 if (amount <= 0) {
                     ctx.sendMessage(Message.raw("Amount must be positive").color(Color.RED));
-                    return;
+                    return null;
                 }
 
                 long currentPhysical = CoinManager.countCoins(player);
@@ -156,23 +162,24 @@ public class BankCommand extends AbstractAsyncCommand {
                         Message.raw("Not enough coins. You have: ").color(Color.RED),
                         Message.raw(formatLong(currentPhysical)).color(Color.WHITE)
                     ));
-                    return;
+                    return null;
                 }
 
-                SecureTransaction.TransactionResult result = SecureTransaction.executeSecureDeposit(player, playerUuid, amount);
-                
-                if (result.isSuccess()) {
-                    long newBankBalance = BankManager.getBankBalance(playerUuid);
-                    ctx.sendMessage(Message.join(
-                        Message.raw("Deposited ").color(Color.GREEN),
-                        Message.raw(formatLong(amount)).color(new Color(50, 205, 50)).bold(true),
-                        Message.raw(" coins. Bank: ").color(Color.GREEN),
-                        Message.raw(formatLong(newBankBalance)).color(Color.WHITE)
-                    ));
-                } else {
-                    ctx.sendMessage(Message.raw(result.getMessage()).color(Color.RED));
-                }
-            }, world);
+                return SecureTransaction.executeSecureDeposit(player, playerUuid, amount).thenAccept(result -> {
+                    // Completes on a bank thread - read the balance here, reply on the world thread
+                    if (result.isSuccess()) {
+                        long newBankBalance = BankManager.getBankBalance(playerUuid);
+                        reply(world, ctx, Message.join(
+                            Message.raw("Deposited ").color(Color.GREEN),
+                            Message.raw(formatLong(amount)).color(new Color(50, 205, 50)).bold(true),
+                            Message.raw(" coins. Bank: ").color(Color.GREEN),
+                            Message.raw(formatLong(newBankBalance)).color(Color.WHITE)
+                        ));
+                    } else {
+                        reply(world, ctx, Message.raw(result.getMessage()).color(Color.RED));
+                    }
+                });
+            }, world).thenCompose(pending -> pending != null ? pending : CompletableFuture.completedFuture(null));
         }
     }
 
@@ -219,11 +226,12 @@ public class BankCommand extends AbstractAsyncCommand {
 
             String amountStr = ctx.get(amountArg);
             
-            return CompletableFuture.runAsync(() -> {
+            // Bank reads run on a bank thread; the withdrawal itself goes through the player's mailbox
+            return CompletableFuture.supplyAsync(() -> {
                 PlayerRef playerRef = store.getComponent(ref, PlayerRef.getComponentType());
-                if (playerRef == null) return;
-                
-                UUID playerUuid = playerRef.getUuid();
+                return playerRef != null ? playerRef.getUuid() : null;
+            }, world).thenComposeAsync(playerUuid -> {
+                if (playerUuid == null) return CompletableFuture.completedFuture(null);
                 
                 long amount;
                 if (amountStr.equalsIgnoreCase("all")) {
@@ -232,45 +240,195 @@ public class BankCommand extends AbstractAsyncCommand {
                     try {
                         amount = Long.parseLong(amountStr);
                     } catch (NumberFormatException e) {
-                        ctx.sendMessage(Message.raw("Invalid amount. Use a number or 'all'").color(Color.RED));
-                        return;
+                        reply(world, ctx, Message.raw("Invalid amount. Use a number or 'all'").color(Color.RED));
+                        return CompletableFuture.completedFuture(null);
                     }
                 }
 
                 if (amount <= 0) {
-                    ctx.sendMessage(Message.raw("Amount must be positive").color(Color.RED));
-                    return;
+                    reply(world, ctx, Message.raw("Amount must be positive").color(Color.RED));
+                    return CompletableFuture.completedFuture(null);
                 }
 
                 long currentBank = BankManager.getBankBalance(playerUuid);
                 if (currentBank < amount) {
-                    ctx.sendMessage(Message.join(
+                    reply(world, ctx, Message.join(
                         Message.raw("Not enough in bank. You have: ").color(Color.RED),
                         Message.raw(formatLong(currentBank)).color(Color.WHITE)
                     ));
-                    return;
+                    return CompletableFuture.completedFuture(null);
                 }
 
-                SecureTransaction.TransactionResult result = SecureTransaction.executeSecureWithdraw(player, playerUuid, amount);
+                return SecureTransaction.executeSecureWithdraw(player, playerUuid, amount).thenAccept(result -> {
+                    if (result.isSuccess()) {
+                        long newBankBalance = BankManager.getBankBalance(playerUuid);
+                        reply(world, ctx, Message.join(
+                            Message.raw("Withdrew ").color(Color.GREEN),
+                            Message.raw(formatLong(amount)).color(new Color(50, 205, 50)).bold(true),
+                            Message.raw(" coins. Bank: ").color(Color.GREEN),
+                            Message.raw(formatLong(newBankBalance)).color(Color.WHITE)
+                        ));
+                    } else if (result.isMoneySafe() && result.getTxHash() != null) {
+                        reply(world, ctx, Message.raw(result.getMessage()).color(Color.YELLOW));
+                    } else {
+                        reply(world, ctx, Message.raw(result.getMessage()).color(Color.RED));
+                    }
+                });
+            }, PlayerMailbox.bankExecutor());
+        }
+    }
+
+    // ========== Note Subcommand ==========
+    private static class BankNoteCommand extends AbstractAsyncCommand {
+        private final RequiredArg<String> amountArg;
+        
+        public BankNoteCommand() {
+            super("note", "Withdraw from your bank as a banknote");
+            this.addAliases("n");
+            this.amountArg = this.withRequiredArg("amount", "Amount or 'all'", ArgTypes.STRING);
+        }
+        
+        @NonNullDecl
+        @Override
+        protected CompletableFuture<Void> executeAsync(CommandContext ctx) {
+            CommandSender sender = ctx.sender();
+            
+            if (!(sender instanceof Player player)) {
+                ctx.sendMessage(Message.raw("This command can only be used by players").color(Color.RED));
+                return CompletableFuture.completedFuture(null);
+            }
+            
+            Ref<EntityStore> ref = player.getReference();
+            if (ref == null || !ref.isValid()) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            Store<EntityStore> store = ref.getStore();
+            World world = store.getExternalData().getWorld();
+            if (world == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            // Permission check
+            if (!player.hasPermission("ecotale.ecotalecoins.command.bank")) {
+                CompletableFuture<Void> denied = new CompletableFuture<>();
+                world.execute(() -> {
+                    ctx.sendMessage(Message.raw("You don't have permission to use the bank.").color(Color.RED));
+                    denied.complete(null);
+                });
+                return denied;
+            }
+
+            String amountStr = ctx.get(amountArg);
+            
+            // Bank reads run on a bank thread; the note itself goes through the player's mailbox
+            return CompletableFuture.supplyAsync(() -> {
+                PlayerRef playerRef = store.getComponent(ref, PlayerRef.getComponentType());
+                return playerRef != null ? playerRef.getUuid() : null;
+            }, world).thenComposeAsync(playerUuid -> {
+                if (playerUuid == null) return CompletableFuture.completedFuture(null);
                 
-                if (result.isSuccess()) {
-                    long newBankBalance = BankManager.getBankBalance(playerUuid);
-                    ctx.sendMessage(Message.join(
-                        Message.raw("Withdrew ").color(Color.GREEN),
-                        Message.raw(formatLong(amount)).color(new Color(50, 205, 50)).bold(true),
-                        Message.raw(" coins. Bank: ").color(Color.GREEN),
-                        Message.raw(formatLong(newBankBalance)).color(Color.WHITE)
-                    ));
-                } else if (result.isMoneySafe() && result.getTxHash() != null) {
-                    ctx.sendMessage(Message.raw(result.getMessage()).color(Color.YELLOW));
+                long amount;
+                if (amountStr.equalsIgnoreCase("all")) {
+                    amount = BankManager.getBankBalance(playerUuid);
                 } else {
-                    ctx.sendMessage(Message.raw(result.getMessage()).color(Color.RED));
+                    try {
+                        amount = Long.parseLong(amountStr);
+                    } catch (NumberFormatException e) {
+                        reply(world, ctx, Message.raw("Invalid amount. Use a number or 'all'").color(Color.RED));
+                        return CompletableFuture.completedFuture(null);
+                    }
                 }
-            }, world);
+
+                if (amount <= 0) {
+                    reply(world, ctx, Message.raw("Amount must be positive").color(Color.RED));
+                    return CompletableFuture.completedFuture(null);
+                }
+
+                return SecureTransaction.executeSecureIssueNote(player, playerUuid, amount).thenAccept(result -> {
+                    if (result.isSuccess()) {
+                        long newBankBalance = BankManager.getBankBalance(playerUuid);
+                        reply(world, ctx, Message.join(
+                            Message.raw("Issued a banknote for ").color(Color.GREEN),
+                            Message.raw(formatLong(amount)).color(new Color(50, 205, 50)).bold(true),
+                            Message.raw(" coins. Bank: ").color(Color.GREEN),
+                            Message.raw(formatLong(newBankBalance)).color(Color.WHITE)
+                        ));
+                    } else if (result.isMoneySafe() && result.getTxHash() != null) {
+                        reply(world, ctx, Message.raw(result.getMessage()).color(Color.YELLOW));
+                    } else {
+                        reply(world, ctx, Message.raw(result.getMessage()).color(Color.RED));
+                    }
+                });
+            }, PlayerMailbox.bankExecutor());
+        }
+    }
+
+    // ========== Redeem Subcommand ==========
+    private static class BankRedeemCommand extends AbstractAsyncCommand {
+        
+        public BankRedeemCommand() {
+            super("redeem", "Pay your banknotes into your bank");
+        }
+        
+        @NonNullDecl
+        @Override
+        protected CompletableFuture<Void> executeAsync(CommandContext ctx) {
+            CommandSender sender = ctx.sender();
+            
+            if (!(sender instanceof Player player)) {
+                ctx.sendMessage(Message.raw("This command can only be used by players").color(Color.RED));
+                return CompletableFuture.completedFuture(null);
+            }
+            
+            Ref<EntityStore> ref = player.getReference();
+            if (ref == null || !ref.isValid()) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            Store<EntityStore> store = ref.getStore();
+            World world = store.getExternalData().getWorld();
+            if (world == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            // Permission check
+            if (!player.hasPermission("ecotale.ecotalecoins.command.bank")) {
+                CompletableFuture<Void> denied = new CompletableFuture<>();
+                world.execute(() -> {
+                    ctx.sendMessage(Message.raw("You don't have permission to use the bank.").color(Color.RED));
+                    denied.complete(null);
+                });
+                return denied;
+            }
+
+            return CompletableFuture.supplyAsync(() -> {
+                PlayerRef playerRef = store.getComponent(ref, PlayerRef.getComponentType());
+                return playerRef != null ? playerRef.getUuid() : null;
+            }, world).thenCompose(playerUuid -> {
+                if (playerUuid == null) return CompletableFuture.completedFuture(null);
+                
+                return SecureTransaction.executeSecureRedeemNotes(player, playerUuid).thenAccept(result -> {
+                    if (result.isSuccess()) {
+                        long newBankBalance = BankManager.getBankBalance(playerUuid);
+                        reply(world, ctx, Message.join(
+                            Message.raw(result.getMessage()).color(Color.GREEN),
+                            Message.raw(". Bank: ").color(Color.GREEN),
+                            Message.raw(formatLong(newBankBalance)).color(Color.WHITE)
+                        ));
+                    } else {
+                        reply(world, ctx, Message.raw(result.getMessage()).color(Color.RED));
+                    }
+                });
+            });
         }
     }
 
     // ========== Utility ==========
+    private static void reply(World world, CommandContext ctx, Message message) {
+        world.execute(() -> ctx.sendMessage(message));
+    }
+
     private static String formatLong(long value) {
         if (value >= 1_000_000_000) {
             return String.format("%.2fB", value / 1_000_000_000.0);
@@ -1,7 +1,20 @@
 package com.ecotalecoins.config;
 
+import com.ecotalecoins.currency.AutoBank;
+import com.ecotalecoins.currency.BalanceCache;
+import com.ecotalecoins.currency.Banknote;
+import com.ecotalecoins.currency.CoinDespawner;
+import com.ecotalecoins.currency.CoinDropper;
+import com.ecotalecoins.currency.CoinPouch;
+import com.ecotalecoins.currency.ContainerPolicy;
+import com.ecotalecoins.currency.DenominationTable;
+import com.ecotalecoins.currency.DropAggregator;
+import com.ecotalecoins.transaction.BankGateway;
+import com.ecotalecoins.transaction.TransactionId;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.hypixel.hytale.logger.HytaleLogger;
@@ -10,8 +23,11 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.logging.Level;
 
 /**
@@ -38,6 +54,31 @@ public class CoinConfig {
     private boolean useTranslationKeys = true;
     private boolean showExchangeTab = true;
     private boolean showConsolidateButton = true;
+    private boolean debugVerifyCoinLedger = false;
+    private List<String> giveContainers = ContainerPolicy.DEFAULT_GIVE;
+    private List<String> takeContainers = ContainerPolicy.DEFAULT_TAKE;
+    private String journalFsync = "group";
+    private long journalGroupCommitMs = 2L;
+    private int transactionLogCapacity = 4096;
+    private long transactionLogMaxAgeMinutes = 1440L;
+    private int transactionNodeId = 0;
+    private long bankFlushIntervalMs = BankGateway.DEFAULT_FLUSH_INTERVAL_MILLIS;
+    private long bankBalanceCacheTtlMs = BalanceCache.DEFAULT_TTL_MILLIS;
+    private boolean coinMergeEnabled = CoinDropper.MergeSettings.DEFAULT.enabled();
+    private double coinMergeRadius = CoinDropper.MergeSettings.DEFAULT.radius();
+    private boolean coinMergeUpgrade = CoinDropper.MergeSettings.DEFAULT.upgrade();
+    private boolean dropAggregationEnabled = false;
+    private double dropAggregationCell = DropAggregator.DEFAULT_CELL_SIZE;
+    private boolean coinDespawnEnabled = CoinDespawner.Settings.DEFAULT.enabled();
+    private long coinDespawnSeconds = CoinDespawner.Settings.DEFAULT.baseSeconds();
+    private long coinDespawnSecondsPerDigit = CoinDespawner.Settings.DEFAULT.secondsPerDigit();
+    private long coinDespawnMaxSeconds = CoinDespawner.Settings.DEFAULT.maxSeconds();
+    private String coinDespawnSinkAccount = "";
+    private boolean autoBankRewards = false;
+    private long autoBankFlushIntervalMs = AutoBank.DEFAULT_FLUSH_INTERVAL_MILLIS;
+    private long autoBankNotifyIntervalMs = AutoBank.DEFAULT_NOTIFY_INTERVAL_MILLIS;
+    private boolean coinPouchEnabled = false;
+    private boolean banknotesEnabled = false;
     private Map<String, CoinTypeConfig> coinTypes = new LinkedHashMap<>();
     private boolean isLegacyUpgrade = false;
     
@@ -55,6 +96,7 @@ public class CoinConfig {
                 createDefaultConfig(false);
                 logger.at(Level.INFO).log("[EcotaleCoins] Created config.json with v2.0 defaults");
                 logger.at(Level.INFO).log("[EcotaleCoins] Coin hierarchy: Copper → Iron → Cobalt → Gold → Adamantite → Mithril");
+                publish();
                 return true;
             }
             
@@ -83,6 +125,122 @@ public class CoinConfig {
                 this.showConsolidateButton = root.get("show_consolidate_button").getAsBoolean();
             }
             
+            // Container policy
+            if (root.has("give_containers")) {
+                this.giveContainers = readStringList(root.getAsJsonArray("give_containers"));
+            }
+            
+            if (root.has("take_containers")) {
+                this.takeContainers = readStringList(root.getAsJsonArray("take_containers"));
+            }
+            
+            // Transaction journal
+            if (root.has("journal_fsync")) {
+                this.journalFsync = root.get("journal_fsync").getAsString();
+            }
+            
+            if (root.has("journal_group_commit_ms")) {
+                this.journalGroupCommitMs = root.get("journal_group_commit_ms").getAsLong();
+            }
+            
+            // In-memory transaction log retention
+            if (root.has("transaction_log_capacity")) {
+                this.transactionLogCapacity = Math.max(1, root.get("transaction_log_capacity").getAsInt());
+            }
+            
+            if (root.has("transaction_log_max_age_minutes")) {
+                this.transactionLogMaxAgeMinutes = Math.max(0L, root.get("transaction_log_max_age_minutes").getAsLong());
+            }
+            
+            if (root.has("transaction_node_id")) {
+                int nodeId = root.get("transaction_node_id").getAsInt();
+                if (nodeId < 0 || nodeId > TransactionId.MAX_NODE_ID) {
+                    logger.at(Level.WARNING).log("[EcotaleCoins] transaction_node_id must be between 0 and " + TransactionId.MAX_NODE_ID + ", using 0");
+                    nodeId = 0;
+                }
+                this.transactionNodeId = nodeId;
+            }
+            
+            // Bank write coalescing
+            if (root.has("bank_flush_interval_ms")) {
+                this.bankFlushIntervalMs = Math.max(1L, root.get("bank_flush_interval_ms").getAsLong());
+            }
+            
+            if (root.has("bank_balance_cache_ttl_ms")) {
+                this.bankBalanceCacheTtlMs = Math.max(0L, root.get("bank_balance_cache_ttl_ms").getAsLong());
+            }
+            
+            // Ground coin merging
+            if (root.has("coin_merge_enabled")) {
+                this.coinMergeEnabled = root.get("coin_merge_enabled").getAsBoolean();
+            }
+            
+            if (root.has("coin_merge_radius")) {
+                this.coinMergeRadius = Math.max(0.0, Math.min(8.0, root.get("coin_merge_radius").getAsDouble()));
+            }
+            
+            if (root.has("coin_merge_upgrade")) {
+                this.coinMergeUpgrade = root.get("coin_merge_upgrade").getAsBoolean();
+            }
+            
+            // Same-tick drop aggregation
+            if (root.has("drop_aggregation_enabled")) {
+                this.dropAggregationEnabled = root.get("drop_aggregation_enabled").getAsBoolean();
+            }
+            
+            if (root.has("drop_aggregation_cell")) {
+                this.dropAggregationCell = Math.max(1.0, Math.min(32.0, root.get("drop_aggregation_cell").getAsDouble()));
+            }
+            
+            // Ground coin despawn
+            if (root.has("coin_despawn_enabled")) {
+                this.coinDespawnEnabled = root.get("coin_despawn_enabled").getAsBoolean();
+            }
+            
+            if (root.has("coin_despawn_seconds")) {
+                this.coinDespawnSeconds = Math.max(1L, root.get("coin_despawn_seconds").getAsLong());
+            }
+            
+            if (root.has("coin_despawn_seconds_per_digit")) {
+                this.coinDespawnSecondsPerDigit = Math.max(0L, root.get("coin_despawn_seconds_per_digit").getAsLong());
+            }
+            
+            if (root.has("coin_despawn_max_seconds")) {
+                this.coinDespawnMaxSeconds = Math.max(1L, root.get("coin_despawn_max_seconds").getAsLong());
+            }
+            
+            if (root.has("coin_despawn_sink_account")) {
+                this.coinDespawnSinkAccount = root.get("coin_despawn_sink_account").getAsString().trim();
+            }
+            
+            // Auto-bank rewards
+            if (root.has("auto_bank_rewards")) {
+                this.autoBankRewards = root.get("auto_bank_rewards").getAsBoolean();
+            }
+            
+            if (root.has("auto_bank_flush_interval_ms")) {
+                this.autoBankFlushIntervalMs = Math.max(100L, root.get("auto_bank_flush_interval_ms").getAsLong());
+            }
+            
+            if (root.has("auto_bank_notify_interval_ms")) {
+                this.autoBankNotifyIntervalMs = Math.max(0L, root.get("auto_bank_notify_interval_ms").getAsLong());
+            }
+            
+            // Coin pouch
+            if (root.has("coin_pouch_enabled")) {
+                this.coinPouchEnabled = root.get("coin_pouch_enabled").getAsBoolean();
+            }
+            
+            // Banknotes
+            if (root.has("banknotes_enabled")) {
+                this.banknotesEnabled = root.get("banknotes_enabled").getAsBoolean();
+            }
+            
+            // Debug settings
+            if (root.has("debug_verify_coin_ledger")) {
+                this.debugVerifyCoinLedger = root.get("debug_verify_coin_ledger").getAsBoolean();
+            }
+            
             // Load coin types
             if (root.has("coin_types")) {
                 JsonObject coinTypesObj = root.getAsJsonObject("coin_types");
@@ -118,6 +276,7 @@ public class CoinConfig {
             }
             
             logger.at(Level.INFO).log("[EcotaleCoins] Config loaded successfully (version: " + configVersion + ")");
+            publish();
             return true;
             
         } catch (IOException e) {
@@ -126,6 +285,55 @@ public class CoinConfig {
         }
     }
     
+    /**
+     * Publish the denomination table, container policy and drop settings built from this config.
+     */
+    private void publish() {
+        DenominationTable.rebuild(this);
+        
+        DenominationTable table = DenominationTable.get();
+        if (!table.isCanonical()) {
+            logger.at(Level.INFO).log("[EcotaleCoins] Coin values are non-canonical - using exact change-making for breakdowns");
+            if (!table.isExactChange()) {
+                logger.at(Level.WARNING).log("[EcotaleCoins] Coin values are too far apart for exact change-making; very large amounts may use more coins than needed");
+            }
+        }
+        
+        try {
+            ContainerPolicy.set(ContainerPolicy.of(giveContainers, takeContainers));
+        } catch (IllegalArgumentException e) {
+            logger.at(Level.WARNING).log("[EcotaleCoins] Invalid give_containers/take_containers (" + e.getMessage() + "), using defaults");
+            this.giveContainers = ContainerPolicy.DEFAULT_GIVE;
+            this.takeContainers = ContainerPolicy.DEFAULT_TAKE;
+            ContainerPolicy.set(ContainerPolicy.of(giveContainers, takeContainers));
+        }
+        
+        CoinDropper.setMergeSettings(new CoinDropper.MergeSettings(coinMergeEnabled, coinMergeRadius, coinMergeUpgrade));
+        DropAggregator.configure(dropAggregationEnabled, dropAggregationCell);
+        
+        UUID sink = null;
+        if (!coinDespawnSinkAccount.isEmpty()) {
+            try {
+                sink = UUID.fromString(coinDespawnSinkAccount);
+            } catch (IllegalArgumentException e) {
+                logger.at(Level.WARNING).log("[EcotaleCoins] Invalid coin_despawn_sink_account '" + coinDespawnSinkAccount + "' - despawned coins will not be paid anywhere");
+            }
+        }
+        CoinDespawner.configure(new CoinDespawner.Settings(coinDespawnEnabled, coinDespawnSeconds,
+            coinDespawnSecondsPerDigit, coinDespawnMaxSeconds, sink));
+        AutoBank.configure(autoBankRewards, autoBankFlushIntervalMs, autoBankNotifyIntervalMs);
+        CoinPouch.setEnabled(coinPouchEnabled);
+        Banknote.setEnabled(banknotesEnabled);
+    }
+    
+    private static List<String> readStringList(JsonArray array) {
+        List<String> list = new ArrayList<>(array.size());
+        for (JsonElement element : array) {
+            list.add(element.getAsString());
+        }
+        return list;
+    }
+    
     private void showLegacyMigrationWarning() {
         logger.at(Level.WARNING).log("");
         logger.at(Level.WARNING).log("╔══════════════════════════════════════════════════════════════════╗");
@@ -160,6 +368,30 @@ public class CoinConfig {
         config.put("use_translation_keys", true);
         config.put("show_exchange_tab", true);
         config.put("show_consolidate_button", true);
+        config.put("give_containers", ContainerPolicy.DEFAULT_GIVE);
+        config.put("take_containers", ContainerPolicy.DEFAULT_TAKE);
+        config.put("journal_fsync", "group");
+        config.put("journal_group_commit_ms", 2);
+        config.put("transaction_log_capacity", 4096);
+        config.put("transaction_log_max_age_minutes", 1440);
+        config.put("transaction_node_id", 0);
+        config.put("bank_flush_interval_ms", BankGateway.DEFAULT_FLUSH_INTERVAL_MILLIS);
+        config.put("bank_balance_cache_ttl_ms", BalanceCache.DEFAULT_TTL_MILLIS);
+        config.put("coin_merge_enabled", CoinDropper.MergeSettings.DEFAULT.enabled());
+        config.put("coin_merge_radius", CoinDropper.MergeSettings.DEFAULT.radius());
+        config.put("coin_merge_upgrade", CoinDropper.MergeSettings.DEFAULT.upgrade());
+        config.put("drop_aggregation_enabled", false);
+        config.put("drop_aggregation_cell", DropAggregator.DEFAULT_CELL_SIZE);
+        config.put("coin_despawn_enabled", CoinDespawner.Settings.DEFAULT.enabled());
+        config.put("coin_despawn_seconds", CoinDespawner.Settings.DEFAULT.baseSeconds());
+        config.put("coin_despawn_seconds_per_digit", CoinDespawner.Settings.DEFAULT.secondsPerDigit());
+        config.put("coin_despawn_max_seconds", CoinDespawner.Settings.DEFAULT.maxSeconds());
+        config.put("coin_despawn_sink_account", "");
+        config.put("auto_bank_rewards", false);
+        config.put("auto_bank_flush_interval_ms", AutoBank.DEFAULT_FLUSH_INTERVAL_MILLIS);
+        config.put("auto_bank_notify_interval_ms", AutoBank.DEFAULT_NOTIFY_INTERVAL_MILLIS);
+        config.put("coin_pouch_enabled", false);
+        config.put("banknotes_enabled", false);
         
         // Coin types section - v2.0 corrected order
         Map<String, CoinTypeConfig> defaultCoins = new LinkedHashMap<>();
@@ -290,12 +522,214 @@ public class CoinConfig {
         return showConsolidateButton;
     }
     
+    /**
+     * Containers coins are given to, in fill order.
+     */
+    public List<String> getGiveContainers() {
+        return giveContainers;
+    }
+    
+    /**
+     * Containers coins are taken from.
+     */
+    public List<String> getTakeContainers() {
+        return takeContainers;
+    }
+    
+    /**
+     * Transaction journal fsync policy: "always", "group" or "never".
+     */
+    public String getJournalFsync() {
+        return journalFsync;
+    }
+    
+    /**
+     * How long the journal waits to batch concurrent records into one fsync ("group" policy).
+     */
+    public long getJournalGroupCommitMs() {
+        return journalGroupCommitMs;
+    }
+    
+    /**
+     * Maximum number of transactions kept in memory for replay checks and admin reads.
+     */
+    public int getTransactionLogCapacity() {
+        return transactionLogCapacity;
+    }
+    
+    /**
+     * How long transactions stay in memory, in minutes (0 = until pushed out by capacity).
+     */
+    public long getTransactionLogMaxAgeMinutes() {
+        return transactionLogMaxAgeMinutes;
+    }
+    
+    /**
+     * Node id stamped into transaction IDs; servers sharing a bank should use different ones.
+     */
+    public int getTransactionNodeId() {
+        return transactionNodeId;
+    }
+    
+    /**
+     * How often buffered bank deposits are paid in, in milliseconds. Applied at startup only.
+     */
+    public long getBankFlushIntervalMs() {
+        return bankFlushIntervalMs;
+    }
+    
+    /**
+     * How long a cached bank balance is trusted, in milliseconds (0 = always ask Ecotale Core).
+     */
+    public long getBankBalanceCacheTtlMs() {
+        return bankBalanceCacheTtlMs;
+    }
+    
+    /**
+     * Whether dropped coins top up nearby piles of the same coin.
+     */
+    public boolean isCoinMergeEnabled() {
+        return coinMergeEnabled;
+    }
+    
+    /**
+     * How far (in blocks) a pile may be from a drop to be topped up.
+     */
+    public double getCoinMergeRadius() {
+        return coinMergeRadius;
+    }
+    
+    /**
+     * Whether merged piles are swapped for higher coins when their value allows.
+     */
+    public boolean isCoinMergeUpgrade() {
+        return coinMergeUpgrade;
+    }
+    
+    /**
+     * Whether coin drops made in the same tick are combined per cell.
+     */
+    public boolean isDropAggregationEnabled() {
+        return dropAggregationEnabled;
+    }
+    
+    /**
+     * Size (in blocks) of the cells same-tick drops are combined in.
+     */
+    public double getDropAggregationCell() {
+        return dropAggregationCell;
+    }
+    
+    /**
+     * Whether dropped coin piles are removed when their lifetime runs out.
+     */
+    public boolean isCoinDespawnEnabled() {
+        return coinDespawnEnabled;
+    }
+    
+    /**
+     * Lifetime in seconds of a coin pile worth less than 10.
+     */
+    public long getCoinDespawnSeconds() {
+        return coinDespawnSeconds;
+    }
+    
+    /**
+     * Extra lifetime in seconds per extra digit of a pile's value.
+     */
+    public long getCoinDespawnSecondsPerDigit() {
+        return coinDespawnSecondsPerDigit;
+    }
+    
+    /**
+     * Longest lifetime in seconds a coin pile can get.
+     */
+    public long getCoinDespawnMaxSeconds() {
+        return coinDespawnMaxSeconds;
+    }
+    
+    /**
+     * Bank account (UUID) despawned coin value is paid into, or empty for none.
+     */
+    public String getCoinDespawnSinkAccount() {
+        return coinDespawnSinkAccount;
+    }
+    
+    /**
+     * Whether kill rewards go straight to the killer's bank instead of dropping as coins.
+     */
+    public boolean isAutoBankRewards() {
+        return autoBankRewards;
+    }
+    
+    /**
+     * How often pending auto-bank rewards are paid into the bank.
+     */
+    public long getAutoBankFlushIntervalMs() {
+        return autoBankFlushIntervalMs;
+    }
+    
+    /**
+     * Shortest time between two auto-bank summaries to the same player.
+     */
+    public long getAutoBankNotifyIntervalMs() {
+        return autoBankNotifyIntervalMs;
+    }
+    
+    /**
+     * Whether given coins go into a coin pouch instead of coin stacks.
+     */
+    public boolean isCoinPouchEnabled() {
+        return coinPouchEnabled;
+    }
+    
+    /**
+     * Whether the bank issues banknotes. Notes already issued can always be redeemed.
+     */
+    public boolean isBanknotesEnabled() {
+        return banknotesEnabled;
+    }
+    
+    /**
+     * Whether cached coin balances are checked against a full inventory rescan.
+     * Debug only - doubles the cost of every balance read.
+     */
+    public boolean debugVerifyCoinLedger() {
+        return debugVerifyCoinLedger;
+    }
+    
     /**
      * Reload configuration from disk.
+     * The denomination table is swapped in one step once loading succeeds.
      */
     public boolean reload() {
         coinTypes.clear();
         isLegacyUpgrade = false;
+        debugVerifyCoinLedger = false;
+        giveContainers = ContainerPolicy.DEFAULT_GIVE;
+        takeContainers = ContainerPolicy.DEFAULT_TAKE;
+        journalFsync = "group";
+        journalGroupCommitMs = 2L;
+        transactionLogCapacity = 4096;
+        transactionLogMaxAgeMinutes = 1440L;
+        transactionNodeId = 0;
+        bankFlushIntervalMs = BankGateway.DEFAULT_FLUSH_INTERVAL_MILLIS;
+        bankBalanceCacheTtlMs = BalanceCache.DEFAULT_TTL_MILLIS;
+        coinMergeEnabled = CoinDropper.MergeSettings.DEFAULT.enabled();
+        coinMergeRadius = CoinDropper.MergeSettings.DEFAULT.radius();
+        coinMergeUpgrade = CoinDropper.MergeSettings.DEFAULT.upgrade();
+        dropAggregationEnabled = false;
+        dropAggregationCell = DropAggregator.DEFAULT_CELL_SIZE;
+        coinDespawnEnabled = CoinDespawner.Settings.DEFAULT.enabled();
+        coinDespawnSeconds = CoinDespawner.Settings.DEFAULT.baseSeconds();
+        coinDespawnSecondsPerDigit = CoinDespawner.Settings.DEFAULT.secondsPerDigit();
+        coinDespawnMaxSeconds = CoinDespawner.Settings.DEFAULT.maxSeconds();
+        coinDespawnSinkAccount = "";
+        autoBankRewards = false;
+        autoBankFlushIntervalMs = AutoBank.DEFAULT_FLUSH_INTERVAL_MILLIS;
+        autoBankNotifyIntervalMs = AutoBank.DEFAULT_NOTIFY_INTERVAL_MILLIS;
+        coinPouchEnabled = false;
+        banknotesEnabled = false;
         configVersion = null;
         return load();
     }
@@ -0,0 +1,263 @@
+package com.ecotalecoins.currency;
+
+import com.ecotalecoins.transaction.BankGateway;
+import com.ecotalecoins.util.TranslationHelper;
+import com.ecotalecoins.util.UuidLongMap;
+import com.hypixel.hytale.component.ComponentAccessor;
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.modules.entity.damage.Damage;
+import com.hypixel.hytale.server.core.modules.entity.damage.DeathComponent;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pays kill rewards straight into the killer's bank instead of dropping coins.
+ *
+ * A reward is added to the killer's pending total in memory - no entity, no
+ * physics, no pickup, no inventory write. Every flush interval each player's
+ * total goes into the bank as one {@link BankGateway} deposit, and players get
+ * a short summary of what was banked, at most once per notify interval.
+ *
+ * Pending rewards live in memory only: a crash loses at most one flush
+ * interval of rewards, the same as coins left lying on the ground.
+ * Rewards with no player killer, and coins dropped by a dying player, still
+ * drop as coins.
+ *
+ * @author Ecotale
+ * @since 1.2.0
+ */
+public final class AutoBank {
+
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 5_000L;
+    public static final long DEFAULT_NOTIFY_INTERVAL_MILLIS = 30_000L;
+
+    private static volatile boolean enabled = false;
+    private static long notifyIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_NOTIFY_INTERVAL_MILLIS);
+
+    // Guarded by the class lock
+    private static final UuidLongMap pending = new UuidLongMap();
+    private static final UuidLongMap unnotifiedValue = new UuidLongMap();
+    private static final UuidLongMap unnotifiedCount = new UuidLongMap();
+    private static final UuidLongMap lastNotified = new UuidLongMap();
+    private static final Map<UUID, PlayerRef> players = new HashMap<>();
+
+    private static final Object flusherLock = new Object();
+    private static ScheduledExecutorService flusher;
+
+    private static final LongAdder credits = new LongAdder();
+    private static final LongAdder deposits = new LongAdder();
+
+    private AutoBank() {}
+
+    // ========== Lifecycle ==========
+
+    /**
+     * Turn auto-banking on or off and set its intervals. Published by
+     * {@link com.ecotalecoins.config.CoinConfig#load()}. Turning it off pays
+     * out what is pending.
+     */
+    public static void configure(boolean enable, long flushIntervalMillis, long notifyIntervalMillis) {
+        synchronized (AutoBank.class) {
+            notifyIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, notifyIntervalMillis));
+        }
+        synchronized (flusherLock) {
+            stopFlusher();
+            enabled = enable;
+            if (enable) {
+                long interval = Math.max(100L, flushIntervalMillis);
+                ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "EcotaleCoins-AutoBank");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                executor.scheduleWithFixedDelay(AutoBank::flush, interval, interval, TimeUnit.MILLISECONDS);
+                flusher = executor;
+            }
+        }
+        if (!enable) {
+            flush();
+        }
+    }
+
+    /**
+     * Stop flushing and pay out what is pending.
+     */
+    public static void shutdown() {
+        synchronized (flusherLock) {
+            enabled = false;
+            stopFlusher();
+        }
+        flush();
+    }
+
+    private static void stopFlusher() {
+        ScheduledExecutorService executor = flusher;
+        flusher = null;
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    // ========== Rewards ==========
+
+    /**
+     * The player whose damage killed an entity, if any and if the entity is not
+     * a player. A player's death drop is their own coins (or a PvP loot drop),
+     * not a reward, so it always lands on the ground.
+     */
+    @Nullable
+    public static PlayerRef findKiller(@Nonnull Ref<EntityStore> victim, @Nonnull ComponentAccessor<EntityStore> store) {
+        if (store.getComponent(victim, PlayerRef.getComponentType()) != null) {
+            return null;
+        }
+        DeathComponent death = store.getComponent(victim, DeathComponent.getComponentType());
+        Damage damage = death != null ? death.getDeathInfo() : null;
+        if (damage == null || !(damage.getSource() instanceof Damage.EntitySource source)) {
+            return null;
+        }
+        Ref<EntityStore> attacker = source.getRef();
+        if (attacker == null || !attacker.isValid()) {
+            return null;
+        }
+        return store.getComponent(attacker, PlayerRef.getComponentType());
+    }
+
+    /**
+     * Add a reward to the player's pending total.
+     * @return false if auto-banking is off or the total would overflow - drop the coins instead
+     */
+    public static boolean credit(@Nonnull PlayerRef player, long amount) {
+        if (!enabled || amount <= 0) return false;
+
+        UUID uuid = player.getUuid();
+        synchronized (AutoBank.class) {
+            try {
+                Math.addExact(pending.get(uuid, 0L), amount);
+                Math.addExact(unnotifiedValue.get(uuid, 0L), amount);
+            } catch (ArithmeticException e) {
+                return false;
+            }
+            pending.add(uuid, amount);
+            unnotifiedValue.add(uuid, amount);
+            unnotifiedCount.add(uuid, 1);
+            players.put(uuid, player);
+        }
+        credits.increment();
+        return true;
+    }
+
+    /**
+     * Rewards credited but not yet paid into the bank.
+     */
+    public static synchronized long getPending(@Nonnull UUID player) {
+        return pending.get(player, 0L);
+    }
+
+    /**
+     * Stop notifying a player who left. Their pending rewards are still paid in.
+     */
+    public static synchronized void forget(@Nonnull UUID player) {
+        players.remove(player);
+        unnotifiedValue.remove(player, 0L);
+        unnotifiedCount.remove(player, 0L);
+        lastNotified.remove(player, 0L);
+    }
+
+    /**
+     * Pay every pending total into the bank, one deposit per player, then send
+     * the summaries that are due.
+     */
+    public static void flush() {
+        List<UUID> accounts = new ArrayList<>();
+        List<Long> amounts = new ArrayList<>();
+        synchronized (AutoBank.class) {
+            if (pending.size() == 0) return;
+            pending.forEach((uuid, amount) -> {
+                accounts.add(uuid);
+                amounts.add(amount);
+            });
+            pending.clear();
+        }
+
+        List<PlayerRef> notify = new ArrayList<>();
+        List<long[]> summaries = new ArrayList<>();
+        for (int i = 0; i < accounts.size(); i++) {
+            UUID uuid = accounts.get(i);
+            long amount = amounts.get(i);
+            if (!BankGateway.deposit(uuid, amount)) {
+                com.ecotale.util.EcoLogger.warn("Auto-bank deposit of " + amount + " for " + uuid + " failed, will retry");
+                synchronized (AutoBank.class) {
+                    pending.add(uuid, amount);
+                }
+                continue;
+            }
+            deposits.increment();
+
+            synchronized (AutoBank.class) {
+                PlayerRef player = players.get(uuid);
+                long now = System.nanoTime();
+                if (player == null || (lastNotified.containsKey(uuid) && now - lastNotified.get(uuid, 0L) < notifyIntervalNanos)) {
+                    continue;
+                }
+                long value = unnotifiedValue.remove(uuid, 0L);
+                long count = unnotifiedCount.remove(uuid, 0L);
+                lastNotified.put(uuid, now);
+                if (value > 0) {
+                    notify.add(player);
+                    summaries.add(new long[] {value, count});
+                }
+            }
+        }
+
+        for (int i = 0; i < notify.size(); i++) {
+            PlayerRef player = notify.get(i);
+            long[] summary = summaries.get(i);
+            try {
+                player.sendMessage(Message.raw(TranslationHelper.t(player, "autobank.summary",
+                    "+{0} coins banked from {1} rewards", String.format("%,d", summary[0]), summary[1])).color(Color.YELLOW));
+            } catch (RuntimeException e) {
+                // A player who just left must not stop the flusher
+                com.ecotale.util.EcoLogger.debug("Auto-bank summary not sent: " + e.getMessage());
+            }
+        }
+    }
+
+    // ========== Statistics ==========
+
+    /**
+     * Rewards credited since startup.
+     */
+    public static long getCreditCount() {
+        return credits.sum();
+    }
+
+    /**
+     * Bank deposits made for rewards since startup.
+     */
+    public static long getDepositCount() {
+        return deposits.sum();
+    }
+}
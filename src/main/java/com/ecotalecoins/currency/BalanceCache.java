@@ -0,0 +1,116 @@
+package com.ecotalecoins.currency;
+
+import com.ecotale.api.EcotaleAPI;
+import com.ecotalecoins.util.UuidLongMap;
+
+import javax.annotation.Nonnull;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-player cache of Ecotale Core bank balances.
+ *
+ * Reads go to EcotaleAPI on a miss and are then served from memory until the
+ * entry is older than the TTL. This plugin's own bank writes are applied to
+ * cached entries as they happen (see {@code BankGateway}), so the TTL only
+ * bounds how long a change made elsewhere - another plugin, an admin command -
+ * can go unseen. Ecotale Core doesn't publish balance changes, so code that
+ * knows of one can call {@link #invalidate(UUID)}.
+ *
+ * @author Ecotale
+ * @since 1.2.0
+ */
+public final class BalanceCache {
+
+    public static final long DEFAULT_TTL_MILLIS = 2_000L;
+
+    // Guarded by the class lock
+    private static final UuidLongMap balances = new UuidLongMap();
+    private static final UuidLongMap loadedAt = new UuidLongMap();
+    // Bumped by every write and invalidation; a read-through that raced one is not stored
+    private static long generation;
+    private static long ttlNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TTL_MILLIS);
+    private static long hits;
+    private static long misses;
+
+    private BalanceCache() {}
+
+    /**
+     * Set how long an entry is trusted. 0 disables caching.
+     */
+    public static synchronized void configure(long ttlMillis) {
+        ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, ttlMillis));
+        clear();
+    }
+
+    /**
+     * The player's bank balance in Ecotale Core, from the cache if fresh.
+     */
+    public static long get(@Nonnull UUID player) {
+        long seen;
+        synchronized (BalanceCache.class) {
+            if (ttlNanos > 0 && balances.containsKey(player)) {
+                if (System.nanoTime() - loadedAt.get(player, 0L) < ttlNanos) {
+                    hits++;
+                    return balances.get(player, 0L);
+                }
+                balances.remove(player, 0L);
+                loadedAt.remove(player, 0L);
+            }
+            misses++;
+            seen = generation;
+        }
+
+        long balance = BankUnits.fromApi(EcotaleAPI.getBalance(player));
+
+        synchronized (BalanceCache.class) {
+            if (ttlNanos > 0 && generation == seen) {
+                balances.put(player, balance);
+                loadedAt.put(player, System.nanoTime());
+            }
+        }
+        return balance;
+    }
+
+    /**
+     * Apply a change this plugin just made in Ecotale Core. Uncached players are left uncached.
+     */
+    public static synchronized void apply(@Nonnull UUID player, long delta) {
+        generation++;
+        if (balances.containsKey(player)) {
+            balances.put(player, balances.get(player, 0L) + delta);
+        }
+    }
+
+    /**
+     * Drop a player's entry so the next read goes to Ecotale Core.
+     */
+    public static synchronized void invalidate(@Nonnull UUID player) {
+        generation++;
+        balances.remove(player, 0L);
+        loadedAt.remove(player, 0L);
+    }
+
+    public static synchronized void clear() {
+        generation++;
+        balances.clear();
+        loadedAt.clear();
+    }
+
+    // ========== Statistics ==========
+
+    /**
+     * Cache counters since startup.
+     */
+    public record Stats(long hits, long misses, int entries) {
+        public double hitRate() {
+            long reads = hits + misses;
+            return reads == 0 ? 0 : (double) hits / reads;
+        }
+    }
+
+    @Nonnull
+    public static synchronized Stats getStats() {
+        return new Stats(hits, misses, balances.size());
+    }
+}
@@ -1,29 +1,29 @@
 package com.ecotalecoins.currency;
 
-import com.ecotale.api.EcotaleAPI;
 import com.hypixel.hytale.server.core.entity.entities.Player;
 
+import com.ecotalecoins.transaction.BankGateway;
+import com.ecotalecoins.transaction.PlayerMailbox;
+import com.ecotalecoins.transaction.SecureTransaction;
+
 import javax.annotation.Nonnull;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Manages bank operations (virtual storage for coins).
  * Bank = safe storage that doesn't drop on death.
- * Uses Ecotale Core's balance system for storage.
+ * Uses Ecotale Core's balance system for storage, through {@link BankGateway}.
  */
 public class BankManager {
 
-    private static final ConcurrentHashMap<UUID, ReentrantLock> playerLocks = new ConcurrentHashMap<>();
-
     private BankManager() {}
 
     /**
-     * Get bank balance for a player (uses Ecotale Core DB).
+     * Get bank balance for a player (Ecotale Core DB plus deposits not yet flushed).
      */
     public static long getBankBalance(@Nonnull UUID playerId) {
-        return (long) EcotaleAPI.getBalance(playerId);
+        return BankGateway.getBalance(playerId);
     }
 
     /**
@@ -33,20 +33,6 @@ public class BankManager {
         return getBankBalance(playerId) >= amount;
     }
 
-    /**
-     * Get or create lock for player.
-     */
-    public static ReentrantLock getPlayerLock(UUID playerId) {
-        return playerLocks.computeIfAbsent(playerId, k -> new ReentrantLock());
-    }
-
-    /**
-     * Clean up locks for offline players (call periodically).
-     */
-    public static void cleanupLocks() {
-        playerLocks.entrySet().removeIf(entry -> !entry.getValue().isLocked());
-    }
-
     /**
      * Get total wealth (physical + bank).
      */
@@ -58,60 +44,25 @@ public class BankManager {
     
     /**
      * Deposit from physical coins to bank.
-     * Returns true if successful.
+     * Runs in the player's {@link PlayerMailbox} as a journaled transaction, so it
+     * never overlaps another coin or bank operation for the same player.
+     * Completes with true if the coins were taken and deposited.
      */
-    public static boolean deposit(@Nonnull Player player, @Nonnull UUID playerUuid, long amount) {
-        if (amount <= 0) return false;
-        
-        ReentrantLock lock = getPlayerLock(playerUuid);
-        lock.lock();
-        try {
-            if (!CoinManager.canAfford(player, amount)) {
-                return false;
-            }
-            
-            boolean removed = CoinManager.takeCoins(player, amount);
-            if (!removed) {
-                return false;
-            }
-            
-            EcotaleAPI.deposit(playerUuid, (double) amount, "Bank deposit");
-            return true;
-        } finally {
-            lock.unlock();
-        }
+    @Nonnull
+    public static CompletableFuture<Boolean> deposit(@Nonnull Player player, @Nonnull UUID playerUuid, long amount) {
+        return SecureTransaction.executeSecureDeposit(player, playerUuid, amount)
+            .thenApply(SecureTransaction.TransactionResult::isSuccess);
     }
     
     /**
      * Withdraw from bank to physical coins.
-     * Returns true if successful.
+     * Runs in the player's {@link PlayerMailbox} as a journaled transaction; if the
+     * coins can't be delivered the value goes back to the bank.
+     * Completes with true if the coins were delivered.
      */
-    public static boolean withdraw(@Nonnull Player player, @Nonnull UUID playerUuid, long amount) {
-        if (amount <= 0) return false;
-        
-        ReentrantLock lock = getPlayerLock(playerUuid);
-        lock.lock();
-        try {
-            long currentBank = getBankBalance(playerUuid);
-            if (currentBank < amount) {
-                return false;
-            }
-            
-            boolean withdrawn = EcotaleAPI.withdraw(playerUuid, (double) amount, "Bank withdrawal");
-            if (!withdrawn) {
-                return false;
-            }
-            
-            boolean given = CoinManager.giveCoins(player, amount);
-            if (!given) {
-                // Rollback
-                EcotaleAPI.deposit(playerUuid, (double) amount, "Withdrawal rollback");
-                return false;
-            }
-            
-            return true;
-        } finally {
-            lock.unlock();
-        }
+    @Nonnull
+    public static CompletableFuture<Boolean> withdraw(@Nonnull Player player, @Nonnull UUID playerUuid, long amount) {
+        return SecureTransaction.executeSecureWithdraw(player, playerUuid, amount)
+            .thenApply(SecureTransaction.TransactionResult::isSuccess);
     }
 }
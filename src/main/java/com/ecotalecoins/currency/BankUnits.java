@@ -0,0 +1,57 @@
+package com.ecotalecoins.currency;
+
+/**
+ * Conversions between this plugin's base units and Ecotale Core's amounts.
+ *
+ * Everything inside the plugin is a {@code long} count of base units.
+ * EcotaleAPI takes and returns {@code double}, which holds every whole number
+ * only up to 2^53, so amounts are converted here and nowhere else: an amount
+ * that would not survive the round trip is refused instead of rounded.
+ *
+ * @author Ecotale
+ * @since 1.2.0
+ */
+public final class BankUnits {
+
+    /** Largest amount EcotaleAPI can be handed exactly (2^53). */
+    public static final long MAX_EXACT = 1L << 53;
+
+    private BankUnits() {}
+
+    /**
+     * Whether an amount converts to a double and back unchanged.
+     */
+    public static boolean isExact(long amount) {
+        return amount >= -MAX_EXACT && amount <= MAX_EXACT;
+    }
+
+    /**
+     * Amount for an EcotaleAPI call.
+     * @throws ArithmeticException if the amount would be rounded
+     */
+    public static double toApi(long amount) {
+        if (!isExact(amount)) {
+            throw new ArithmeticException("Amount not exactly representable by the bank: " + amount);
+        }
+        return (double) amount;
+    }
+
+    /**
+     * Amount returned by EcotaleAPI, in base units.
+     * Fractions are rounded down so the plugin never spends value it doesn't have;
+     * anything out of range (or NaN) is clamped.
+     */
+    public static long fromApi(double amount) {
+        if (Double.isNaN(amount)) {
+            return 0L;
+        }
+        // Doubles at or above 2^63 don't fit; (long) would clamp too, but say so explicitly
+        if (amount >= 0x1p63) {
+            return Long.MAX_VALUE;
+        }
+        if (amount < -0x1p63) {
+            return Long.MIN_VALUE;
+        }
+        return (long) Math.floor(amount);
+    }
+}
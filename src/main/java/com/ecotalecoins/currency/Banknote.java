@@ -0,0 +1,162 @@
+package com.ecotalecoins.currency;
+
+import com.hypixel.hytale.codec.Codec;
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A banknote: one item carrying a signed, single-use face value in its metadata.
+ *
+ * Notes are issued by the bank and redeemed back into it through
+ * {@link com.ecotalecoins.transaction.SecureTransaction}, so a payout of any
+ * size takes one slot and one transaction. Unlike coins and pouches a note is
+ * not pocket money: it isn't counted in balances or spent by purchases until
+ * it is redeemed. Its serial, value and signature are checked against the
+ * {@link com.ecotalecoins.transaction.BanknoteRegistry} on redemption, so a
+ * copied note pays out once.
+ *
+ * This class only reads and writes the items; whether notes can be issued is
+ * the {@code banknotes_enabled} setting. Issued notes always stay redeemable.
+ *
+ * @author Ecotale
+ * @since 1.2.0
+ */
+public final class Banknote {
+
+    public static final String ITEM_ID = "Coin_Banknote";
+    public static final String SERIAL_KEY = "EcotaleCoins_NoteSerial";
+    public static final String VALUE_KEY = "EcotaleCoins_NoteValue";
+    public static final String SIGNATURE_KEY = "EcotaleCoins_NoteSignature";
+
+    private static volatile boolean enabled = false;
+
+    private Banknote() {}
+
+    /**
+     * A note found in an inventory.
+     * @param section   {@link CoinScan} section holding it
+     * @param slot      slot within the section's container
+     */
+    public record Held(int section, short slot, long serial, long value, @Nullable String signature) {}
+
+    /**
+     * Turn note issuing on or off. Published by {@link com.ecotalecoins.config.CoinConfig#load()}.
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /**
+     * Whether the bank issues notes.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    // ========== Items ==========
+
+    public static boolean isBanknote(@Nullable ItemStack stack) {
+        return stack != null && !stack.isEmpty() && ITEM_ID.equals(stack.getItemId());
+    }
+
+    /**
+     * A new note. The signature comes from the registry that issued the serial.
+     */
+    @Nonnull
+    public static ItemStack create(long serial, long value, @Nonnull String signature) {
+        return new ItemStack(ITEM_ID, 1)
+            .withMetadata(SERIAL_KEY, Codec.LONG, serial)
+            .withMetadata(VALUE_KEY, Codec.LONG, value)
+            .withMetadata(SIGNATURE_KEY, Codec.STRING, signature);
+    }
+
+    /**
+     * Face value written on a note, or 0 if its metadata is missing.
+     * Only a verified value should be paid out.
+     */
+    public static long valueOf(@Nonnull ItemStack note) {
+        Long value = note.getFromMetadataOrNull(VALUE_KEY, Codec.LONG);
+        return value != null && value > 0 ? value : 0L;
+    }
+
+    // ========== Inventory ==========
+
+    /**
+     * Whether the give containers have an empty slot for a new note.
+     */
+    public static boolean hasRoom(@Nonnull CoinScan scan) {
+        return freeSlot(scan) >= 0;
+    }
+
+    private static int freeSlot(CoinScan scan) {
+        for (int section : ContainerPolicy.get().giveSections()) {
+            for (int i = 0; i < scan.slotCount(); i++) {
+                if (scan.slotType(i) == -1 && scan.slotSection(i) == section) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Put a note in the first empty slot of the give containers, with one slot write.
+     * The scan must describe the inventory as it is now.
+     * @return false (nothing written) if there is no empty slot
+     */
+    public static boolean give(@Nonnull Player player, @Nonnull CoinScan scan, @Nonnull ItemStack note) {
+        int recorded = freeSlot(scan);
+        if (recorded < 0) return false;
+
+        ItemContainer container = InventoryPlan.container(player.getInventory(), scan.slotSection(recorded));
+        container.setItemStackForSlot((short) scan.slotIndex(recorded), note);
+        return true;
+    }
+
+    /**
+     * Every note in the containers coins are taken from, in scan order.
+     */
+    @Nonnull
+    public static List<Held> find(@Nonnull Player player) {
+        List<Held> notes = new ArrayList<>();
+        for (int section : ContainerPolicy.get().takeSections()) {
+            ItemContainer container = InventoryPlan.container(player.getInventory(), section);
+            if (container == null) continue;
+            for (short i = 0; i < container.getCapacity(); i++) {
+                ItemStack stack = container.getItemStack(i);
+                if (!isBanknote(stack)) continue;
+                Long serial = stack.getFromMetadataOrNull(SERIAL_KEY, Codec.LONG);
+                notes.add(new Held(section, i, serial != null ? serial : 0L, valueOf(stack),
+                    stack.getFromMetadataOrNull(SIGNATURE_KEY, Codec.STRING)));
+            }
+        }
+        return notes;
+    }
+
+    /**
+     * Remove notes found by {@link #find}, skipping any whose slot no longer
+     * holds the same note.
+     * @return the notes actually removed
+     */
+    @Nonnull
+    public static List<Held> remove(@Nonnull Player player, @Nonnull List<Held> notes) {
+        List<Held> removed = new ArrayList<>(notes.size());
+        for (Held note : notes) {
+            ItemContainer container = InventoryPlan.container(player.getInventory(), note.section());
+            ItemStack stack = container != null ? container.getItemStack(note.slot()) : null;
+            if (!isBanknote(stack)) continue;
+            Long serial = stack.getFromMetadataOrNull(SERIAL_KEY, Codec.LONG);
+            if (serial == null || serial != note.serial() || valueOf(stack) != note.value()) continue;
+
+            container.removeItemStackFromSlot(note.slot());
+            removed.add(note);
+        }
+        return removed;
+    }
+}
@@ -0,0 +1,193 @@
+package com.ecotalecoins.currency;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * Fewest-coin breakdown for one set of denominations.
+ *
+ * Built once per {@link DenominationTable}. Canonical sets (where greedy is
+ * always optimal, e.g. 1/10/100) keep the greedy fast path. For other sets
+ * (e.g. 1/7/10) the breakdown comes from a dynamic-programming table over
+ * small amounts; larger amounts are paid in top coins down to that range.
+ *
+ * @author Ecotale
+ * @since 1.2.0
+ */
+final class ChangeMaker {
+
+    // Upper bound on DP table entries (about 5 MB worst case)
+    private static final int MAX_TABLE = 1 << 20;
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final CoinType[] descending;
+    private final long[] values;
+    private final boolean canonical;
+    private final boolean exact;
+
+    // Non-canonical sets only: fewest coins for each amount up to limit, and the last coin used
+    private final int limit;
+    private final int[] minCoins;
+    private final byte[] lastCoin;
+
+    ChangeMaker(@Nonnull CoinType[] descending, @Nonnull long[] values) {
+        this.descending = descending;
+        this.values = values;
+        this.canonical = isCanonical(values);
+
+        if (canonical) {
+            this.exact = true;
+            this.limit = 0;
+            this.minCoins = null;
+            this.lastCoin = null;
+            return;
+        }
+
+        // An optimal breakdown holds fewer than lcm(c, top) / c coins of each
+        // smaller coin c, so everything below the top coin sums to at most B.
+        long top = values[0];
+        long bound = top;
+        for (int i = 1; i < values.length && bound < MAX_TABLE; i++) {
+            bound += lcmCapped(values[i], top) - values[i];
+        }
+        this.exact = bound < MAX_TABLE;
+        this.limit = (int) Math.min(bound, MAX_TABLE - 1);
+        this.minCoins = new int[limit + 1];
+        this.lastCoin = new byte[limit + 1];
+
+        Arrays.fill(minCoins, UNREACHABLE);
+        minCoins[0] = 0;
+        for (int amount = 1; amount <= limit; amount++) {
+            for (int k = 0; k < values.length; k++) {
+                long value = values[k];
+                if (value > amount) continue;
+                int prev = minCoins[amount - (int) value];
+                if (prev != UNREACHABLE && prev + 1 < minCoins[amount]) {
+                    minCoins[amount] = prev + 1;
+                    lastCoin[amount] = (byte) k;
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether greedy breakdowns are always optimal for this set.
+     */
+    boolean isCanonical() {
+        return canonical;
+    }
+
+    /**
+     * Whether every breakdown is optimal. False for non-canonical sets whose
+     * coin values are too far apart for the DP table; large amounts then get a
+     * valid but possibly not minimal breakdown.
+     */
+    boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Break an amount into the fewest coins.
+     * If the amount can't be made exactly, the leftover is dropped (as greedy always did).
+     */
+    @Nonnull
+    CoinVector breakdown(long amount, @Nonnull CoinVector into) {
+        into.clear();
+        if (amount <= 0 || values.length == 0) return into;
+        if (canonical) return greedy(amount, into);
+
+        long top = values[0];
+        long rest = amount;
+        if (amount > limit) {
+            // Largest amount in the table with the same remainder mod the top coin
+            long r = limit - Math.floorMod(limit - amount, top);
+            while (r >= 0 && minCoins[(int) r] == UNREACHABLE) {
+                r -= top;
+            }
+            if (r < 0) return greedy(amount, into);
+            into.set(descending[0], (amount - r) / top);
+            rest = r;
+        } else if (minCoins[(int) amount] == UNREACHABLE) {
+            return greedy(amount, into);
+        }
+
+        for (int r = (int) rest; r > 0; r -= (int) values[lastCoin[r]]) {
+            into.add(descending[lastCoin[r]], 1);
+        }
+        return into;
+    }
+
+    private CoinVector greedy(long amount, CoinVector into) {
+        long remaining = amount;
+        for (int k = 0; k < values.length; k++) {
+            long value = values[k];
+            if (remaining >= value) {
+                into.set(descending[k], remaining / value);
+                remaining %= value;
+            }
+        }
+        return into;
+    }
+
+    // ========== Canonical test ==========
+
+    /**
+     * Pearson's O(n^3) test: the smallest counterexample to greedy, if any, is
+     * one of the candidates built from the greedy breakdown of c[i-1] - 1.
+     * Sets without a unit coin are treated as non-canonical, since greedy can
+     * miss amounts they can actually make.
+     */
+    private static boolean isCanonical(long[] c) {
+        int n = c.length;
+        if (n <= 1) return true;
+        if (c[n - 1] != 1) return false;
+
+        long[] g = new long[n];
+        for (int i = 1; i < n; i++) {
+            greedyCounts(c, c[i - 1] - 1, g);
+            for (int j = i; j < n; j++) {
+                long coins = 0;
+                long amount = 0;
+                for (int k = 0; k < j; k++) {
+                    coins += g[k];
+                    amount += g[k] * c[k];
+                }
+                coins += g[j] + 1;
+                amount += (g[j] + 1) * c[j];
+
+                if (greedyCount(c, amount) > coins) return false;
+            }
+        }
+        return true;
+    }
+
+    private static void greedyCounts(long[] c, long amount, long[] into) {
+        long remaining = amount;
+        for (int k = 0; k < c.length; k++) {
+            into[k] = remaining / c[k];
+            remaining %= c[k];
+        }
+    }
+
+    private static long greedyCount(long[] c, long amount) {
+        long coins = 0;
+        long remaining = amount;
+        for (long value : c) {
+            coins += remaining / value;
+            remaining %= value;
+        }
+        return coins;
+    }
+
+    private static long lcmCapped(long a, long b) {
+        long x = a, y = b;
+        while (y != 0) {
+            long t = x % y;
+            x = y;
+            y = t;
+        }
+        long lcm = (a / x) * b;
+        // Overflowed or beyond anything the table could hold
+        return lcm <= 0 || lcm / b != a / x ? Long.MAX_VALUE / 2 : lcm;
+    }
+}
@@ -91,6 +91,9 @@ public class CoinAssetManager {
                 extractResourceIfMissing(textureName);
             }
             
+            extractResourceIfMissing(CoinPouch.ITEM_ID + ".png");
+            extractResourceIfMissing(Banknote.ITEM_ID + ".png");
+            
             extractResourceIfMissing(MODEL_DROPPED);
             extractResourceIfMissing(MODEL_HELD);
             
@@ -99,12 +102,16 @@ public class CoinAssetManager {
                 String iconName = "Coin_" + capitalizeFirst(type.name().toLowerCase()) + ".png";
                 extractIconIfMissing(iconName);
             }
+            extractIconIfMissing(CoinPouch.ITEM_ID + ".png");
+            extractIconIfMissing(Banknote.ITEM_ID + ".png");
             
             // Extract item definitions (critical for items to work!)
             for (CoinType type : CoinType.values()) {
                 String itemName = "Coin_" + capitalizeFirst(type.name().toLowerCase()) + ".json";
                 extractItemDefinitionIfMissing(itemName);
             }
+            extractItemDefinitionIfMissing(CoinPouch.ITEM_ID + ".json");
+            extractItemDefinitionIfMissing(Banknote.ITEM_ID + ".json");
             
             // Extract language files (so admins can customize coin names and descriptions)
             for (String locale : LOCALES) {
@@ -179,6 +186,8 @@ public class CoinAssetManager {
             - Coin_Gold.png      - Gold coin (value: 1,000)
             - Coin_Mithril.png   - Mithril coin (value: 10,000)
             - Coin_Adamantite.png - Adamantite coin (value: 100,000)
+            - Coin_Pouch.png     - Coin pouch (holds any value)
+            - Coin_Banknote.png  - Banknote (redeemed at the bank)
             
             HOW TO CUSTOMIZE:
             1. Replace the PNG textures (keep 64x64 dimensions)
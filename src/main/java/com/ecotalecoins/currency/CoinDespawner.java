@@ -0,0 +1,325 @@
+package com.ecotalecoins.currency;
+
+import com.ecotalecoins.transaction.BankGateway;
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.RemoveReason;
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Removes dropped coin piles when their time on the ground runs out.
+ *
+ * Every pile {@link CoinDropper} spawns gets a lifetime, longer for piles worth
+ * more. Deadlines sit in a hashed timing wheel per world: {@link #WHEEL_SLOTS}
+ * slots of {@link #TICK_MILLIS}, each a linked list in primitive arrays. A tick
+ * visits one slot, so expiry costs the piles due then (plus the few a full
+ * rotation ahead), never a pass over all coins. A background ticker hands each
+ * world one task per tick, which removes that tick's piles from the world's
+ * Store together.
+ *
+ * Piles that merged away or were picked up first are skipped when their slot
+ * comes round; the entry is checked against {@link GroundCoinIndex}. Topping
+ * up a pile doesn't extend its life, so a farm can't keep one pile forever.
+ *
+ * Despawned value can be paid into a sink account instead of vanishing.
+ * Off by default: piles then live as long as the engine's item lifetime.
+ *
+ * @author Ecotale
+ * @since 1.2.0
+ */
+public final class CoinDespawner {
+
+    public static final long TICK_MILLIS = 1_000L;
+    public static final int WHEEL_SLOTS = 512;
+
+    private static final int NONE = -1;
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+
+    /**
+     * Despawn settings, published by {@link com.ecotalecoins.config.CoinConfig#load()}.
+     * @param baseSeconds      lifetime of a pile worth less than 10
+     * @param secondsPerDigit  extra lifetime per extra digit of the pile's value
+     * @param maxSeconds       lifetime cap
+     * @param sinkAccount      bank account despawned value is paid into, or null to let it vanish
+     */
+    public record Settings(boolean enabled, long baseSeconds, long secondsPerDigit, long maxSeconds, @Nullable UUID sinkAccount) {
+        public static final Settings DEFAULT = new Settings(false, 300L, 60L, 1_800L, null);
+
+        /**
+         * Lifetime in seconds of a pile worth {@code value}.
+         */
+        public long lifetimeSeconds(long value) {
+            int digits = value < 10 ? 1 : (int) Math.log10(value) + 1;
+            long extra = secondsPerDigit * (digits - 1);
+            return Math.max(1L, Math.min(maxSeconds, baseSeconds + extra));
+        }
+    }
+
+    private static volatile Settings settings = Settings.DEFAULT;
+
+    private static final ConcurrentHashMap<World, Wheel> wheels = new ConcurrentHashMap<>();
+    private static final Object tickerLock = new Object();
+    private static ScheduledExecutorService ticker;
+
+    private static final LongAdder despawned = new LongAdder();
+    private static final LongAdder despawnedValue = new LongAdder();
+    // Despawned value not yet paid into the sink; paid from the ticker, off the world threads
+    private static final LongAdder sinkOwed = new LongAdder();
+
+    private CoinDespawner() {}
+
+    // ========== Lifecycle ==========
+
+    /**
+     * Apply new settings, starting or stopping the ticker. Turning despawn off
+     * forgets every scheduled pile.
+     */
+    public static void configure(@Nonnull Settings newSettings) {
+        settings = newSettings;
+        synchronized (tickerLock) {
+            if (newSettings.enabled() && ticker == null) {
+                ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "EcotaleCoins-Despawn");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                ticker.scheduleAtFixedRate(CoinDespawner::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+            } else if (!newSettings.enabled() && ticker != null) {
+                ticker.shutdown();
+                ticker = null;
+                wheels.clear();
+            }
+        }
+    }
+
+    @Nonnull
+    public static Settings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Stop the ticker and pay the sink what it is owed. Scheduled piles are
+     * left to the engine's item lifetime.
+     */
+    public static void shutdown() {
+        synchronized (tickerLock) {
+            if (ticker != null) {
+                ticker.shutdown();
+                try {
+                    ticker.awaitTermination(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                ticker = null;
+            }
+            wheels.clear();
+        }
+        paySink();
+    }
+
+    /**
+     * Give a freshly indexed pile its lifetime. Called on the world's thread.
+     */
+    static void schedule(@Nonnull GroundCoinIndex index, int id) {
+        Settings current = settings;
+        if (!current.enabled()) return;
+
+        Ref<EntityStore> ref = index.refOf(id);
+        if (ref == null) return;
+
+        long ticks = Math.ceilDiv(TimeUnit.SECONDS.toMillis(current.lifetimeSeconds(index.valueOf(id))), TICK_MILLIS);
+        wheels.computeIfAbsent(index.getWorld(), w -> new Wheel()).add(id, ref, ticks);
+    }
+
+    // ========== Ticking ==========
+
+    private static void tick() {
+        try {
+            for (var entry : wheels.entrySet()) {
+                World world = entry.getKey();
+                Wheel wheel = entry.getValue();
+                // One task in flight per world; a lagging world catches up on its next run
+                if (wheel.size == 0 || !wheel.queued.compareAndSet(false, true)) continue;
+                try {
+                    world.execute(() -> {
+                        try {
+                            wheel.advance(world, System.nanoTime());
+                        } finally {
+                            wheel.queued.set(false);
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    // World is gone
+                    wheels.remove(world, wheel);
+                    GroundCoinIndex.removeWorld(world);
+                }
+            }
+            paySink();
+        } catch (RuntimeException e) {
+            com.ecotale.util.EcoLogger.warn("Coin despawn tick failed: " + e.getMessage());
+        }
+    }
+
+    private static void paySink() {
+        UUID sink = settings.sinkAccount();
+        long owed = sinkOwed.sumThenReset();
+        if (owed <= 0) return;
+        if (sink == null) return;
+        if (!BankGateway.deposit(sink, owed)) {
+            sinkOwed.add(owed);
+            com.ecotale.util.EcoLogger.warn("Could not pay " + owed + " despawned coin value into sink account " + sink + ", will retry");
+        }
+    }
+
+    /**
+     * Expire one pile (world thread). Skipped unless the index still tracks this exact entity.
+     */
+    private static void expire(World world, Store<EntityStore> store, int id, Ref<EntityStore> ref) {
+        GroundCoinIndex index = GroundCoinIndex.forWorld(world);
+        if (index.refOf(id) != ref) return;
+
+        if (!ref.isValid()) {
+            index.remove(id, GroundCoinIndex.Removal.GONE);
+            return;
+        }
+        long value = index.valueOf(id);
+        index.remove(id, GroundCoinIndex.Removal.DESPAWNED);
+        store.removeEntity(ref, RemoveReason.REMOVE);
+
+        despawned.increment();
+        despawnedValue.add(value);
+        if (settings.sinkAccount() != null) {
+            sinkOwed.add(value);
+        }
+    }
+
+    // ========== Statistics ==========
+
+    /**
+     * Piles despawned since startup.
+     */
+    public static long getDespawnedCount() {
+        return despawned.sum();
+    }
+
+    /**
+     * Value of the piles despawned since startup.
+     */
+    public static long getDespawnedValue() {
+        return despawnedValue.sum();
+    }
+
+    // ========== Internals ==========
+
+    /**
+     * One world's timing wheel. Entries are only touched on the world's thread.
+     */
+    private static final class Wheel {
+        private final int[] heads = new int[WHEEL_SLOTS];
+        private final long startNanos = System.nanoTime();
+        // Ticks processed so far; slot of tick t is t & (WHEEL_SLOTS - 1)
+        private long tick;
+
+        // Entries, by wheel id
+        private int[] indexIds = new int[64];
+        @SuppressWarnings("unchecked")
+        private Ref<EntityStore>[] refs = new Ref[64];
+        private long[] deadlines = new long[64];
+        private int[] next = new int[64];
+        private int highWater;
+        private int freeHead = NONE;
+
+        final AtomicBoolean queued = new AtomicBoolean();
+        volatile int size;
+
+        Wheel() {
+            Arrays.fill(heads, NONE);
+        }
+
+        void add(int indexId, Ref<EntityStore> ref, long ticks) {
+            int entry;
+            if (freeHead != NONE) {
+                entry = freeHead;
+                freeHead = next[entry];
+            } else {
+                if (highWater == indexIds.length) {
+                    grow();
+                }
+                entry = highWater++;
+            }
+
+            // Count from real time, not from where a lagging wheel has got to
+            long deadline = Math.max(tick, elapsedTicks(System.nanoTime())) + Math.max(1L, ticks);
+            int slot = (int) (deadline & (WHEEL_SLOTS - 1));
+            indexIds[entry] = indexId;
+            refs[entry] = ref;
+            deadlines[entry] = deadline;
+            next[entry] = heads[slot];
+            heads[slot] = entry;
+            size++;
+        }
+
+        /**
+         * Process every tick up to now, removing the piles that fall due.
+         */
+        void advance(World world, long nowNanos) {
+            long due = elapsedTicks(nowNanos);
+            if (tick >= due || size == 0) {
+                tick = Math.max(tick, due);
+                return;
+            }
+
+            Store<EntityStore> store = world.getEntityStore().getStore();
+            while (tick < due) {
+                tick++;
+                int slot = (int) (tick & (WHEEL_SLOTS - 1));
+                int previous = NONE;
+                int entry = heads[slot];
+                while (entry != NONE) {
+                    int following = next[entry];
+                    if (deadlines[entry] <= tick) {
+                        if (previous == NONE) {
+                            heads[slot] = following;
+                        } else {
+                            next[previous] = following;
+                        }
+                        Ref<EntityStore> ref = refs[entry];
+                        int indexId = indexIds[entry];
+                        refs[entry] = null;
+                        next[entry] = freeHead;
+                        freeHead = entry;
+                        size--;
+                        expire(world, store, indexId, ref);
+                    } else {
+                        previous = entry;
+                    }
+                    entry = following;
+                }
+            }
+        }
+
+        private long elapsedTicks(long nowNanos) {
+            return (nowNanos - startNanos) / TICK_NANOS;
+        }
+
+        private void grow() {
+            int capacity = indexIds.length * 2;
+            indexIds = Arrays.copyOf(indexIds, capacity);
+            refs = Arrays.copyOf(refs, capacity);
+            deadlines = Arrays.copyOf(deadlines, capacity);
+            next = Arrays.copyOf(next, capacity);
+        }
+    }
+}
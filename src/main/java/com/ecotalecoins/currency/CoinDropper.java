@@ -5,15 +5,19 @@ import com.hypixel.hytale.component.CommandBuffer;
 import com.hypixel.hytale.component.ComponentAccessor;
 import com.hypixel.hytale.component.Holder;
 import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.component.RemoveReason;
+import com.hypixel.hytale.component.Store;
 import com.hypixel.hytale.math.vector.Vector3d;
 import com.hypixel.hytale.math.vector.Vector3f;
 import com.hypixel.hytale.server.core.inventory.ItemStack;
 import com.hypixel.hytale.server.core.modules.entity.component.TransformComponent;
 import com.hypixel.hytale.server.core.modules.entity.item.ItemComponent;
+import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 
 import javax.annotation.Nonnull;
-import java.util.Map;
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
 import java.util.concurrent.ThreadLocalRandom;
 
 /**
@@ -25,8 +29,6 @@ import java.util.concurrent.ThreadLocalRandom;
  */
 public class CoinDropper {
 
-    private static final int MAX_STACK_SIZE = 999;
-
     private CoinDropper() {}
 
     /**
@@ -51,6 +53,9 @@ public class CoinDropper {
 
     /**
      * Drop coins at a specific world position.
+     * With merging on, coins first top up nearby piles of the same coin; with
+     * aggregation on, the drop is held until the end of the tick and spawned
+     * together with other drops nearby (see {@link DropAggregator}).
      */
     public static void dropCoins(
         @Nonnull ComponentAccessor<EntityStore> store,
@@ -60,39 +65,242 @@ public class CoinDropper {
     ) {
         if (amount <= 0) return;
 
-        Map<CoinType, Integer> breakdown = CoinManager.calculateOptimalBreakdown(amount);
+        World world = store.getExternalData().getWorld();
+        if (world != null && DropAggregator.isEnabled()) {
+            DropAggregator.submit(world, position, amount);
+            return;
+        }
+        drop(store, Entities.of(commandBuffer), position, amount);
+    }
+
+    /**
+     * Drop coins from a world task, outside any system (no CommandBuffer).
+     */
+    public static void dropFromWorldTask(
+        @Nonnull Store<EntityStore> store,
+        @Nonnull Vector3d position,
+        long amount
+    ) {
+        if (amount <= 0) return;
+        drop(store, Entities.of(store), position, amount);
+    }
+
+    private static void drop(
+        @Nonnull ComponentAccessor<EntityStore> store,
+        @Nonnull Entities entities,
+        @Nonnull Vector3d position,
+        long amount
+    ) {
+        if (amount <= 0) return;
+
+        CoinVector breakdown = CoinManager.calculateOptimalBreakdown(amount, CoinVector.scratch());
+        World world = store.getExternalData().getWorld();
+        GroundCoinIndex index = world != null ? GroundCoinIndex.forWorld(world) : null;
+        MergeSettings settings = mergeSettings;
+
+        if (index == null || !settings.enabled()) {
+            for (CoinType type : CoinType.valuesDescending()) {
+                long quantity = breakdown.get(type);
+                if (quantity > 0) {
+                    dropCoinStacks(store, entities, index, position, type, quantity);
+                }
+            }
+            return;
+        }
+
+        // Upgraded piles hand their coins back through the queue, to be dropped where the pile was
+        ArrayDeque<Drop> queue = new ArrayDeque<>();
+        queue.add(new Drop(position, new CoinVector().copyFrom(breakdown)));
+        while (!queue.isEmpty()) {
+            Drop drop = queue.poll();
+            for (CoinType type : CoinType.valuesDescending()) {
+                long quantity = drop.coins().get(type);
+                if (quantity <= 0) continue;
+
+                quantity = mergeIntoNearby(store, entities, index, settings, drop.position(), type, quantity, queue);
+                if (quantity > 0) {
+                    dropCoinStacks(store, entities, index, drop.position(), type, quantity);
+                }
+            }
+        }
+    }
+
+    // ========== Merging ==========
+
+    /**
+     * Ground coin merging, published by {@link com.ecotalecoins.config.CoinConfig#load()}.
+     * @param enabled top up nearby piles instead of spawning new entities
+     * @param radius  how far (in blocks) a pile may be from the drop
+     * @param upgrade swap a merged pile for higher coins when its value allows
+     */
+    public record MergeSettings(boolean enabled, double radius, boolean upgrade) {
+        public static final MergeSettings DEFAULT = new MergeSettings(false, 1.5, false);
+    }
+
+    private static volatile MergeSettings mergeSettings = MergeSettings.DEFAULT;
+
+    public static void setMergeSettings(@Nonnull MergeSettings settings) {
+        mergeSettings = settings;
+    }
+
+    @Nonnull
+    public static MergeSettings getMergeSettings() {
+        return mergeSettings;
+    }
+
+    private record Drop(Vector3d position, CoinVector coins) {}
+
+    /**
+     * Where spawns and removals go: the caller's CommandBuffer inside a system,
+     * or the world's Store from a world task.
+     */
+    private record Entities(@Nullable CommandBuffer<EntityStore> buffer, @Nullable Store<EntityStore> store) {
+        static Entities of(@Nonnull CommandBuffer<EntityStore> buffer) {
+            return new Entities(buffer, null);
+        }
+
+        static Entities of(@Nonnull Store<EntityStore> store) {
+            return new Entities(null, store);
+        }
+
+        Ref<EntityStore> add(Holder<EntityStore> holder) {
+            return buffer != null ? buffer.addEntity(holder, AddReason.SPAWN) : store.addEntity(holder, AddReason.SPAWN);
+        }
+
+        void remove(Ref<EntityStore> ref) {
+            if (buffer != null) {
+                buffer.removeEntity(ref, RemoveReason.REMOVE);
+            } else {
+                store.removeEntity(ref, RemoveReason.REMOVE);
+            }
+        }
+    }
+
+    /**
+     * Add coins to nearby piles of the same type, up to their stack limit.
+     * Piles are matched on where they are now, not where they were dropped.
+     * @return the quantity that didn't fit
+     */
+    private static long mergeIntoNearby(
+        @Nonnull ComponentAccessor<EntityStore> store,
+        @Nonnull Entities entities,
+        @Nonnull GroundCoinIndex index,
+        @Nonnull MergeSettings settings,
+        @Nonnull Vector3d position,
+        @Nonnull CoinType coinType,
+        long quantity,
+        @Nonnull ArrayDeque<Drop> queue
+    ) {
+        DenominationTable table = DenominationTable.get();
+        int maxStack = table.maxStack(coinType);
+        double radiusSq = settings.radius() * settings.radius();
+        long[] remaining = {quantity};
+
+        index.forEachNear(coinType, position.getX(), position.getY(), position.getZ(), settings.radius(), (id, ref) -> {
+            ItemComponent item = store.getComponent(ref, ItemComponent.getComponentType());
+            ItemStack pile = item != null ? item.getItemStack() : null;
+            TransformComponent transform = store.getComponent(ref, TransformComponent.getComponentType());
+            if (pile == null || pile.isEmpty() || table.fromItemId(pile.getItemId()) != coinType || transform == null) {
+                return true;
+            }
 
-        for (Map.Entry<CoinType, Integer> entry : breakdown.entrySet()) {
-            CoinType type = entry.getKey();
-            int quantity = entry.getValue();
+            // The index has the pile where it was dropped; it may have rolled away since
+            Vector3d at = transform.getPosition();
+            index.move(id, at.getX(), at.getY(), at.getZ());
+            double dx = at.getX() - position.getX();
+            double dy = at.getY() - position.getY();
+            double dz = at.getZ() - position.getZ();
+            if (dx * dx + dy * dy + dz * dz > radiusSq) {
+                return true;
+            }
+            int room = maxStack - pile.getQuantity();
+            if (room <= 0) {
+                return true;
+            }
 
-            if (quantity > 0) {
-                dropCoinStacks(store, commandBuffer, position, type, quantity);
+            int added = (int) Math.min(room, remaining[0]);
+            int merged = pile.getQuantity() + added;
+            remaining[0] -= added;
+            item.setItemStack(pile.withQuantity(merged));
+            index.setQuantity(id, merged);
+
+            if (settings.upgrade()) {
+                upgradePile(store, entities, index, id, ref, item, pile, coinType, merged, queue);
             }
+            return remaining[0] > 0;
+        });
+        return remaining[0];
+    }
+
+    /**
+     * Replace a pile with fewer, higher coins if its value allows. Only the pile's
+     * own coin stays in the pile; the rest is queued to drop at the pile's position.
+     */
+    private static void upgradePile(
+        @Nonnull ComponentAccessor<EntityStore> store,
+        @Nonnull Entities entities,
+        @Nonnull GroundCoinIndex index,
+        int id,
+        @Nonnull Ref<EntityStore> ref,
+        @Nonnull ItemComponent item,
+        @Nonnull ItemStack pile,
+        @Nonnull CoinType coinType,
+        int quantity,
+        @Nonnull ArrayDeque<Drop> queue
+    ) {
+        long value = Math.multiplyExact(DenominationTable.get().value(coinType), (long) quantity);
+        CoinVector better = CoinManager.calculateOptimalBreakdown(value, new CoinVector());
+        if (better.totalValue() != value || better.coinCount() >= quantity) {
+            return;
+        }
+
+        TransformComponent transform = store.getComponent(ref, TransformComponent.getComponentType());
+        if (transform == null) {
+            return;
+        }
+
+        long keep = better.get(coinType);
+        better.set(coinType, 0);
+        if (keep > 0) {
+            item.setItemStack(pile.withQuantity((int) keep));
+            index.setQuantity(id, (int) keep);
+        } else {
+            index.remove(id, GroundCoinIndex.Removal.MERGED);
+            entities.remove(ref);
         }
+        queue.add(new Drop(transform.getPosition().clone(), better));
     }
 
+    // ========== Spawning ==========
+
     private static void dropCoinStacks(
         @Nonnull ComponentAccessor<EntityStore> store,
-        @Nonnull CommandBuffer<EntityStore> commandBuffer,
+        @Nonnull Entities entities,
+        @Nullable GroundCoinIndex index,
         @Nonnull Vector3d position,
         @Nonnull CoinType coinType,
-        int totalQuantity
+        long totalQuantity
     ) {
-        int remaining = totalQuantity;
+        long remaining = totalQuantity;
+        int maxStack = DenominationTable.get().maxStack(coinType);
         
         while (remaining > 0) {
-            int stackSize = Math.min(remaining, MAX_STACK_SIZE);
+            int stackSize = (int) Math.min(remaining, maxStack);
             remaining -= stackSize;
             
             ItemStack coinStack = new ItemStack(coinType.getItemId(), stackSize);
-            spawnDroppedItem(store, commandBuffer, coinStack, position);
+            Ref<EntityStore> ref = spawnDroppedItem(store, entities, coinStack, position);
+            if (ref != null && index != null) {
+                int id = index.add(ref, coinType, stackSize, position.getX(), position.getY(), position.getZ());
+                CoinDespawner.schedule(index, id);
+            }
         }
     }
 
-    private static void spawnDroppedItem(
+    @Nullable
+    private static Ref<EntityStore> spawnDroppedItem(
         @Nonnull ComponentAccessor<EntityStore> store,
-        @Nonnull CommandBuffer<EntityStore> commandBuffer,
+        @Nonnull Entities entities,
         @Nonnull ItemStack itemStack,
         @Nonnull Vector3d position
     ) {
@@ -118,7 +326,8 @@ public class CoinDropper {
                 itemComponent.setPickupDelay(0.5f);
             }
 
-            commandBuffer.addEntity(itemEntityHolder, AddReason.SPAWN);
+            return entities.add(itemEntityHolder);
         }
+        return null;
     }
 }
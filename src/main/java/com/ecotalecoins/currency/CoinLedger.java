@@ -0,0 +1,123 @@
+package com.ecotalecoins.currency;
+
+import com.hypixel.hytale.server.core.entity.entities.Player;
+
+import javax.annotation.Nonnull;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Per-player cache of the last coin scan.
+ *
+ * Balance reads (GUI previews, provider polling from other plugins) return the
+ * cached scan until the player's inventory changes. Entries are invalidated
+ * by inventory change events and by CoinManager after its own mutations.
+ *
+ * Cached scans are frozen - code that is about to mutate the inventory must
+ * take a fresh {@link CoinScan#of(Player)} instead.
+ *
+ * @author Ecotale
+ * @since 1.2.0
+ */
+public final class CoinLedger {
+
+    private static final Logger LOGGER = Logger.getLogger("EcotaleCoins");
+
+    private static final ConcurrentHashMap<UUID, Entry> ledgers = new ConcurrentHashMap<>();
+
+    // Debug: compare every cache hit against a full rescan
+    private static volatile boolean verify = false;
+
+    private CoinLedger() {}
+
+    /**
+     * Get the player's current coin scan, rescanning only if the inventory
+     * changed since the last read. The returned scan must not be rescanned.
+     */
+    @Nonnull
+    public static CoinScan get(@Nonnull Player player) {
+        UUID playerId = player.getUuid();
+        if (playerId == null) {
+            return CoinScan.of(player);
+        }
+
+        Entry entry = ledgers.computeIfAbsent(playerId, k -> new Entry());
+
+        // Read the version before scanning: an invalidation that races with the
+        // rescan bumps it again, so the stale snapshot is never considered valid.
+        long version = entry.version.get();
+        Snapshot snapshot = entry.snapshot;
+        if (snapshot != null && snapshot.version == version) {
+            if (verify) {
+                return verified(player, entry, snapshot);
+            }
+            return snapshot.scan;
+        }
+
+        CoinScan fresh = CoinScan.of(player).freeze();
+        entry.snapshot = new Snapshot(fresh, version);
+        return fresh;
+    }
+
+    private static CoinScan verified(Player player, Entry entry, Snapshot snapshot) {
+        CoinScan fresh = CoinScan.of(player).freeze();
+        if (!fresh.sameCoinsAs(snapshot.scan)) {
+            LOGGER.warning("Coin ledger out of sync for " + player.getUuid() + ": cached "
+                + snapshot.scan.totalValue() + ", actual " + fresh.totalValue());
+            entry.snapshot = new Snapshot(fresh, snapshot.version);
+        }
+        return fresh;
+    }
+
+    /**
+     * Drop the cached scan for a player. Call after mutating their inventory.
+     */
+    public static void invalidate(@Nonnull Player player) {
+        UUID playerId = player.getUuid();
+        if (playerId != null) {
+            invalidate(playerId);
+        }
+    }
+
+    /**
+     * Drop the cached scan for a player by UUID.
+     */
+    public static void invalidate(@Nonnull UUID playerId) {
+        Entry entry = ledgers.get(playerId);
+        if (entry != null) {
+            entry.version.incrementAndGet();
+        }
+    }
+
+    /**
+     * Forget a player entirely (on disconnect).
+     */
+    public static void remove(@Nonnull UUID playerId) {
+        ledgers.remove(playerId);
+    }
+
+    /**
+     * Drop every cached scan (e.g. after the denomination table changed).
+     */
+    public static void invalidateAll() {
+        for (Entry entry : ledgers.values()) {
+            entry.version.incrementAndGet();
+        }
+    }
+
+    /**
+     * Enable or disable cache verification against full rescans.
+     */
+    public static void setVerify(boolean enabled) {
+        verify = enabled;
+    }
+
+    private static final class Entry {
+        final AtomicLong version = new AtomicLong();
+        volatile Snapshot snapshot;
+    }
+
+    private record Snapshot(CoinScan scan, long version) {}
+}
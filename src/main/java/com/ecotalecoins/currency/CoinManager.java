@@ -4,11 +4,8 @@ import com.hypixel.hytale.server.core.entity.entities.Player;
 import com.hypixel.hytale.server.core.inventory.Inventory;
 import com.hypixel.hytale.server.core.inventory.ItemStack;
 import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
-import com.hypixel.hytale.server.core.inventory.transaction.ItemStackTransaction;
 
 import javax.annotation.Nonnull;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -26,77 +23,55 @@ public class CoinManager {
      * @return Total value in base units (copper)
      */
     public static long countCoins(@Nonnull Player player) {
-        Inventory inventory = player.getInventory();
-        long total = 0;
-
-        total += countInContainer(inventory.getStorage());
-        total += countInContainer(inventory.getHotbar());
-        total += countInContainer(inventory.getBackpack());
-
-        return total;
+        return CoinLedger.get(player).totalValue();
     }
 
     public static long countInContainer(@Nonnull ItemContainer container) {
+        DenominationTable table = DenominationTable.get();
         long total = 0;
         for (short i = 0; i < container.getCapacity(); i++) {
             ItemStack stack = container.getItemStack(i);
-            if (stack != null && !stack.isEmpty()) {
-                CoinType type = CoinType.fromItemId(stack.getItemId());
+            if (CoinPouch.isPouch(stack)) {
+                total = Math.addExact(total, CoinPouch.valueOf(stack));
+            } else if (stack != null && !stack.isEmpty()) {
+                CoinType type = table.fromItemId(stack.getItemId());
                 if (type != null) {
-                    total += type.getValue() * stack.getQuantity();
+                    total = Math.addExact(total, Math.multiplyExact(table.value(type), (long) stack.getQuantity()));
                 }
             }
         }
         return total;
     }
     
+    /**
+     * Empty slots in the containers coins are given to.
+     */
     public static int countFreeSlots(@Nonnull Player player) {
-        Inventory inventory = player.getInventory();
-        // Only count storage slots - giveSpecificCoins only uses storage
-        return countFreeSlotsInContainer(inventory.getStorage());
-    }
-    
-    private static int countFreeSlotsInContainer(@Nonnull ItemContainer container) {
-        int free = 0;
-        for (short i = 0; i < container.getCapacity(); i++) {
-            ItemStack stack = container.getItemStack(i);
-            if (stack == null || stack.isEmpty()) {
-                free++;
-            }
-        }
-        return free;
+        return ContainerPolicy.get().freeSlots(CoinScan.of(player));
     }
 
     /**
      * Give coins to player, using optimal denominations.
+     * In pouch mode the value goes into a pouch instead, with one slot write.
+     * Nothing is given unless every coin fits.
      */
     public static boolean giveCoins(@Nonnull Player player, long amount) {
         if (amount <= 0) return false;
 
-        Inventory inventory = player.getInventory();
-        Map<CoinType, Integer> breakdown = calculateOptimalBreakdown(amount);
-        final int MAX_STACK_SIZE = 999;
-
-        for (Map.Entry<CoinType, Integer> entry : breakdown.entrySet()) {
-            CoinType type = entry.getKey();
-            int remaining = entry.getValue();
-
-            while (remaining > 0) {
-                int stackSize = Math.min(remaining, MAX_STACK_SIZE);
-                ItemStack coinStack = new ItemStack(type.getItemId(), stackSize);
-                ItemStackTransaction transaction = inventory.getStorage().addItemStack(coinStack);
-
-                if (!transaction.succeeded()) {
-                    transaction = inventory.getHotbar().addItemStack(coinStack);
-                    if (!transaction.succeeded()) {
-                        LOGGER.fine("Could not give all coins (inventory full). Type: " + type + " Remaining: " + remaining);
-                        return false;
-                    }
-                }
-                remaining -= stackSize;
-            }
+        CoinScan scan = CoinScan.of(player);
+        if (CoinPouch.give(player, scan, amount)) {
+            CoinLedger.invalidate(player);
+            return true;
         }
 
+        InventoryPlan plan = InventoryPlan.forGive(scan, amount);
+        if (plan == null) {
+            LOGGER.fine("Could not give " + amount + " (inventory full)");
+            return false;
+        }
+
+        plan.apply(player);
+        CoinLedger.invalidate(player);
         return true;
     }
 
@@ -105,88 +80,110 @@ public class CoinManager {
      */
     public static boolean takeCoins(@Nonnull Player player, long amount) {
         if (amount <= 0) return true;
+        return takeCoins(player, CoinScan.of(player), amount);
+    }
 
-        long currentBalance = countCoins(player);
-        if (currentBalance < amount) {
-            return false;
-        }
-
-        Inventory inventory = player.getInventory();
-        long remaining = amount;
+    /**
+     * Take exactly {@code amount} using a scan the caller already holds for this inventory.
+     * Pouches are spent first; coins pay the rest. Change is planned together with
+     * the payment, so either the whole amount is taken and the change fits, or the
+     * inventory is left untouched.
+     */
+    public static boolean takeCoins(@Nonnull Player player, @Nonnull CoinScan scan, long amount) {
+        if (amount <= 0) return true;
 
-        for (CoinType type : CoinType.valuesDescending()) {
-            if (remaining <= 0) break;
+        long fromPouches = Math.min(CoinPouch.takeableValue(scan), amount);
+        long fromCoins = amount - fromPouches;
 
-            remaining = removeCoinsOfType(inventory.getStorage(), type, remaining);
-            remaining = removeCoinsOfType(inventory.getHotbar(), type, remaining);
-            remaining = removeCoinsOfType(inventory.getBackpack(), type, remaining);
+        InventoryPlan plan = null;
+        if (fromCoins > 0) {
+            plan = InventoryPlan.forTake(scan, fromCoins);
+            if (plan == null) {
+                if (ContainerPolicy.get().takeValue(scan) >= amount) {
+                    LOGGER.fine("Could not take " + amount + " (no room for change)");
+                }
+                return false;
+            }
         }
 
-        if (remaining < 0) {
-            giveCoins(player, -remaining);
+        if (fromPouches > 0) {
+            CoinPouch.take(player, scan, fromPouches);
         }
-
-        return remaining <= 0;
+        if (plan != null) {
+            plan.apply(player);
+        }
+        CoinLedger.invalidate(player);
+        return true;
     }
 
-    private static long removeCoinsOfType(ItemContainer container, CoinType type, long remaining) {
-        if (remaining <= 0) return remaining;
-
-        for (short i = 0; i < container.getCapacity(); i++) {
-            ItemStack stack = container.getItemStack(i);
-            if (stack != null && type.getItemId().equals(stack.getItemId())) {
-                int quantity = stack.getQuantity();
-                long stackValue = type.getValue() * quantity;
-
-                if (stackValue <= remaining) {
-                    container.removeItemStack(stack);
-                    remaining -= stackValue;
-                } else {
-                    int coinsToRemove = (int) Math.ceil((double) remaining / type.getValue());
-                    int newQuantity = quantity - coinsToRemove;
-
-                    if (newQuantity > 0) {
-                        container.setItemStackForSlot(i, stack.withQuantity(newQuantity));
-                    } else {
-                        container.removeItemStack(stack);
-                    }
-
-                    long actualValueRemoved = coinsToRemove * type.getValue();
-                    remaining -= actualValueRemoved;
-                }
-
-                if (remaining <= 0) break;
-            }
-        }
+    /**
+     * Whether the coins in the containers the policy takes from cover {@code amount}.
+     */
+    public static boolean canAfford(@Nonnull Player player, long amount) {
+        return ContainerPolicy.get().takeValue(CoinLedger.get(player)) >= amount;
+    }
 
-        return remaining;
+    public static CoinVector calculateOptimalBreakdown(long amount) {
+        return calculateOptimalBreakdown(amount, new CoinVector());
     }
 
-    public static boolean canAfford(@Nonnull Player player, long amount) {
-        return countCoins(player) >= amount;
+    /**
+     * Break an amount into the fewest coins, writing the counts into a caller-supplied vector.
+     * Uses greedy for canonical coin values and an exact solver otherwise.
+     */
+    public static CoinVector calculateOptimalBreakdown(long amount, @Nonnull CoinVector into) {
+        return DenominationTable.get().breakdown(amount, into);
     }
 
-    public static Map<CoinType, Integer> calculateOptimalBreakdown(long amount) {
-        Map<CoinType, Integer> breakdown = new HashMap<>();
-        long remaining = amount;
+    /**
+     * Rearrange the player's coins into the fewest coins and stacks, in place.
+     * In pouch mode the coins are poured into a pouch instead.
+     * Only slots whose contents change are written; the value is unchanged.
+     * @return number of slot writes (0 if already consolidated), or -1 if the
+     *         consolidated layout doesn't fit and nothing was changed
+     */
+    public static int consolidate(@Nonnull Player player) {
+        CoinScan scan = CoinScan.of(player);
+        ContainerPolicy policy = ContainerPolicy.get();
+        // Coins only - pouches are already one slot each
+        long totalValue = policy.takeValue(scan) - CoinPouch.takeableValue(scan);
+        if (totalValue <= 0) return 0;
+
+        if (CoinPouch.slotsNeeded(scan, totalValue) >= 0) {
+            CoinVector all = new CoinVector();
+            for (CoinType type : CoinType.values()) {
+                all.set(type, policy.takeCount(scan, type));
+            }
+            InventoryPlan plan = InventoryPlan.forMutation(scan, all, new CoinVector());
+            // Fill the pouch first - it goes into a pouch or an empty slot, which the
+            // plan doesn't touch - and only clear the coins once the value is in it
+            if (plan != null && CoinPouch.give(player, scan, totalValue)) {
+                int writes = plan.apply(player);
+                CoinLedger.invalidate(player);
+                return writes + 1;
+            }
+        }
 
-        for (CoinType type : CoinType.valuesDescending()) {
-            if (remaining >= type.getValue()) {
-                int count = (int) (remaining / type.getValue());
-                breakdown.put(type, count);
-                remaining %= type.getValue();
+        CoinVector target = calculateOptimalBreakdown(totalValue, new CoinVector());
+        if (target.totalValue() != totalValue) {
+            // Value can't be made exactly from the enabled coins - just merge stacks
+            target.clear();
+            for (CoinType type : CoinType.values()) {
+                target.set(type, policy.takeCount(scan, type));
             }
         }
 
-        return breakdown;
-    }
+        InventoryPlan plan = InventoryPlan.forLayout(scan, target);
+        if (plan == null) {
+            LOGGER.fine("Could not consolidate " + totalValue + " (layout doesn't fit)");
+            return -1;
+        }
 
-    public static void consolidate(@Nonnull Player player) {
-        long totalValue = countCoins(player);
-        removeAllCoins(player);
-        if (totalValue > 0) {
-            giveCoins(player, totalValue);
+        int writes = plan.apply(player);
+        if (writes > 0) {
+            CoinLedger.invalidate(player);
         }
+        return writes;
     }
 
     public static void removeAllCoins(@Nonnull Player player) {
@@ -194,106 +191,56 @@ public class CoinManager {
         removeAllCoinsFromContainer(inventory.getStorage());
         removeAllCoinsFromContainer(inventory.getHotbar());
         removeAllCoinsFromContainer(inventory.getBackpack());
+        CoinLedger.invalidate(player);
     }
 
     private static void removeAllCoinsFromContainer(ItemContainer container) {
+        DenominationTable table = DenominationTable.get();
         for (short i = 0; i < container.getCapacity(); i++) {
             ItemStack stack = container.getItemStack(i);
-            if (stack != null && CoinType.isCoin(stack.getItemId())) {
+            if (stack != null && (CoinPouch.isPouch(stack) || table.fromItemId(stack.getItemId()) != null)) {
                 container.removeItemStack(stack);
             }
         }
     }
 
-    public static Map<CoinType, Integer> getBreakdown(@Nonnull Player player) {
-        Map<CoinType, Integer> breakdown = new HashMap<>();
-        Inventory inventory = player.getInventory();
-
-        countBreakdownInContainer(inventory.getStorage(), breakdown);
-        countBreakdownInContainer(inventory.getHotbar(), breakdown);
-        countBreakdownInContainer(inventory.getBackpack(), breakdown);
-
-        return breakdown;
+    public static CoinVector getBreakdown(@Nonnull Player player) {
+        return getBreakdown(player, new CoinVector());
     }
 
-    private static void countBreakdownInContainer(ItemContainer container, Map<CoinType, Integer> breakdown) {
-        for (short i = 0; i < container.getCapacity(); i++) {
-            ItemStack stack = container.getItemStack(i);
-            if (stack != null && !stack.isEmpty()) {
-                CoinType type = CoinType.fromItemId(stack.getItemId());
-                if (type != null) {
-                    breakdown.merge(type, stack.getQuantity(), Integer::sum);
-                }
-            }
-        }
+    /**
+     * Per-type coin counts in the player's inventory, written into a caller-supplied vector.
+     */
+    public static CoinVector getBreakdown(@Nonnull Player player, @Nonnull CoinVector into) {
+        return CoinLedger.get(player).coins(into);
     }
 
     public static boolean takeSpecificCoins(@Nonnull Player player, @Nonnull CoinType type, int count) {
         if (count <= 0) return true;
-        
-        Inventory inventory = player.getInventory();
-        int remaining = count;
-        
-        remaining = removeSpecificFromContainer(inventory.getStorage(), type, remaining);
-        remaining = removeSpecificFromContainer(inventory.getHotbar(), type, remaining);
-        remaining = removeSpecificFromContainer(inventory.getBackpack(), type, remaining);
-        
-        return remaining <= 0;
-    }
-    
-    private static int removeSpecificFromContainer(ItemContainer container, CoinType type, int remaining) {
-        if (remaining <= 0) return remaining;
-        
-        for (short i = 0; i < container.getCapacity(); i++) {
-            ItemStack stack = container.getItemStack(i);
-            if (stack != null && type.getItemId().equals(stack.getItemId())) {
-                int quantity = stack.getQuantity();
-                
-                if (quantity <= remaining) {
-                    container.removeItemStack(stack);
-                    remaining -= quantity;
-                } else {
-                    container.setItemStackForSlot(i, stack.withQuantity(quantity - remaining));
-                    remaining = 0;
-                }
-                
-                if (remaining <= 0) break;
-            }
+
+        CoinVector remove = new CoinVector().set(type, count);
+        InventoryPlan plan = InventoryPlan.forMutation(CoinScan.of(player), remove, new CoinVector());
+        if (plan == null) {
+            return false;
         }
-        
-        return remaining;
+
+        plan.apply(player);
+        CoinLedger.invalidate(player);
+        return true;
     }
 
     public static boolean giveSpecificCoins(@Nonnull Player player, @Nonnull CoinType type, int count) {
         if (count <= 0) return true;
-        
-        // PRE-VALIDATION: Check if ALL coins can fit BEFORE giving any
-        InventorySpaceCalculator.SpaceResult spaceCheck = 
-            InventorySpaceCalculator.canFitSpecific(player, type, count);
-        if (!spaceCheck.canFit()) {
-            return false; // Reject early - don't give partial coins
-        }
-        
-        Inventory inventory = player.getInventory();
-        final int MAX_STACK_SIZE = 999;
-        
-        int remaining = count;
-        ItemContainer storage = inventory.getStorage();
-        // NOTE: Only using storage (not hotbar) to match countFreeSlots validation
-        
-        while (remaining > 0) {
-            int stackSize = Math.min(remaining, MAX_STACK_SIZE);
-            ItemStack coinStack = new ItemStack(type.getItemId(), stackSize);
-            
-            ItemStackTransaction transaction = storage.addItemStack(coinStack);
-            if (transaction.succeeded()) {
-                remaining -= stackSize;
-            } else {
-                // This should NEVER happen after pre-validation
-                return false;
-            }
+
+        // Nothing is given unless every coin fits
+        CoinVector insert = new CoinVector().set(type, count);
+        InventoryPlan plan = InventoryPlan.forMutation(CoinScan.of(player), new CoinVector(), insert);
+        if (plan == null) {
+            return false;
         }
-        
+
+        plan.apply(player);
+        CoinLedger.invalidate(player);
         return true;
     }
 }
@@ -0,0 +1,184 @@
+package com.ecotalecoins.currency;
+
+import com.hypixel.hytale.codec.Codec;
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A single item that holds any amount of coin value in its metadata.
+ *
+ * A pouch is one slot whatever it holds, so a rich player's purse doesn't
+ * fill the inventory with coin stacks. Giving or taking value rewrites the
+ * pouch's metadata - one slot write, no restacking - and a scan reads its
+ * value straight from the stack. Pouches drop on death like coins, metadata
+ * and all.
+ *
+ * Pouches already in an inventory are always counted and spent. Whether
+ * given coins go into a pouch is the {@code coin_pouch_enabled} setting.
+ *
+ * @author Ecotale
+ * @since 1.2.0
+ */
+public final class CoinPouch {
+
+    public static final String ITEM_ID = "Coin_Pouch";
+    public static final String METADATA_KEY = "EcotaleCoins_PouchValue";
+
+    private static volatile boolean enabled = false;
+
+    private CoinPouch() {}
+
+    /**
+     * Turn pouch mode on or off. Published by {@link com.ecotalecoins.config.CoinConfig#load()}.
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /**
+     * Whether given coins go into a pouch instead of coin stacks.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    // ========== Items ==========
+
+    public static boolean isPouch(@Nullable ItemStack stack) {
+        return stack != null && !stack.isEmpty() && ITEM_ID.equals(stack.getItemId());
+    }
+
+    /**
+     * Value held by a pouch, in base units. Missing or corrupt metadata reads as empty.
+     */
+    public static long valueOf(@Nonnull ItemStack pouch) {
+        Long value = pouch.getFromMetadataOrNull(METADATA_KEY, Codec.LONG);
+        return value != null && value > 0 ? value : 0L;
+    }
+
+    /**
+     * A new pouch holding {@code value}.
+     */
+    @Nonnull
+    public static ItemStack create(long value) {
+        return withValue(new ItemStack(ITEM_ID, 1), value);
+    }
+
+    /**
+     * The same pouch holding {@code value} instead.
+     */
+    @Nonnull
+    public static ItemStack withValue(@Nonnull ItemStack pouch, long value) {
+        return pouch.withMetadata(METADATA_KEY, Codec.LONG, Math.max(0L, value));
+    }
+
+    // ========== Inventory ==========
+
+    /**
+     * Where a give of {@code amount} would go: the first pouch in the give
+     * containers that can hold it, else the first empty slot there for a new
+     * pouch. Mirrors {@link #give}, so space checks and gives agree.
+     * @return the scan's pouch index, {@code -2 - slot} for an empty recorded slot, or -1 if neither
+     */
+    static int target(@Nonnull CoinScan scan, long amount) {
+        if (!enabled || amount <= 0) return -1;
+
+        ContainerPolicy policy = ContainerPolicy.get();
+        for (int section : policy.giveSections()) {
+            for (int p = 0; p < scan.pouchCount(); p++) {
+                if (scan.pouchSection(p) == section && scan.pouchValue(p) <= Long.MAX_VALUE - amount) {
+                    return p;
+                }
+            }
+        }
+        for (int section : policy.giveSections()) {
+            for (int i = 0; i < scan.slotCount(); i++) {
+                if (scan.slotType(i) == -1 && scan.slotSection(i) == section) {
+                    return -2 - i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Whether {@link #give} would succeed for this scan.
+     * @return slots a give would take up: 0 (existing pouch), 1 (new pouch), or -1 if it can't
+     */
+    public static int slotsNeeded(@Nonnull CoinScan scan, long amount) {
+        int target = target(scan, amount);
+        return target == -1 ? -1 : target >= 0 ? 0 : 1;
+    }
+
+    /**
+     * Add {@code amount} to a pouch with one slot write, creating the pouch if needed.
+     * The scan must describe the inventory as it is now. The ledger is not invalidated here.
+     * @return false (nothing written) if pouch mode is off or there is nowhere to put it
+     */
+    static boolean give(@Nonnull Player player, @Nonnull CoinScan scan, long amount) {
+        int target = target(scan, amount);
+        if (target == -1) return false;
+
+        if (target >= 0) {
+            ItemContainer container = InventoryPlan.container(player.getInventory(), scan.pouchSection(target));
+            short slot = (short) scan.pouchIndex(target);
+            ItemStack pouch = container.getItemStack(slot);
+            if (!isPouch(pouch)) return false;
+            container.setItemStackForSlot(slot, withValue(pouch, valueOf(pouch) + amount));
+        } else {
+            int recorded = -2 - target;
+            ItemContainer container = InventoryPlan.container(player.getInventory(), scan.slotSection(recorded));
+            container.setItemStackForSlot((short) scan.slotIndex(recorded), create(amount));
+        }
+        return true;
+    }
+
+    /**
+     * Value held by every pouch the scan found.
+     */
+    public static long heldValue(@Nonnull CoinScan scan) {
+        long total = 0;
+        for (int p = 0; p < scan.pouchCount(); p++) {
+            total = Math.addExact(total, scan.pouchValue(p));
+        }
+        return total;
+    }
+
+    /**
+     * Value held by pouches in the containers coins are taken from.
+     */
+    public static long takeableValue(@Nonnull CoinScan scan) {
+        ContainerPolicy policy = ContainerPolicy.get();
+        long total = 0;
+        for (int p = 0; p < scan.pouchCount(); p++) {
+            if (policy.canTake(scan.pouchSection(p))) {
+                total = Math.addExact(total, scan.pouchValue(p));
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Take {@code amount} from pouches in the take containers, one write per pouch
+     * touched. The caller checks {@link #takeableValue} first. Emptied pouches stay
+     * in the inventory, ready for the next give.
+     */
+    static void take(@Nonnull Player player, @Nonnull CoinScan scan, long amount) {
+        ContainerPolicy policy = ContainerPolicy.get();
+        long remaining = amount;
+        for (int p = 0; p < scan.pouchCount() && remaining > 0; p++) {
+            if (!policy.canTake(scan.pouchSection(p)) || scan.pouchValue(p) == 0) continue;
+
+            ItemContainer container = InventoryPlan.container(player.getInventory(), scan.pouchSection(p));
+            short slot = (short) scan.pouchIndex(p);
+            ItemStack pouch = container.getItemStack(slot);
+            long taken = Math.min(remaining, scan.pouchValue(p));
+            container.setItemStackForSlot(slot, withValue(pouch, scan.pouchValue(p) - taken));
+            remaining -= taken;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.ecotalecoins.currency;
+
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.inventory.Inventory;
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * Single-pass snapshot of the coins in a player's inventory.
+ *
+ * Walks storage, hotbar and backpack once and records everything the
+ * count, breakdown and space checks need: total value, per-denomination
+ * counts, stack counts, free slots, spare room in partial stacks and the
+ * slot layout that {@link InventoryPlan} plans mutations against.
+ * {@link CoinPouch} items are recorded with the value read from their
+ * metadata; it is part of {@link #totalValue()} but not of the coin counts.
+ * Instances can be reused with {@link #rescan(Player)}, except the shared
+ * read-only scans handed out by {@link CoinLedger}.
+ *
+ * @author Ecotale
+ * @since 1.2.0
+ */
+public final class CoinScan {
+
+    public static final int STORAGE = 0;
+    public static final int HOTBAR = 1;
+    public static final int BACKPACK = 2;
+    public static final int SECTIONS = 3;
+
+    private static final CoinType[] ALL = CoinType.values();
+    private static final int TYPES = ALL.length;
+
+    private final int[] counts = new int[TYPES];
+    private final int[] quantities = new int[SECTIONS * TYPES];
+    private final int[] stacks = new int[SECTIONS * TYPES];
+    private final int[] space = new int[SECTIONS * TYPES];
+    private final int[] freeSlots = new int[SECTIONS];
+    private long totalValue;
+    private boolean frozen;
+
+    // Slot layout (coin and empty slots only, in scan order) for mutation planning
+    private int slotCount;
+    private int[] slotSection = new int[64];
+    private int[] slotIndex = new int[64];
+    private int[] slotType = new int[64];
+    private int[] slotQuantity = new int[64];
+
+    // Coin pouches, in scan order
+    private int pouchCount;
+    private int[] pouchSection = new int[4];
+    private int[] pouchIndex = new int[4];
+    private long[] pouchValue = new long[4];
+
+    /**
+     * Scan a player's inventory into a new result.
+     */
+    @Nonnull
+    public static CoinScan of(@Nonnull Player player) {
+        return new CoinScan().rescan(player);
+    }
+
+    /**
+     * Reset and refill this result from the player's current inventory.
+     */
+    @Nonnull
+    public CoinScan rescan(@Nonnull Player player) {
+        if (frozen) {
+            throw new IllegalStateException("Cached coin scans are read-only; use CoinScan.of(player)");
+        }
+
+        Arrays.fill(counts, 0);
+        Arrays.fill(quantities, 0);
+        Arrays.fill(stacks, 0);
+        Arrays.fill(space, 0);
+        Arrays.fill(freeSlots, 0);
+        totalValue = 0L;
+        slotCount = 0;
+        pouchCount = 0;
+
+        DenominationTable table = DenominationTable.get();
+        Inventory inventory = player.getInventory();
+        scanContainer(inventory.getStorage(), STORAGE, table);
+        scanContainer(inventory.getHotbar(), HOTBAR, table);
+        scanContainer(inventory.getBackpack(), BACKPACK, table);
+        return this;
+    }
+
+    private void scanContainer(ItemContainer container, int section, DenominationTable table) {
+        if (container == null) return;
+
+        int base = section * TYPES;
+        for (short i = 0; i < container.getCapacity(); i++) {
+            ItemStack stack = container.getItemStack(i);
+            if (stack == null || stack.isEmpty()) {
+                freeSlots[section]++;
+                recordSlot(section, i, -1, 0);
+                continue;
+            }
+
+            if (CoinPouch.isPouch(stack)) {
+                long value = CoinPouch.valueOf(stack);
+                recordPouch(section, i, value);
+                totalValue = Math.addExact(totalValue, value);
+                continue;
+            }
+
+            CoinType type = table.fromItemId(stack.getItemId());
+            if (type == null) continue;
+
+            int ordinal = type.ordinal();
+            int quantity = stack.getQuantity();
+            recordSlot(section, i, ordinal, quantity);
+            counts[ordinal] += quantity;
+            quantities[base + ordinal] += quantity;
+            stacks[base + ordinal]++;
+            space[base + ordinal] += Math.max(0, table.maxStack(type) - quantity);
+            totalValue = Math.addExact(totalValue, Math.multiplyExact(table.value(type), (long) quantity));
+        }
+    }
+
+    private void recordSlot(int section, short index, int ordinal, int quantity) {
+        if (slotCount == slotSection.length) {
+            int size = slotCount * 2;
+            slotSection = Arrays.copyOf(slotSection, size);
+            slotIndex = Arrays.copyOf(slotIndex, size);
+            slotType = Arrays.copyOf(slotType, size);
+            slotQuantity = Arrays.copyOf(slotQuantity, size);
+        }
+        slotSection[slotCount] = section;
+        slotIndex[slotCount] = index;
+        slotType[slotCount] = ordinal;
+        slotQuantity[slotCount] = quantity;
+        slotCount++;
+    }
+
+    private void recordPouch(int section, short index, long value) {
+        if (pouchCount == pouchSection.length) {
+            int size = pouchCount * 2;
+            pouchSection = Arrays.copyOf(pouchSection, size);
+            pouchIndex = Arrays.copyOf(pouchIndex, size);
+            pouchValue = Arrays.copyOf(pouchValue, size);
+        }
+        pouchSection[pouchCount] = section;
+        pouchIndex[pouchCount] = index;
+        pouchValue[pouchCount] = value;
+        pouchCount++;
+    }
+
+    /**
+     * Mark this scan as shared and read-only (used by {@link CoinLedger}).
+     */
+    CoinScan freeze() {
+        this.frozen = true;
+        return this;
+    }
+
+    /**
+     * Whether two scans saw the same coins (value and per-type counts).
+     */
+    boolean sameCoinsAs(@Nonnull CoinScan other) {
+        return totalValue == other.totalValue && Arrays.equals(counts, other.counts);
+    }
+
+    // ========== Whole inventory ==========
+
+    /**
+     * Total coin value across all containers, pouches included, in base units.
+     */
+    public long totalValue() {
+        return totalValue;
+    }
+
+    /**
+     * Number of coins of a type across all containers.
+     */
+    public int count(@Nonnull CoinType type) {
+        return counts[type.ordinal()];
+    }
+
+    /**
+     * Copy the per-type counts across all containers into a vector.
+     */
+    @Nonnull
+    public CoinVector coins(@Nonnull CoinVector into) {
+        into.clear();
+        for (int i = 0; i < TYPES; i++) {
+            if (counts[i] != 0) {
+                into.add(ALL[i], counts[i]);
+            }
+        }
+        return into;
+    }
+
+    // ========== Per container section ==========
+
+    /**
+     * Number of coins of a type in one container section.
+     */
+    public int count(int section, @Nonnull CoinType type) {
+        return quantities[section * TYPES + type.ordinal()];
+    }
+
+    /**
+     * Number of stacks of a type in one container section.
+     */
+    public int stackCount(int section, @Nonnull CoinType type) {
+        return stacks[section * TYPES + type.ordinal()];
+    }
+
+    /**
+     * Spare room left in existing stacks of a type in one container section.
+     */
+    public int spaceInStacks(int section, @Nonnull CoinType type) {
+        return space[section * TYPES + type.ordinal()];
+    }
+
+    /**
+     * Number of empty slots in one container section.
+     */
+    public int freeSlots(int section) {
+        return freeSlots[section];
+    }
+
+    // ========== Pouches (for CoinPouch) ==========
+
+    /**
+     * Number of pouches found.
+     */
+    public int pouchCount() {
+        return pouchCount;
+    }
+
+    int pouchSection(int pouch) {
+        return pouchSection[pouch];
+    }
+
+    int pouchIndex(int pouch) {
+        return pouchIndex[pouch];
+    }
+
+    long pouchValue(int pouch) {
+        return pouchValue[pouch];
+    }
+
+    // ========== Slot layout (for InventoryPlan) ==========
+
+    /**
+     * Number of recorded slots (coin stacks and empty slots).
+     */
+    int slotCount() {
+        return slotCount;
+    }
+
+    int slotSection(int slot) {
+        return slotSection[slot];
+    }
+
+    int slotIndex(int slot) {
+        return slotIndex[slot];
+    }
+
+    /**
+     * Coin ordinal held in a recorded slot, or -1 if the slot is empty.
+     */
+    int slotType(int slot) {
+        return slotType[slot];
+    }
+
+    int slotQuantity(int slot) {
+        return slotQuantity[slot];
+    }
+}
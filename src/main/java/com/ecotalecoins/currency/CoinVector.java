@@ -0,0 +1,154 @@
+package com.ecotalecoins.currency;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * Fixed-size coin count vector indexed by {@link CoinType#ordinal()}.
+ *
+ * Replaces {@code Map<CoinType, Integer>} on the breakdown paths so they
+ * neither box nor allocate maps. Vectors are mutable and can be reused:
+ * pass one in to the {@code ...(amount, into)} overloads, or borrow the
+ * per-thread {@link #scratch()} vector for short leaf computations.
+ *
+ * @author Ecotale
+ * @since 1.2.0
+ */
+public final class CoinVector {
+
+    public static final int SIZE = CoinType.values().length;
+
+    private static final ThreadLocal<CoinVector> SCRATCH = ThreadLocal.withInitial(CoinVector::new);
+
+    private final long[] counts = new long[SIZE];
+
+    public CoinVector() {}
+
+    /**
+     * Per-thread reusable vector, cleared on every call.
+     * Only use it where no callee can borrow it again before you are done.
+     */
+    @Nonnull
+    public static CoinVector scratch() {
+        return SCRATCH.get().clear();
+    }
+
+    // ========== Access ==========
+
+    public long get(@Nonnull CoinType type) {
+        return counts[type.ordinal()];
+    }
+
+    public long get(int ordinal) {
+        return counts[ordinal];
+    }
+
+    @Nonnull
+    public CoinVector set(@Nonnull CoinType type, long count) {
+        counts[type.ordinal()] = count;
+        return this;
+    }
+
+    // ========== Arithmetic ==========
+
+    @Nonnull
+    public CoinVector add(@Nonnull CoinType type, long count) {
+        counts[type.ordinal()] += count;
+        return this;
+    }
+
+    @Nonnull
+    public CoinVector add(@Nonnull CoinVector other) {
+        for (int i = 0; i < SIZE; i++) {
+            counts[i] += other.counts[i];
+        }
+        return this;
+    }
+
+    @Nonnull
+    public CoinVector sub(@Nonnull CoinVector other) {
+        for (int i = 0; i < SIZE; i++) {
+            counts[i] -= other.counts[i];
+        }
+        return this;
+    }
+
+    @Nonnull
+    public CoinVector scale(long factor) {
+        for (int i = 0; i < SIZE; i++) {
+            counts[i] = Math.multiplyExact(counts[i], factor);
+        }
+        return this;
+    }
+
+    @Nonnull
+    public CoinVector clear() {
+        Arrays.fill(counts, 0L);
+        return this;
+    }
+
+    @Nonnull
+    public CoinVector copyFrom(@Nonnull CoinVector other) {
+        System.arraycopy(other.counts, 0, counts, 0, SIZE);
+        return this;
+    }
+
+    // ========== Aggregates ==========
+
+    /**
+     * Total value of these coins in base units, using the current denominations.
+     */
+    public long totalValue() {
+        DenominationTable table = DenominationTable.get();
+        long total = 0L;
+        for (int i = 0; i < SIZE; i++) {
+            if (counts[i] != 0) {
+                total = Math.addExact(total, Math.multiplyExact(table.valueAt(i), counts[i]));
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Total number of coins across all denominations.
+     */
+    public long coinCount() {
+        long total = 0L;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        for (long count : counts) {
+            if (count != 0) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CoinVector other && Arrays.equals(counts, other.counts);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(counts);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("CoinVector{");
+        boolean first = true;
+        for (CoinType type : CoinType.values()) {
+            long count = counts[type.ordinal()];
+            if (count != 0) {
+                if (!first) sb.append(", ");
+                sb.append(type.name()).append('=').append(count);
+                first = false;
+            }
+        }
+        return sb.append('}').toString();
+    }
+}
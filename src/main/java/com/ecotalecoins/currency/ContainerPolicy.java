@@ -0,0 +1,157 @@
+package com.ecotalecoins.currency;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Which inventory containers coins are given to and taken from, in order.
+ *
+ * Every give/take path and every space check reads the same published policy,
+ * so a check never accepts or rejects something the mutation would do differently.
+ * Published by {@link com.ecotalecoins.config.CoinConfig#load()}.
+ *
+ * @author Ecotale
+ * @since 1.2.0
+ */
+public final class ContainerPolicy {
+
+    public static final List<String> DEFAULT_GIVE = List.of("storage", "hotbar");
+    public static final List<String> DEFAULT_TAKE = List.of("storage", "hotbar", "backpack");
+
+    private static volatile ContainerPolicy current = of(DEFAULT_GIVE, DEFAULT_TAKE);
+
+    private final int[] give;
+    private final int[] take;
+    private final boolean[] canGive = new boolean[CoinScan.SECTIONS];
+    private final boolean[] canTake = new boolean[CoinScan.SECTIONS];
+
+    private ContainerPolicy(int[] give, int[] take) {
+        this.give = give;
+        this.take = take;
+        for (int section : give) canGive[section] = true;
+        for (int section : take) canTake[section] = true;
+    }
+
+    /**
+     * Get the currently published policy.
+     */
+    @Nonnull
+    public static ContainerPolicy get() {
+        return current;
+    }
+
+    /**
+     * Publish a new policy.
+     */
+    public static void set(@Nonnull ContainerPolicy policy) {
+        current = policy;
+    }
+
+    /**
+     * Build a policy from container names ("storage", "hotbar", "backpack").
+     * @throws IllegalArgumentException on an unknown or duplicate name, or an empty list
+     */
+    @Nonnull
+    public static ContainerPolicy of(@Nonnull List<String> give, @Nonnull List<String> take) {
+        return new ContainerPolicy(parse(give), parse(take));
+    }
+
+    private static int[] parse(List<String> names) {
+        if (names.isEmpty()) {
+            throw new IllegalArgumentException("Container list is empty");
+        }
+        int[] sections = new int[names.size()];
+        boolean[] seen = new boolean[CoinScan.SECTIONS];
+        for (int i = 0; i < sections.length; i++) {
+            int section = switch (names.get(i).toLowerCase(Locale.ROOT)) {
+                case "storage" -> CoinScan.STORAGE;
+                case "hotbar" -> CoinScan.HOTBAR;
+                case "backpack" -> CoinScan.BACKPACK;
+                default -> throw new IllegalArgumentException("Unknown container: " + names.get(i));
+            };
+            if (seen[section]) {
+                throw new IllegalArgumentException("Duplicate container: " + names.get(i));
+            }
+            seen[section] = true;
+            sections[i] = section;
+        }
+        return sections;
+    }
+
+    // ========== Sections ==========
+
+    /**
+     * Sections coins are given to, in fill order. The returned array is shared.
+     */
+    @Nonnull
+    public int[] giveSections() {
+        return give;
+    }
+
+    /**
+     * Sections coins are taken from. The returned array is shared.
+     */
+    @Nonnull
+    public int[] takeSections() {
+        return take;
+    }
+
+    public boolean canGive(int section) {
+        return canGive[section];
+    }
+
+    public boolean canTake(int section) {
+        return canTake[section];
+    }
+
+    // ========== Scan aggregates ==========
+
+    /**
+     * Empty slots coins can be given to.
+     */
+    public int freeSlots(@Nonnull CoinScan scan) {
+        int total = 0;
+        for (int section : give) {
+            total += scan.freeSlots(section);
+        }
+        return total;
+    }
+
+    /**
+     * Spare room in existing stacks of a type that coins can be given to.
+     */
+    public long spaceInStacks(@Nonnull CoinScan scan, @Nonnull CoinType type) {
+        long total = 0;
+        for (int section : give) {
+            total += scan.spaceInStacks(section, type);
+        }
+        return total;
+    }
+
+    /**
+     * Coins of a type that can be taken.
+     */
+    public long takeCount(@Nonnull CoinScan scan, @Nonnull CoinType type) {
+        long total = 0;
+        for (int section : take) {
+            total += scan.count(section, type);
+        }
+        return total;
+    }
+
+    /**
+     * Total value that can be taken, pouches included, in base units.
+     */
+    public long takeValue(@Nonnull CoinScan scan) {
+        if (take.length == CoinScan.SECTIONS) {
+            return scan.totalValue();
+        }
+        DenominationTable table = DenominationTable.get();
+        long total = CoinPouch.takeableValue(scan);
+        for (CoinType type : table.enabledTypes()) {
+            total = Math.addExact(total, Math.multiplyExact(table.value(type), takeCount(scan, type)));
+        }
+        return total;
+    }
+}
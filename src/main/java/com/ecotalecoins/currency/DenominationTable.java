@@ -0,0 +1,242 @@
+package com.ecotalecoins.currency;
+
+import com.ecotalecoins.config.CoinConfig;
+import com.hypixel.hytale.server.core.asset.type.item.config.Item;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the configured coin denominations.
+ *
+ * All per-coin data is precomputed into ordinal-indexed arrays so the
+ * inventory scan paths never touch the config map or do string work per slot.
+ * A new table is built and published atomically by {@link CoinConfig#load()},
+ * and again once item assets are loaded so stack limits match the coin items.
+ *
+ * @author Ecotale
+ * @since 1.2.0
+ */
+public final class DenominationTable {
+
+    private static final CoinType[] TYPES = CoinType.values();
+
+    // Used when the coin item asset isn't loaded (matches the shipped templates)
+    public static final int DEFAULT_MAX_STACK = 999;
+
+    // Defaults until the config has been loaded (matches the old CoinType fallbacks)
+    private static volatile DenominationTable current = build(null);
+
+    private final long[] values;
+    private final String[] itemIds;
+    private final String[] displayNames;
+    private final boolean[] enabled;
+    private final int[] maxStacks;
+    private final CoinType[] enabledTypes;
+    private final CoinType[] ascending;
+    private final CoinType[] descending;
+    private final Map<String, CoinType> byItemId;
+    private final ChangeMaker changeMaker;
+
+    private DenominationTable(long[] values, String[] itemIds, String[] displayNames, boolean[] enabled, int[] maxStacks) {
+        this.values = values;
+        this.itemIds = itemIds;
+        this.displayNames = displayNames;
+        this.enabled = enabled;
+        this.maxStacks = maxStacks;
+
+        int count = 0;
+        for (boolean e : enabled) {
+            if (e) count++;
+        }
+
+        this.enabledTypes = new CoinType[count];
+        this.byItemId = new HashMap<>(count * 2);
+        int idx = 0;
+        for (CoinType type : TYPES) {
+            if (enabled[type.ordinal()]) {
+                enabledTypes[idx++] = type;
+                byItemId.putIfAbsent(itemIds[type.ordinal()], type);
+            }
+        }
+
+        this.ascending = enabledTypes.clone();
+        Arrays.sort(ascending, (a, b) -> Long.compare(values[a.ordinal()], values[b.ordinal()]));
+
+        this.descending = new CoinType[count];
+        for (int i = 0; i < count; i++) {
+            descending[i] = ascending[count - 1 - i];
+        }
+
+        long[] descendingValues = new long[count];
+        for (int i = 0; i < count; i++) {
+            descendingValues[i] = values[descending[i].ordinal()];
+        }
+        this.changeMaker = new ChangeMaker(descending, descendingValues);
+    }
+
+    /**
+     * Get the currently published table.
+     */
+    @Nonnull
+    public static DenominationTable get() {
+        return current;
+    }
+
+    /**
+     * Rebuild the table from config and publish it.
+     * Readers see either the old or the new table, never a mix.
+     */
+    public static void rebuild(@Nullable CoinConfig config) {
+        current = build(config);
+        // Cached scans were valued against the old table
+        CoinLedger.invalidateAll();
+    }
+
+    private static DenominationTable build(@Nullable CoinConfig config) {
+        int n = TYPES.length;
+        long[] values = new long[n];
+        String[] itemIds = new String[n];
+        String[] displayNames = new String[n];
+        boolean[] enabled = new boolean[n];
+        int[] maxStacks = new int[n];
+
+        for (CoinType type : TYPES) {
+            int i = type.ordinal();
+            CoinConfig.CoinTypeConfig coin = config != null ? config.getCoinConfig(type.getConfigKey()) : null;
+
+            if (coin != null) {
+                values[i] = coin.value;
+                itemIds[i] = coin.itemId;
+                displayNames[i] = coin.displayName;
+                enabled[i] = coin.enabled && coin.value > 0;
+            } else {
+                String name = capitalize(type.getConfigKey());
+                values[i] = 1L;
+                itemIds[i] = "Coin_" + name;
+                displayNames[i] = name;
+                enabled[i] = false;
+            }
+            maxStacks[i] = resolveMaxStack(itemIds[i]);
+        }
+
+        return new DenominationTable(values, itemIds, displayNames, enabled, maxStacks);
+    }
+
+    /**
+     * Stack limit from the loaded item asset, so edits to the coin JSON are honoured.
+     */
+    private static int resolveMaxStack(String itemId) {
+        try {
+            Item item = Item.getAssetMap().getAsset(itemId);
+            if (item != null && item.getMaxStack() > 0) {
+                return item.getMaxStack();
+            }
+        } catch (RuntimeException | LinkageError e) {
+            // Asset store not available yet (config loads before assets)
+        }
+        return DEFAULT_MAX_STACK;
+    }
+
+    // ========== Lookups ==========
+
+    public long value(@Nonnull CoinType type) {
+        return values[type.ordinal()];
+    }
+
+    public long valueAt(int ordinal) {
+        return values[ordinal];
+    }
+
+    @Nonnull
+    public String itemId(@Nonnull CoinType type) {
+        return itemIds[type.ordinal()];
+    }
+
+    @Nonnull
+    public String displayName(@Nonnull CoinType type) {
+        return displayNames[type.ordinal()];
+    }
+
+    /**
+     * Maximum stack size of this coin's item.
+     */
+    public int maxStack(@Nonnull CoinType type) {
+        return maxStacks[type.ordinal()];
+    }
+
+    public int maxStackAt(int ordinal) {
+        return maxStacks[ordinal];
+    }
+
+    public boolean isEnabled(@Nonnull CoinType type) {
+        return enabled[type.ordinal()];
+    }
+
+    /**
+     * Resolve an item ID to an enabled coin type.
+     * @return CoinType or null if not a valid/enabled coin
+     */
+    @Nullable
+    public CoinType fromItemId(@Nullable String itemId) {
+        return itemId != null ? byItemId.get(itemId) : null;
+    }
+
+    // ========== Change making ==========
+
+    /**
+     * Break an amount into the fewest enabled coins, writing the counts into {@code into}.
+     */
+    @Nonnull
+    public CoinVector breakdown(long amount, @Nonnull CoinVector into) {
+        return changeMaker.breakdown(amount, into);
+    }
+
+    /**
+     * Whether the enabled values are canonical (greedy breakdowns are optimal).
+     */
+    public boolean isCanonical() {
+        return changeMaker.isCanonical();
+    }
+
+    /**
+     * Whether {@link #breakdown} is optimal for every amount.
+     */
+    public boolean isExactChange() {
+        return changeMaker.isExact();
+    }
+
+    // ========== Prebuilt orderings (shared, do not modify) ==========
+
+    /**
+     * Enabled types in declaration order. The returned array is shared.
+     */
+    @Nonnull
+    public CoinType[] enabledTypes() {
+        return enabledTypes;
+    }
+
+    /**
+     * Enabled types sorted by value ascending. The returned array is shared.
+     */
+    @Nonnull
+    public CoinType[] ascending() {
+        return ascending;
+    }
+
+    /**
+     * Enabled types sorted by value descending. The returned array is shared.
+     */
+    @Nonnull
+    public CoinType[] descending() {
+        return descending;
+    }
+
+    private static String capitalize(String s) {
+        if (s == null || s.isEmpty()) return s;
+        return s.substring(0, 1).toUpperCase() + s.substring(1);
+    }
+}
@@ -0,0 +1,218 @@
+package com.ecotalecoins.currency;
+
+import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.math.vector.Vector3d;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects coin drops made during a tick and spawns them together.
+ *
+ * Drops are summed per cubic cell of {@code cellSize} blocks. The first drop
+ * in a world queues a task on the world, which runs after the current systems
+ * and spawns one optimal set of coins per cell at the value-weighted centre of
+ * its drops. Thirty mobs killed by one blast become one breakdown and a
+ * handful of entities instead of thirty of each; a lone drop lands where it
+ * would have, one task later.
+ *
+ * Off by default. Per-world state is only touched from that world's thread.
+ *
+ * @author Ecotale
+ * @since 1.2.0
+ */
+public final class DropAggregator {
+
+    public static final double DEFAULT_CELL_SIZE = 4.0;
+
+    private static volatile boolean enabled = false;
+    private static volatile double cellSize = DEFAULT_CELL_SIZE;
+
+    private static final ConcurrentHashMap<World, Pending> pending = new ConcurrentHashMap<>();
+
+    private static final LongAdder submitted = new LongAdder();
+    private static final LongAdder spawned = new LongAdder();
+
+    private DropAggregator() {}
+
+    /**
+     * Turn aggregation on or off and set the cell size. Published by
+     * {@link com.ecotalecoins.config.CoinConfig#load()}.
+     */
+    public static void configure(boolean enable, double cell) {
+        cellSize = Math.max(1.0, cell);
+        enabled = enable;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Hold a drop until the end of the tick. Must be called on the world's thread.
+     */
+    public static void submit(@Nonnull World world, @Nonnull Vector3d position, long amount) {
+        if (amount <= 0) return;
+        submitted.increment();
+
+        Pending drops = pending.computeIfAbsent(world, w -> new Pending());
+        if (drops.isEmpty()) {
+            world.execute(() -> flush(world));
+        }
+        if (!drops.add(position.getX(), position.getY(), position.getZ(), amount, cellSize)) {
+            // The cell's total would overflow - this one goes on its own
+            world.execute(() -> spawn(world, new Vector3d(position.getX(), position.getY(), position.getZ()), amount));
+        }
+    }
+
+    private static void flush(World world) {
+        Pending drops = pending.get(world);
+        if (drops == null || drops.isEmpty()) return;
+
+        try {
+            for (int i = 0; i < drops.count; i++) {
+                long total = drops.values[i];
+                Vector3d centre = new Vector3d(
+                    drops.weightedX[i] / total,
+                    drops.weightedY[i] / total,
+                    drops.weightedZ[i] / total
+                );
+                spawn(world, centre, total);
+            }
+        } finally {
+            // Always reset, or the next tick's drops would never schedule a flush
+            drops.clear();
+        }
+    }
+
+    private static void spawn(World world, Vector3d position, long amount) {
+        Store<EntityStore> store = world.getEntityStore().getStore();
+        CoinDropper.dropFromWorldTask(store, position, amount);
+        spawned.increment();
+    }
+
+    // ========== Statistics ==========
+
+    /**
+     * Drops submitted since startup.
+     */
+    public static long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    /**
+     * Combined drops spawned since startup.
+     */
+    public static long getSpawnedCount() {
+        return spawned.sum();
+    }
+
+    // ========== Internals ==========
+
+    /**
+     * One world's drops for the current tick, summed per cell.
+     */
+    private static final class Pending {
+        // Cell key -> cluster index, open addressing
+        private long[] keys = new long[32];
+        private int[] clusters = new int[32];
+        private boolean[] used = new boolean[32];
+
+        // Clusters, by index
+        long[] values = new long[16];
+        double[] weightedX = new double[16];
+        double[] weightedY = new double[16];
+        double[] weightedZ = new double[16];
+        int count;
+
+        boolean isEmpty() {
+            return count == 0;
+        }
+
+        /**
+         * @return false if the cell's total would overflow (nothing added)
+         */
+        boolean add(double x, double y, double z, long amount, double cell) {
+            long key = pack((int) Math.floor(x / cell), (int) Math.floor(y / cell), (int) Math.floor(z / cell));
+            int mask = keys.length - 1;
+            int slot = home(key, mask);
+            while (used[slot] && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+
+            int cluster;
+            if (used[slot]) {
+                cluster = clusters[slot];
+                long total = values[cluster] + amount;
+                if (total < 0) return false;
+                values[cluster] = total;
+            } else {
+                if ((count + 1) * 2 > keys.length) {
+                    growKeys();
+                    return add(x, y, z, amount, cell);
+                }
+                if (count == values.length) {
+                    growClusters();
+                }
+                cluster = count++;
+                used[slot] = true;
+                keys[slot] = key;
+                clusters[slot] = cluster;
+                values[cluster] = amount;
+                weightedX[cluster] = 0;
+                weightedY[cluster] = 0;
+                weightedZ[cluster] = 0;
+            }
+            weightedX[cluster] += x * amount;
+            weightedY[cluster] += y * amount;
+            weightedZ[cluster] += z * amount;
+            return true;
+        }
+
+        void clear() {
+            Arrays.fill(used, false);
+            count = 0;
+        }
+
+        private static long pack(int cx, int cy, int cz) {
+            return ((long) (cx & 0x1FFFFF) << 42) | ((long) (cy & 0x1FFFFF) << 21) | (cz & 0x1FFFFF);
+        }
+
+        private static int home(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+
+        private void growKeys() {
+            long[] oldKeys = keys;
+            int[] oldClusters = clusters;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            clusters = new int[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldUsed.length; i++) {
+                if (!oldUsed[i]) continue;
+                int slot = home(oldKeys[i], mask);
+                while (used[slot]) {
+                    slot = (slot + 1) & mask;
+                }
+                used[slot] = true;
+                keys[slot] = oldKeys[i];
+                clusters[slot] = oldClusters[i];
+            }
+        }
+
+        private void growClusters() {
+            int capacity = values.length * 2;
+            values = Arrays.copyOf(values, capacity);
+            weightedX = Arrays.copyOf(weightedX, capacity);
+            weightedY = Arrays.copyOf(weightedY, capacity);
+            weightedZ = Arrays.copyOf(weightedZ, capacity);
+        }
+    }
+}
@@ -0,0 +1,590 @@
+package com.ecotalecoins.currency;
+
+import com.ecotalecoins.util.LongLongMap;
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the coin entities this plugin has dropped in a world.
+ *
+ * Space is cut into cubic cells of {@link #CELL_SIZE} blocks; each cell keeps
+ * a linked list of its entries, so finding coins near a point only touches
+ * the few cells around it. Entries are plain arrays indexed by an int id and
+ * reused through a free list.
+ *
+ * Each entry also carries its coin count and value. The world's ground value
+ * and a per-chunk total are kept up to date as coins are added, merged and
+ * removed, so "how much money is on the ground, and where" is a lookup rather
+ * than a pass over the world's entities.
+ *
+ * Picked-up coins leave stale entries behind; nothing tells the index about a
+ * pickup. Stale entries are dropped (and counted as {@link Removal#GONE}) before
+ * any value query returns: the whole-world and per-chunk queries settle all of
+ * them with {@link #purgeStale()}, {@link #valueNear} those it walks past. A few
+ * slots are also swept on every add, so the index doesn't fill with them.
+ *
+ * One index per world, modified and queried only from that world's thread.
+ *
+ * @author Ecotale
+ * @since 1.2.0
+ */
+public final class GroundCoinIndex {
+
+    public static final double CELL_SIZE = 2.0;
+    /** Width of a world chunk in blocks; ground value is totalled per chunk column. */
+    public static final int CHUNK_SIZE = 32;
+
+    private static final int NONE = -1;
+    private static final int SWEEP_PER_ADD = 4;
+    private static final CoinType[] TYPES = CoinType.values();
+    private static final byte ANY_TYPE = -1;
+
+    private static final ConcurrentHashMap<World, GroundCoinIndex> worlds = new ConcurrentHashMap<>();
+
+    private final World world;
+
+    // Entries, by id
+    private Ref<EntityStore>[] refs;
+    private byte[] types;
+    private int[] quantities;
+    private long[] values;
+    private double[] xs;
+    private double[] ys;
+    private double[] zs;
+    private long[] cellOf;
+    private int[] next;
+    private int[] prev;
+    private int highWater;
+    private int freeHead = NONE;
+    private int size;
+    private int sweepCursor;
+
+    // Cell key -> first entry, open addressing
+    private long[] cellKeys;
+    private int[] cellHeads;
+    private boolean[] cellUsed;
+    private int cellMask;
+    private int cellCount;
+
+    // Chunk key -> value on the ground there
+    private final LongLongMap chunkValues = new LongLongMap(64);
+
+    private long groundValue;
+    private long goneValue;
+    private long despawnedValue;
+
+    private GroundCoinIndex(@Nonnull World world) {
+        this.world = world;
+        allocateEntries(64);
+        allocateCells(64);
+    }
+
+    /**
+     * The index for a world, created on first use.
+     */
+    @Nonnull
+    public static GroundCoinIndex forWorld(@Nonnull World world) {
+        return worlds.computeIfAbsent(world, GroundCoinIndex::new);
+    }
+
+    /**
+     * Forget a world's index (world removed). Called from the plugin's world
+     * removal listener.
+     */
+    public static void removeWorld(@Nonnull World world) {
+        worlds.remove(world);
+    }
+
+    /**
+     * Why an entry left the index.
+     */
+    public enum Removal {
+        /** Folded into other piles; the value is still on the ground. */
+        MERGED,
+        /** Removed by this plugin when its time ran out. */
+        DESPAWNED,
+        /** The entity went away on its own: picked up, unloaded with its chunk, or removed by something else. */
+        GONE
+    }
+
+    /**
+     * Track a pile of coins dropped at a position.
+     * @return the entry id
+     */
+    public int add(@Nonnull Ref<EntityStore> ref, @Nonnull CoinType type, int quantity, double x, double y, double z) {
+        sweep();
+
+        int id;
+        if (freeHead != NONE) {
+            id = freeHead;
+            freeHead = next[id];
+        } else {
+            if (highWater == refs.length) {
+                growEntries();
+            }
+            id = highWater++;
+        }
+
+        refs[id] = ref;
+        types[id] = (byte) type.ordinal();
+        quantities[id] = quantity;
+        values[id] = Math.multiplyExact(DenominationTable.get().value(type), (long) quantity);
+        xs[id] = x;
+        ys[id] = y;
+        zs[id] = z;
+        link(id, cellKey(x, y, z));
+
+        size++;
+        addValue(id, values[id]);
+        return id;
+    }
+
+    /**
+     * Record a new coin count for a pile (topped up or partly upgraded).
+     */
+    public void setQuantity(int id, int quantity) {
+        if (!isTracked(id)) return;
+        long value = Math.multiplyExact(DenominationTable.get().value(TYPES[types[id]]), (long) quantity);
+        long delta = value - values[id];
+        quantities[id] = quantity;
+        values[id] = value;
+        addValue(id, delta);
+    }
+
+    /**
+     * Record where a pile is now (it rolled or was pushed since it was dropped).
+     * Moves it to its new cell and chunk; safe to call from a {@link Visitor}.
+     */
+    public void move(int id, double x, double y, double z) {
+        if (!isTracked(id) || (xs[id] == x && ys[id] == y && zs[id] == z)) return;
+
+        long cell = cellKey(x, y, z);
+        if (cell != cellOf[id]) {
+            unlink(id);
+            link(id, cell);
+        }
+        addValue(id, -values[id]);
+        xs[id] = x;
+        ys[id] = y;
+        zs[id] = z;
+        addValue(id, values[id]);
+    }
+
+    /**
+     * Stop tracking an entry.
+     */
+    public void remove(int id, @Nonnull Removal reason) {
+        if (!isTracked(id)) return;
+
+        long value = values[id];
+        addValue(id, -value);
+        switch (reason) {
+            case DESPAWNED -> despawnedValue += value;
+            case GONE -> goneValue += value;
+            case MERGED -> { }
+        }
+
+        unlink(id);
+
+        refs[id] = null;
+        next[id] = freeHead;
+        freeHead = id;
+        size--;
+    }
+
+    /**
+     * Visit live entries of a coin type whose recorded position is within {@code radius}
+     * of a point (the drop position, unless {@link #move} updated it). Stale entries met on the way are removed. The visitor may remove
+     * the entry it is given; return false to stop early.
+     */
+    public void forEachNear(@Nonnull CoinType type, double x, double y, double z, double radius, @Nonnull Visitor visitor) {
+        walkNear((byte) type.ordinal(), x, y, z, radius, visitor);
+    }
+
+    /**
+     * Value of every tracked coin within {@code radius} of a point.
+     */
+    public long valueNear(double x, double y, double z, double radius) {
+        long[] total = {0L};
+        walkNear(ANY_TYPE, x, y, z, radius, (id, ref) -> {
+            total[0] += values[id];
+            return true;
+        });
+        return total[0];
+    }
+
+    /**
+     * Value on the ground in one chunk column.
+     * Stale entries are settled first so picked-up coins don't count.
+     */
+    public long valueInChunk(int chunkX, int chunkZ) {
+        purgeStale();
+        return chunkValues.get(chunkKey(chunkX, chunkZ), 0L);
+    }
+
+    /**
+     * A chunk column and the coin value lying in it.
+     */
+    public record ChunkValue(int chunkX, int chunkZ, long value) {}
+
+    /**
+     * The chunks holding the most coin value, highest first.
+     * Stale entries are settled first so picked-up coins don't count.
+     */
+    @Nonnull
+    public List<ChunkValue> topChunks(int limit) {
+        purgeStale();
+        if (limit <= 0 || chunkValues.size() == 0) {
+            return List.of();
+        }
+
+        // Min-heap of the best `limit` chunks seen so far
+        int capacity = Math.min(limit, chunkValues.size());
+        long[] heapKeys = new long[capacity];
+        long[] heapValues = new long[capacity];
+        int[] heapSize = {0};
+        chunkValues.forEach((key, value) -> {
+            if (heapSize[0] < capacity) {
+                int i = heapSize[0]++;
+                heapKeys[i] = key;
+                heapValues[i] = value;
+                siftUp(heapKeys, heapValues, i);
+            } else if (value > heapValues[0]) {
+                heapKeys[0] = key;
+                heapValues[0] = value;
+                siftDown(heapKeys, heapValues, heapSize[0]);
+            }
+        });
+
+        List<ChunkValue> top = new ArrayList<>(heapSize[0]);
+        for (int n = heapSize[0]; n > 0; n--) {
+            long key = heapKeys[0];
+            top.add(new ChunkValue((int) (key >> 32), (int) key, heapValues[0]));
+            heapKeys[0] = heapKeys[n - 1];
+            heapValues[0] = heapValues[n - 1];
+            siftDown(heapKeys, heapValues, n - 1);
+        }
+        return top.reversed();
+    }
+
+    /**
+     * Drop every entry whose entity no longer exists. Walks the index, not the world.
+     * @return entries dropped
+     */
+    public int purgeStale() {
+        int dropped = 0;
+        for (int id = 0; id < highWater; id++) {
+            if (refs[id] != null && !refs[id].isValid()) {
+                remove(id, Removal.GONE);
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    private void walkNear(byte ordinal, double x, double y, double z, double radius, Visitor visitor) {
+        int reach = (int) Math.ceil(radius / CELL_SIZE);
+        int cx = cell(x);
+        int cy = cell(y);
+        int cz = cell(z);
+        double radiusSq = radius * radius;
+
+        for (int dx = -reach; dx <= reach; dx++) {
+            for (int dy = -reach; dy <= reach; dy++) {
+                for (int dz = -reach; dz <= reach; dz++) {
+                    int slot = cellSlot(pack(cx + dx, cy + dy, cz + dz), false);
+                    if (slot < 0) continue;
+
+                    int id = cellHeads[slot];
+                    while (id != NONE) {
+                        int following = next[id];
+                        if (!refs[id].isValid()) {
+                            remove(id, Removal.GONE);
+                        } else if (ordinal == ANY_TYPE || types[id] == ordinal) {
+                            double ex = xs[id] - x;
+                            double ey = ys[id] - y;
+                            double ez = zs[id] - z;
+                            if (ex * ex + ey * ey + ez * ez <= radiusSq && !visitor.visit(id, refs[id])) {
+                                return;
+                            }
+                        }
+                        id = following;
+                    }
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Visitor {
+        /**
+         * @return false to stop the query
+         */
+        boolean visit(int id, @Nonnull Ref<EntityStore> ref);
+    }
+
+    /**
+     * Tracked entries, including stale ones not yet swept.
+     */
+    public int size() {
+        return size;
+    }
+
+    @Nonnull
+    public CoinType typeOf(int id) {
+        return TYPES[types[id]];
+    }
+
+    public int quantityOf(int id) {
+        return quantities[id];
+    }
+
+    public long valueOf(int id) {
+        return values[id];
+    }
+
+    /**
+     * The entity behind an entry, or null if the id is free.
+     */
+    @Nullable
+    public Ref<EntityStore> refOf(int id) {
+        return id >= 0 && id < highWater ? refs[id] : null;
+    }
+
+    @Nonnull
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * Whether an id refers to a tracked entry.
+     */
+    public boolean isTracked(int id) {
+        return id >= 0 && id < highWater && refs[id] != null;
+    }
+
+    // ========== Statistics ==========
+
+    /**
+     * Value currently on the ground. Stale entries are settled first.
+     */
+    public long getGroundValue() {
+        purgeStale();
+        return groundValue;
+    }
+
+    /**
+     * Ground value and where it went, since this index was created.
+     * @param groundValue    value lying on the ground now
+     * @param goneValue      value whose entities went away on their own (mostly pickups)
+     * @param despawnedValue value removed by this plugin's despawn
+     */
+    public record Stats(int entries, long groundValue, long goneValue, long despawnedValue) {}
+
+    /**
+     * Stale entries are settled first, so pickups show up in {@code goneValue}.
+     */
+    @Nonnull
+    public Stats getStats() {
+        purgeStale();
+        return new Stats(size, groundValue, goneValue, despawnedValue);
+    }
+
+    // ========== Internals ==========
+
+    /** Drop a few stale entries, round-robin over the id range. */
+    private void sweep() {
+        for (int i = 0; i < SWEEP_PER_ADD && highWater > 0; i++) {
+            if (sweepCursor >= highWater) sweepCursor = 0;
+            int id = sweepCursor++;
+            if (refs[id] != null && !refs[id].isValid()) {
+                remove(id, Removal.GONE);
+            }
+        }
+    }
+
+    /** Push an entry onto a cell's list. */
+    private void link(int id, long cell) {
+        cellOf[id] = cell;
+        int slot = cellSlot(cell, true);
+        int head = cellHeads[slot];
+        prev[id] = NONE;
+        next[id] = head;
+        if (head != NONE) prev[head] = id;
+        cellHeads[slot] = id;
+    }
+
+    /** Take an entry off its cell's list, deleting the cell if it empties. */
+    private void unlink(int id) {
+        int slot = cellSlot(cellOf[id], false);
+        if (prev[id] != NONE) {
+            next[prev[id]] = next[id];
+        } else if (slot >= 0) {
+            cellHeads[slot] = next[id];
+        }
+        if (next[id] != NONE) {
+            prev[next[id]] = prev[id];
+        }
+        if (slot >= 0 && cellHeads[slot] == NONE) {
+            deleteCell(slot);
+        }
+    }
+
+    private void addValue(int id, long delta) {
+        if (delta == 0) return;
+        groundValue += delta;
+        chunkValues.add(chunkKey(chunk(xs[id]), chunk(zs[id])), delta);
+    }
+
+    private static int chunk(double coordinate) {
+        return (int) Math.floor(coordinate / CHUNK_SIZE);
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    private static void siftUp(long[] keys, long[] values, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (values[parent] <= values[i]) break;
+            swap(keys, values, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(long[] keys, long[] values, int size) {
+        int i = 0;
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && values[left] < values[smallest]) smallest = left;
+            if (right < size && values[right] < values[smallest]) smallest = right;
+            if (smallest == i) return;
+            swap(keys, values, i, smallest);
+            i = smallest;
+        }
+    }
+
+    private static void swap(long[] keys, long[] values, int a, int b) {
+        long key = keys[a];
+        long value = values[a];
+        keys[a] = keys[b];
+        values[a] = values[b];
+        keys[b] = key;
+        values[b] = value;
+    }
+
+    private static int cell(double coordinate) {
+        return (int) Math.floor(coordinate / CELL_SIZE);
+    }
+
+    private static long cellKey(double x, double y, double z) {
+        return pack(cell(x), cell(y), cell(z));
+    }
+
+    private static long pack(int cx, int cy, int cz) {
+        return ((long) (cx & 0x1FFFFF) << 42) | ((long) (cy & 0x1FFFFF) << 21) | (cz & 0x1FFFFF);
+    }
+
+    private int cellHome(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & cellMask;
+    }
+
+    /** Slot of a cell, or -1 if absent and not created. */
+    private int cellSlot(long key, boolean create) {
+        int i = cellHome(key);
+        while (cellUsed[i]) {
+            if (cellKeys[i] == key) return i;
+            i = (i + 1) & cellMask;
+        }
+        if (!create) return -1;
+
+        if ((cellCount + 1) * 2 > cellUsed.length) {
+            growCells();
+            return cellSlot(key, true);
+        }
+        cellUsed[i] = true;
+        cellKeys[i] = key;
+        cellHeads[i] = NONE;
+        cellCount++;
+        return i;
+    }
+
+    private void deleteCell(int slot) {
+        // Backward-shift deletion keeps probe chains intact without tombstones
+        int hole = slot;
+        int j = slot;
+        while (true) {
+            j = (j + 1) & cellMask;
+            if (!cellUsed[j]) break;
+            int home = cellHome(cellKeys[j]);
+            boolean between = hole <= j ? (hole < home && home <= j) : (hole < home || home <= j);
+            if (!between) {
+                cellKeys[hole] = cellKeys[j];
+                cellHeads[hole] = cellHeads[j];
+                hole = j;
+            }
+        }
+        cellUsed[hole] = false;
+        cellCount--;
+    }
+
+    private void growCells() {
+        long[] oldKeys = cellKeys;
+        int[] oldHeads = cellHeads;
+        boolean[] oldUsed = cellUsed;
+        allocateCells(oldUsed.length * 2);
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (!oldUsed[i]) continue;
+            int slot = cellSlot(oldKeys[i], true);
+            cellHeads[slot] = oldHeads[i];
+        }
+    }
+
+    private void allocateCells(int capacity) {
+        cellKeys = new long[capacity];
+        cellHeads = new int[capacity];
+        cellUsed = new boolean[capacity];
+        cellMask = capacity - 1;
+        cellCount = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocateEntries(int capacity) {
+        refs = new Ref[capacity];
+        types = new byte[capacity];
+        quantities = new int[capacity];
+        values = new long[capacity];
+        xs = new double[capacity];
+        ys = new double[capacity];
+        zs = new double[capacity];
+        cellOf = new long[capacity];
+        next = new int[capacity];
+        prev = new int[capacity];
+    }
+
+    private void growEntries() {
+        int capacity = refs.length * 2;
+        refs = Arrays.copyOf(refs, capacity);
+        types = Arrays.copyOf(types, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        values = Arrays.copyOf(values, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        zs = Arrays.copyOf(zs, capacity);
+        cellOf = Arrays.copyOf(cellOf, capacity);
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+    }
+}
@@ -0,0 +1,316 @@
+package com.ecotalecoins.currency;
+
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.inventory.Inventory;
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Precomputed set of slot writes that moves a coin inventory from one state to another.
+ *
+ * A plan is built from a single {@link CoinScan} and only exists if every coin
+ * to remove was found and every coin to insert has a slot, so {@link #apply(Player)}
+ * never has to stop halfway. Each recorded slot is written at most once.
+ *
+ * The scan must describe the inventory as it is when the plan is applied -
+ * build and apply on the same thread without yielding in between.
+ *
+ * @author Ecotale
+ * @since 1.2.0
+ */
+final class InventoryPlan {
+
+    private static final CoinType[] ALL = CoinType.values();
+
+    private final CoinScan scan;
+    private final DenominationTable table;
+    private final ContainerPolicy policy;
+    private final int[] finalType;
+    private final int[] finalQuantity;
+
+    private InventoryPlan(CoinScan scan) {
+        this.scan = scan;
+        this.table = DenominationTable.get();
+        this.policy = ContainerPolicy.get();
+        int n = scan.slotCount();
+        this.finalType = new int[n];
+        this.finalQuantity = new int[n];
+        for (int i = 0; i < n; i++) {
+            finalType[i] = scan.slotType(i);
+            finalQuantity[i] = scan.slotQuantity(i);
+        }
+    }
+
+    // ========== Planning ==========
+
+    /**
+     * Plan taking exactly {@code amount} from the take containers, paying with the
+     * coins held and returning change in the fewest coins.
+     * @return the plan, or null if the player can't pay or the change doesn't fit
+     */
+    @Nullable
+    static InventoryPlan forTake(@Nonnull CoinScan scan, long amount) {
+        ContainerPolicy policy = ContainerPolicy.get();
+        // Coins only - pouch value is taken by CoinPouch
+        if (amount <= 0 || policy.takeValue(scan) - CoinPouch.takeableValue(scan) < amount) return null;
+
+        DenominationTable table = DenominationTable.get();
+        CoinType[] descending = table.descending();
+        CoinVector take = new CoinVector();
+        long remaining = amount;
+
+        // Pay as much as possible exactly, largest coins first
+        for (CoinType type : descending) {
+            long value = table.value(type);
+            long count = Math.min(policy.takeCount(scan, type), remaining / value);
+            if (count > 0) {
+                take.set(type, count);
+                remaining -= count * value;
+            }
+        }
+
+        CoinVector change = new CoinVector();
+        if (remaining > 0) {
+            // Every type with coins left over is worth more than what is still owed,
+            // so overpay with the smallest such coin...
+            CoinType overpay = null;
+            for (int i = descending.length - 1; i >= 0; i--) {
+                CoinType type = descending[i];
+                if (table.value(type) > remaining && policy.takeCount(scan, type) > take.get(type)) {
+                    overpay = type;
+                    break;
+                }
+            }
+            if (overpay == null) return null;
+
+            take.add(overpay, 1);
+            long owed = table.value(overpay) - remaining;
+
+            // ...then hand back smaller coins we were about to take instead of making change for them
+            for (CoinType type : descending) {
+                long value = table.value(type);
+                if (type == overpay || value > owed || take.get(type) == 0) continue;
+                long count = Math.min(take.get(type), owed / value);
+                take.add(type, -count);
+                owed -= count * value;
+            }
+
+            if (owed > 0) {
+                CoinManager.calculateOptimalBreakdown(owed, change);
+                if (change.totalValue() != owed) {
+                    // Change can't be represented exactly - refuse rather than lose money
+                    return null;
+                }
+            }
+        }
+
+        return forMutation(scan, take, change);
+    }
+
+    /**
+     * Plan giving {@code amount} in the fewest coins.
+     * @return the plan, or null if the coins don't fit
+     */
+    @Nullable
+    static InventoryPlan forGive(@Nonnull CoinScan scan, long amount) {
+        if (amount <= 0) return null;
+        CoinVector give = CoinManager.calculateOptimalBreakdown(amount, new CoinVector());
+        return forMutation(scan, new CoinVector(), give);
+    }
+
+    /**
+     * Plan removing {@code remove} and then inserting {@code insert}.
+     * Coins are removed from the largest stacks first, so fewer stacks are touched.
+     * Inserted coins top up existing stacks, then reuse slots the removal emptied,
+     * then fill empty slots, following the {@link ContainerPolicy}.
+     * @return the plan, or null if a coin to remove is missing or an inserted coin doesn't fit
+     */
+    @Nullable
+    static InventoryPlan forMutation(@Nonnull CoinScan scan, @Nonnull CoinVector remove, @Nonnull CoinVector insert) {
+        InventoryPlan plan = new InventoryPlan(scan);
+
+        for (CoinType type : ALL) {
+            long count = remove.get(type);
+            if (count > 0 && !plan.remove(type.ordinal(), count)) return null;
+        }
+
+        for (CoinType type : DenominationTable.get().descending()) {
+            long count = insert.get(type);
+            if (count > 0 && !plan.insert(type.ordinal(), count)) return null;
+        }
+
+        return plan;
+    }
+
+    /**
+     * Plan rearranging the coins into {@code target} counts with as few writes as possible.
+     * For each type the largest existing stacks are kept and filled to the stack limit,
+     * the rest are cleared, and any extra stacks reuse the cleared slots first.
+     * Coins stay in the container they are in unless a new stack is needed.
+     * Coins in containers the policy doesn't take from are left alone.
+     * @return the plan, or null if the target layout doesn't fit
+     */
+    @Nullable
+    static InventoryPlan forLayout(@Nonnull CoinScan scan, @Nonnull CoinVector target) {
+        InventoryPlan plan = new InventoryPlan(scan);
+        long[] overflow = new long[ALL.length];
+
+        for (CoinType type : ALL) {
+            overflow[type.ordinal()] = plan.restack(type.ordinal(), target.get(type));
+        }
+
+        for (CoinType type : DenominationTable.get().descending()) {
+            long count = overflow[type.ordinal()];
+            if (count > 0 && !plan.insert(type.ordinal(), count)) return null;
+        }
+
+        return plan;
+    }
+
+    /**
+     * Refill this type's existing stacks, largest first, to hold {@code count} coins.
+     * @return coins that need new stacks
+     */
+    private long restack(int ordinal, long count) {
+        long remaining = count;
+        boolean[] visited = new boolean[finalType.length];
+
+        while (true) {
+            int best = -1;
+            for (int i = 0; i < finalType.length; i++) {
+                if (!visited[i] && finalType[i] == ordinal && policy.canTake(scan.slotSection(i)) && (best < 0 || finalQuantity[i] > finalQuantity[best])) {
+                    best = i;
+                }
+            }
+            if (best < 0) return remaining;
+
+            visited[best] = true;
+            int kept = (int) Math.min(remaining, table.maxStackAt(ordinal));
+            finalQuantity[best] = kept;
+            if (kept == 0) {
+                finalType[best] = -1;
+            }
+            remaining -= kept;
+        }
+    }
+
+    private boolean remove(int ordinal, long count) {
+        long remaining = count;
+        while (remaining > 0) {
+            // Largest remaining stack of this type; stacks per type are few
+            int best = -1;
+            for (int i = 0; i < finalType.length; i++) {
+                if (finalType[i] == ordinal && policy.canTake(scan.slotSection(i))
+                        && (best < 0 || finalQuantity[i] > finalQuantity[best])) {
+                    best = i;
+                }
+            }
+            if (best < 0) return false;
+
+            int taken = (int) Math.min(remaining, finalQuantity[best]);
+            finalQuantity[best] -= taken;
+            if (finalQuantity[best] == 0) {
+                finalType[best] = -1;
+            }
+            remaining -= taken;
+        }
+        return true;
+    }
+
+    private boolean insert(int ordinal, long count) {
+        long remaining = count;
+        int maxStack = table.maxStackAt(ordinal);
+
+        // 1. Top up existing stacks of this type
+        for (int i = 0; i < finalType.length && remaining > 0; i++) {
+            if (finalType[i] == ordinal && policy.canGive(scan.slotSection(i)) && finalQuantity[i] < maxStack) {
+                int added = (int) Math.min(remaining, maxStack - finalQuantity[i]);
+                finalQuantity[i] += added;
+                remaining -= added;
+            }
+        }
+
+        // 2. Reuse slots this plan emptied (one write instead of clear + add)
+        for (int i = 0; i < finalType.length && remaining > 0; i++) {
+            if (finalType[i] == -1 && scan.slotType(i) != -1 && policy.canGive(scan.slotSection(i))) {
+                remaining -= fill(i, ordinal, remaining);
+            }
+        }
+
+        // 3. Empty slots, in the policy's container order
+        for (int section : policy.giveSections()) {
+            for (int i = 0; i < finalType.length && remaining > 0; i++) {
+                if (finalType[i] == -1 && scan.slotType(i) == -1 && scan.slotSection(i) == section) {
+                    remaining -= fill(i, ordinal, remaining);
+                }
+            }
+        }
+
+        return remaining == 0;
+    }
+
+    private int fill(int slot, int ordinal, long remaining) {
+        int placed = (int) Math.min(remaining, table.maxStackAt(ordinal));
+        finalType[slot] = ordinal;
+        finalQuantity[slot] = placed;
+        return placed;
+    }
+
+    // ========== Applying ==========
+
+    /**
+     * Number of slots the plan will write.
+     */
+    int writeCount() {
+        int writes = 0;
+        for (int i = 0; i < finalType.length; i++) {
+            if (isChanged(i)) writes++;
+        }
+        return writes;
+    }
+
+    /**
+     * Write every changed slot. The player's ledger entry is not invalidated here.
+     * @return number of slots written
+     */
+    int apply(@Nonnull Player player) {
+        Inventory inventory = player.getInventory();
+        int writes = 0;
+
+        for (int i = 0; i < finalType.length; i++) {
+            if (!isChanged(i)) continue;
+
+            ItemContainer container = container(inventory, scan.slotSection(i));
+            short slot = (short) scan.slotIndex(i);
+            int type = finalType[i];
+
+            if (type == -1) {
+                container.removeItemStackFromSlot(slot);
+            } else if (type == scan.slotType(i)) {
+                // Same coin, new size - keep the existing stack's metadata
+                ItemStack current = container.getItemStack(slot);
+                container.setItemStackForSlot(slot, current.withQuantity(finalQuantity[i]));
+            } else {
+                container.setItemStackForSlot(slot, new ItemStack(table.itemId(ALL[type]), finalQuantity[i]));
+            }
+            writes++;
+        }
+
+        return writes;
+    }
+
+    private boolean isChanged(int slot) {
+        return finalType[slot] != scan.slotType(slot) || finalQuantity[slot] != scan.slotQuantity(slot);
+    }
+
+    static ItemContainer container(@Nonnull Inventory inventory, int section) {
+        return switch (section) {
+            case CoinScan.STORAGE -> inventory.getStorage();
+            case CoinScan.HOTBAR -> inventory.getHotbar();
+            default -> inventory.getBackpack();
+        };
+    }
+}
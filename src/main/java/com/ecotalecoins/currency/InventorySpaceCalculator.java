@@ -1,12 +1,8 @@
 package com.ecotalecoins.currency;
 
 import com.hypixel.hytale.server.core.entity.entities.Player;
-import com.hypixel.hytale.server.core.inventory.Inventory;
-import com.hypixel.hytale.server.core.inventory.ItemStack;
-import com.hypixel.hytale.server.core.inventory.container.ItemContainer;
 import java.util.EnumMap;
 import java.util.Map;
-import java.util.Map.Entry;
 import javax.annotation.Nonnull;
 
 /**
@@ -17,7 +13,8 @@ import javax.annotation.Nonnull;
  * @since 1.0.0
  */
 public final class InventorySpaceCalculator {
-    private static final int MAX_STACK_SIZE = 999;
+    // Amounts tried just below the estimate in maxFittingAmount for non-canonical sets
+    private static final long MAX_LINEAR_STEPS = 32;
 
     private InventorySpaceCalculator() {
     }
@@ -25,75 +22,84 @@ public final class InventorySpaceCalculator {
     /**
      * Analyze the player's inventory for coin stack information.
      * Returns detailed breakdown of each coin type's presence.
-     * NOTE: Only analyzes storage, not hotbar, to match giveSpecificCoins behavior.
+     * Only the containers coins are given to are counted (see {@link ContainerPolicy}).
      */
     public static Map<CoinType, CoinStackInfo> analyzeInventory(@Nonnull Player player) {
+        return analyzeInventory(CoinScan.of(player));
+    }
+
+    /**
+     * Build the per-type stack view from an existing scan.
+     */
+    public static Map<CoinType, CoinStackInfo> analyzeInventory(@Nonnull CoinScan scan) {
         Map<CoinType, CoinStackInfo> result = new EnumMap<>(CoinType.class);
+        int[] sections = ContainerPolicy.get().giveSections();
 
         for (CoinType type : CoinType.values()) {
-            result.put(type, CoinStackInfo.empty(type));
+            int quantity = 0;
+            int stacks = 0;
+            int space = 0;
+            for (int section : sections) {
+                quantity += scan.count(section, type);
+                stacks += scan.stackCount(section, type);
+                space += scan.spaceInStacks(section, type);
+            }
+            result.put(type, new CoinStackInfo(type, quantity, stacks, space));
         }
-
-        Inventory inventory = player.getInventory();
-        analyzeContainer(inventory.getStorage(), result);
-        // NOTE: Removed hotbar analysis - giveSpecificCoins only uses storage
         return result;
     }
 
-    private static void analyzeContainer(ItemContainer container, Map<CoinType, CoinStackInfo> result) {
-        for (short i = 0; i < container.getCapacity(); i++) {
-            ItemStack stack = container.getItemStack(i);
-            if (stack != null && !stack.isEmpty()) {
-                CoinType type = CoinType.fromItemId(stack.getItemId());
-                if (type != null) {
-                    CoinStackInfo current = result.get(type);
-                    int quantity = stack.getQuantity();
-                    int spaceLeft = MAX_STACK_SIZE - quantity;
-                    result.put(
-                        type,
-                        new CoinStackInfo(
-                            type, 
-                            current.totalQuantity() + quantity, 
-                            current.stackCount() + 1, 
-                            current.spaceInExistingStacks() + spaceLeft
-                        )
-                    );
-                }
-            }
+    /**
+     * Check if a specific amount (auto-denominated) can fit in inventory.
+     */
+    public static SpaceResult canFitAmount(@Nonnull Player player, long amount) {
+        if (amount <= 0L) {
+            return SpaceResult.noCoins();
         }
+        return canFitAmount(CoinScan.of(player), amount);
     }
 
     /**
-     * Check if a specific amount (auto-denominated) can fit in inventory.
+     * Check if a specific amount (auto-denominated) can fit, using an existing scan.
      */
-    public static SpaceResult canFitAmount(@Nonnull Player player, long amount) {
+    public static SpaceResult canFitAmount(@Nonnull CoinScan scan, long amount) {
         if (amount <= 0L) {
             return SpaceResult.noCoins();
         }
         
-        Map<CoinType, Integer> breakdown = CoinManager.calculateOptimalBreakdown(amount);
-        Map<CoinType, CoinStackInfo> inventoryState = analyzeInventory(player);
-        int totalFitsInExisting = 0;
-        int totalNewSlotsNeeded = 0;
-
-        for (Entry<CoinType, Integer> entry : breakdown.entrySet()) {
-            CoinType type = entry.getKey();
-            int coinsToAdd = entry.getValue();
-            CoinStackInfo info = inventoryState.get(type);
-            int spaceInExisting = info != null ? info.spaceInExistingStacks() : 0;
-            int fitsInExisting = Math.min(coinsToAdd, spaceInExisting);
+        DenominationTable table = DenominationTable.get();
+        ContainerPolicy policy = ContainerPolicy.get();
+        
+        // Pouch mode: the whole amount goes into one pouch
+        int pouchSlots = CoinPouch.slotsNeeded(scan, amount);
+        if (pouchSlots >= 0) {
+            return SpaceResult.success(pouchSlots, policy.freeSlots(scan), 0, 0);
+        }
+        
+        CoinVector breakdown = CoinManager.calculateOptimalBreakdown(amount, CoinVector.scratch());
+        long totalCoins = 0;
+        long totalFitsInExisting = 0;
+        long totalNewSlotsNeeded = 0;
+
+        for (CoinType type : table.descending()) {
+            long coinsToAdd = breakdown.get(type);
+            if (coinsToAdd <= 0) continue;
+
+            totalCoins += coinsToAdd;
+            long fitsInExisting = Math.min(coinsToAdd, policy.spaceInStacks(scan, type));
             totalFitsInExisting += fitsInExisting;
-            int needsNewStacks = coinsToAdd - fitsInExisting;
+            long needsNewStacks = coinsToAdd - fitsInExisting;
             if (needsNewStacks > 0) {
-                int stacksNeeded = (needsNewStacks + MAX_STACK_SIZE - 1) / MAX_STACK_SIZE;
-                totalNewSlotsNeeded += stacksNeeded;
+                int maxStack = table.maxStack(type);
+                totalNewSlotsNeeded += (needsNewStacks + maxStack - 1) / maxStack;
             }
         }
 
-        int freeSlots = CoinManager.countFreeSlots(player);
+        int freeSlots = policy.freeSlots(scan);
+        int slotsNeeded = (int) Math.min(totalNewSlotsNeeded, Integer.MAX_VALUE);
         return totalNewSlotsNeeded <= freeSlots
-            ? SpaceResult.success(totalNewSlotsNeeded, freeSlots, totalFitsInExisting, (int)amount - totalFitsInExisting)
-            : SpaceResult.notEnoughSpace(totalNewSlotsNeeded, freeSlots);
+            ? SpaceResult.success(slotsNeeded, freeSlots, (int) totalFitsInExisting, (int) (totalCoins - totalFitsInExisting))
+            : SpaceResult.notEnoughSpace(slotsNeeded, freeSlots);
     }
 
     /**
@@ -103,18 +109,28 @@ public final class InventorySpaceCalculator {
         if (count <= 0) {
             return SpaceResult.noCoins();
         }
+        return canFitSpecific(CoinScan.of(player), type, count);
+    }
+
+    /**
+     * Check if a specific coin type and count can fit, using an existing scan.
+     */
+    public static SpaceResult canFitSpecific(@Nonnull CoinScan scan, @Nonnull CoinType type, int count) {
+        if (count <= 0) {
+            return SpaceResult.noCoins();
+        }
         
-        Map<CoinType, CoinStackInfo> inventoryState = analyzeInventory(player);
-        CoinStackInfo info = inventoryState.get(type);
-        int spaceInExisting = info != null ? info.spaceInExistingStacks() : 0;
+        ContainerPolicy policy = ContainerPolicy.get();
+        int spaceInExisting = (int) Math.min(policy.spaceInStacks(scan, type), Integer.MAX_VALUE);
         int fitsInExisting = Math.min(count, spaceInExisting);
         int needsNewStacks = count - fitsInExisting;
         int newSlotsNeeded = 0;
         if (needsNewStacks > 0) {
-            newSlotsNeeded = (needsNewStacks + MAX_STACK_SIZE - 1) / MAX_STACK_SIZE;
+            int maxStack = DenominationTable.get().maxStack(type);
+            newSlotsNeeded = (needsNewStacks + maxStack - 1) / maxStack;
         }
 
-        int freeSlots = CoinManager.countFreeSlots(player);
+        int freeSlots = policy.freeSlots(scan);
         
         return newSlotsNeeded <= freeSlots
             ? SpaceResult.success(newSlotsNeeded, freeSlots, fitsInExisting, needsNewStacks)
@@ -125,17 +141,90 @@ public final class InventorySpaceCalculator {
      * Calculate total space available for a specific coin type.
      */
     public static long calculateTotalSpaceFor(@Nonnull Player player, @Nonnull CoinType type) {
-        CoinStackInfo info = analyzeInventory(player).get(type);
-        int freeSlots = CoinManager.countFreeSlots(player);
-        int spaceInExisting = info != null ? info.spaceInExistingStacks() : 0;
-        return freeSlots * (long)MAX_STACK_SIZE + spaceInExisting;
+        return calculateTotalSpaceFor(CoinScan.of(player), type);
+    }
+
+    /**
+     * Calculate total space available for a specific coin type, using an existing scan.
+     */
+    public static long calculateTotalSpaceFor(@Nonnull CoinScan scan, @Nonnull CoinType type) {
+        ContainerPolicy policy = ContainerPolicy.get();
+        return policy.freeSlots(scan) * (long) DenominationTable.get().maxStack(type) + policy.spaceInStacks(scan, type);
+    }
+
+    /**
+     * Largest amount up to {@code cap} whose fewest-coin breakdown fits in the inventory.
+     *
+     * Works down the denominations once: each takes as many coins as the cap and its
+     * headroom (room in existing stacks plus free slots) allow, and whatever it leaves
+     * for the smaller coins is capped below its own value, so the result is its own
+     * greedy breakdown. For canonical sets that is exact.
+     *
+     * For non-canonical sets the fewest-coin breakdown may differ from greedy, and fit
+     * is not monotone in the amount, so this is a bounded approximation: the estimate
+     * is checked, then up to {@value #MAX_LINEAR_STEPS} amounts just below it, then a
+     * bisection over checked amounts. The result always fits, but a larger fitting
+     * amount may exist. At most about 100 breakdowns per call.
+     */
+    public static long maxFittingAmount(@Nonnull CoinScan scan, long cap) {
+        if (cap <= 0) return 0;
+        if (CoinPouch.slotsNeeded(scan, cap) >= 0) return cap;
+
+        DenominationTable table = DenominationTable.get();
+        ContainerPolicy policy = ContainerPolicy.get();
+        long freeSlots = policy.freeSlots(scan);
+        long capRemaining = cap;
+        long amount = 0;
+
+        for (CoinType type : table.descending()) {
+            long value = table.value(type);
+            int maxStack = table.maxStack(type);
+            long space = policy.spaceInStacks(scan, type);
+
+            long headroom = space + freeSlots * maxStack;
+            long coins = Math.min(capRemaining / value, headroom);
+            if (coins > space) {
+                freeSlots -= (coins - space + maxStack - 1) / maxStack;
+            }
+
+            amount += coins * value;
+            capRemaining = Math.min(capRemaining - coins * value, value - 1);
+        }
+
+        if (table.isCanonical() || canFitAmount(scan, amount).canFit()) {
+            return amount;
+        }
+
+        // The exact breakdown may trade top coins for smaller ones that need another slot.
+        // Amounts just below the estimate often break down differently and fit.
+        long steps = Math.min(amount, MAX_LINEAR_STEPS);
+        for (long candidate = amount - 1; candidate >= amount - steps; candidate--) {
+            if (canFitAmount(scan, candidate).canFit()) {
+                return candidate;
+            }
+        }
+
+        // Bisection: low is always 0 or an amount checked to fit, so the result is safe
+        // to hand out, though not necessarily the largest
+        long low = 0;
+        long high = amount;
+        while (low < high) {
+            long mid = low + (high - low + 1) / 2;
+            if (canFitAmount(scan, mid).canFit()) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
     }
 
     /**
      * Get a debug summary of the player's coin inventory state.
      */
     public static String getInventorySummary(@Nonnull Player player) {
-        Map<CoinType, CoinStackInfo> state = analyzeInventory(player);
+        CoinScan scan = CoinScan.of(player);
+        Map<CoinType, CoinStackInfo> state = analyzeInventory(scan);
         StringBuilder sb = new StringBuilder();
         sb.append("Inventory Coin State:\n");
 
@@ -153,8 +242,7 @@ public final class InventorySpaceCalculator {
             }
         }
 
-        int slots = CoinManager.countFreeSlots(player);
-        sb.append("  Free slots: ").append(slots);
+        sb.append("  Free slots: ").append(ContainerPolicy.get().freeSlots(scan));
         return sb.toString();
     }
 
@@ -3,8 +3,15 @@ package com.ecotalecoins.gui;
 import com.ecotale.api.EcotaleAPI;
 import com.ecotalecoins.Main;
 import com.ecotalecoins.currency.BankManager;
+import com.ecotalecoins.currency.BankUnits;
+import com.ecotalecoins.currency.CoinLedger;
 import com.ecotalecoins.currency.CoinManager;
+import com.ecotalecoins.currency.CoinPouch;
+import com.ecotalecoins.currency.CoinScan;
 import com.ecotalecoins.currency.CoinType;
+import com.ecotalecoins.currency.CoinVector;
+import com.ecotalecoins.currency.ContainerPolicy;
+import com.ecotalecoins.currency.DenominationTable;
 import com.ecotalecoins.currency.InventorySpaceCalculator;
 import com.ecotalecoins.transaction.SecureTransaction;
 import com.ecotalecoins.util.TranslationHelper;
@@ -22,10 +29,11 @@ import com.hypixel.hytale.server.core.ui.builder.EventData;
 import com.hypixel.hytale.server.core.ui.builder.UICommandBuilder;
 import com.hypixel.hytale.server.core.ui.builder.UIEventBuilder;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
+import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import java.awt.Color;
-import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import org.checkerframework.checker.nullness.compatqual.NonNullDecl;
 
 public class BankGui extends InteractiveCustomUIPage<BankGui.BankGuiData> {
@@ -60,7 +68,8 @@ public class BankGui extends InteractiveCustomUIPage<BankGui.BankGuiData> {
       if (player != null && playerRefComp != null) {
          UUID playerUuid = playerRefComp.getUuid();
          long bankBalance = BankManager.getBankBalance(playerUuid);
-         long pocketBalance = CoinManager.countCoins(player);
+         CoinScan scan = CoinLedger.get(player);
+         long pocketBalance = scan.totalValue();
          long totalWealth = bankBalance + pocketBalance;
          String symbol = EcotaleAPI.getCurrencySymbol();
          events.addEventBinding(CustomUIEventBindingType.Activating, "#CloseButton", EventData.of("Action", "Close"), false);
@@ -86,7 +95,7 @@ public class BankGui extends InteractiveCustomUIPage<BankGui.BankGuiData> {
          this.updateTabStyles(cmd);
          switch (this.currentTab) {
             case WALLET:
-               this.buildWalletTab(cmd, events, player, bankBalance, pocketBalance, symbol);
+               this.buildWalletTab(cmd, events, scan, bankBalance, pocketBalance, symbol);
                break;
             case DEPOSIT:
                this.buildDepositTab(cmd, events, pocketBalance, bankBalance, symbol);
@@ -95,7 +104,7 @@ public class BankGui extends InteractiveCustomUIPage<BankGui.BankGuiData> {
                this.buildWithdrawTab(cmd, events, pocketBalance, bankBalance, symbol);
                break;
             case EXCHANGE:
-               this.buildExchangeTab(cmd, events, player);
+               this.buildExchangeTab(cmd, events, scan);
          }
 
          this.translateUI(cmd);
@@ -127,7 +136,8 @@ public class BankGui extends InteractiveCustomUIPage<BankGui.BankGuiData> {
          UUID playerUuid = playerRefComp.getUuid();
          String symbol = EcotaleAPI.getCurrencySymbol();
          long bankBalance = BankManager.getBankBalance(playerUuid);
-         long pocketBalance = CoinManager.countCoins(player);
+         CoinScan scan = CoinLedger.get(player);
+         long pocketBalance = scan.totalValue();
          switch (this.currentTab) {
             case DEPOSIT:
                long amountx = this.parseAmount(this.amountInput, pocketBalance);
@@ -156,16 +166,16 @@ public class BankGui extends InteractiveCustomUIPage<BankGui.BankGuiData> {
                }
                break;
             case EXCHANGE:
-               this.updateExchangePreview(cmd, player);
+               this.updateExchangePreview(cmd, scan);
          }
       }
    }
 
-   private void updateExchangePreview(UICommandBuilder cmd, Player player) {
+   private void updateExchangePreview(UICommandBuilder cmd, CoinScan scan) {
       CoinType fromType = this.enabledTypes[this.fromCoinIndex];
       CoinType toType = this.enabledTypes[this.toCoinIndex];
       long inputAmount = this.parseAmountSimple(this.amountInput);
-      int haveFrom = CoinManager.getBreakdown(player).getOrDefault(fromType, 0);
+      int haveFrom = (int)ContainerPolicy.get().takeCount(scan, fromType);
       long fromValue = fromType.getValue();
       long toValue = toType.getValue();
       long resultAmount = 0L;
@@ -176,7 +186,7 @@ public class BankGui extends InteractiveCustomUIPage<BankGui.BankGuiData> {
          resultAmount = inputAmount * (fromValue / toValue);
       }
 
-      InventorySpaceCalculator.SpaceResult space = InventorySpaceCalculator.canFitSpecific(player, toType, (int)resultAmount);
+      InventorySpaceCalculator.SpaceResult space = InventorySpaceCalculator.canFitSpecific(scan, toType, (int)resultAmount);
       String message;
       if (inputAmount <= 0L) {
          message = this.t("gui.bank.exchange.enter_amount", "Enter amount to exchange");
@@ -207,13 +217,14 @@ public class BankGui extends InteractiveCustomUIPage<BankGui.BankGuiData> {
    private int calculateSmartMax(Player player) {
       CoinType fromType = this.enabledTypes[this.fromCoinIndex];
       CoinType toType = this.enabledTypes[this.toCoinIndex];
-      int haveFrom = CoinManager.getBreakdown(player).getOrDefault(fromType, 0);
+      CoinScan scan = CoinLedger.get(player);
+      int haveFrom = (int)ContainerPolicy.get().takeCount(scan, fromType);
       if (haveFrom == 0) {
          return 0;
       } else {
          long fromValue = fromType.getValue();
          long toValue = toType.getValue();
-         long totalSpaceForTarget = InventorySpaceCalculator.calculateTotalSpaceFor(player, toType);
+         long totalSpaceForTarget = InventorySpaceCalculator.calculateTotalSpaceFor(scan, toType);
          int maxFromCoins;
          if (fromValue < toValue) {
             maxFromCoins = haveFrom;
@@ -235,16 +246,15 @@ public class BankGui extends InteractiveCustomUIPage<BankGui.BankGuiData> {
       }
    }
 
-   private void buildWalletTab(UICommandBuilder cmd, UIEventBuilder events, Player player, long bankBalance, long pocketBalance, String symbol) {
-      Map<CoinType, Integer> coinBreakdown = CoinManager.getBreakdown(player);
+   private void buildWalletTab(UICommandBuilder cmd, UIEventBuilder events, CoinScan scan, long bankBalance, long pocketBalance, String symbol) {
       CoinType[] types = this.enabledTypes;
       cmd.clear("#CoinRow1");
       cmd.clear("#CoinRow2");
 
       for (int i = 0; i < types.length; i++) {
          CoinType type = types[i];
-         int count = coinBreakdown.getOrDefault(type, 0);
-         long value = count * type.getValue();
+         int count = scan.count(type);
+         long value = Math.multiplyExact((long) count, type.getValue());
          String targetRow = i < 3 ? "#CoinRow1" : "#CoinRow2";
          cmd.append(targetRow, "Pages/Ecotale_BankCoinCard.ui");
          int rowIndex = i < 3 ? i : i - 3;
@@ -254,6 +264,18 @@ public class BankGui extends InteractiveCustomUIPage<BankGui.BankGuiData> {
          cmd.set(targetRow + "[" + rowIndex + "] #CoinValue.Text", symbol + this.formatLong(value));
       }
 
+      if (scan.pouchCount() > 0) {
+         // Pouch card goes in the shorter row
+         int row1 = Math.min(types.length, 3);
+         String targetRow = row1 < 3 || row1 <= types.length - row1 ? "#CoinRow1" : "#CoinRow2";
+         int rowIndex = targetRow.equals("#CoinRow1") ? row1 : types.length - row1;
+         cmd.append(targetRow, "Pages/Ecotale_BankCoinCard.ui");
+         cmd.set(targetRow + "[" + rowIndex + "] #CoinIcon.ItemId", CoinPouch.ITEM_ID);
+         cmd.set(targetRow + "[" + rowIndex + "] #CoinName.Text", this.t("gui.bank.wallet.pouch", "Pouch"));
+         cmd.set(targetRow + "[" + rowIndex + "] #CoinCount.Text", "x" + scan.pouchCount());
+         cmd.set(targetRow + "[" + rowIndex + "] #CoinValue.Text", symbol + this.formatLong(CoinPouch.heldValue(scan)));
+      }
+
       events.addEventBinding(CustomUIEventBindingType.Activating, "#BtnDepositAll", EventData.of("Action", "DepositAll"), false);
       events.addEventBinding(CustomUIEventBindingType.Activating, "#BtnWithdrawAll", EventData.of("Action", "WithdrawAll"), false);
       events.addEventBinding(CustomUIEventBindingType.Activating, "#BtnConsolidate", EventData.of("Action", "Consolidate"), false);
@@ -309,18 +331,17 @@ public class BankGui extends InteractiveCustomUIPage<BankGui.BankGuiData> {
       }
    }
 
-   private void buildExchangeTab(UICommandBuilder cmd, UIEventBuilder events, Player player) {
+   private void buildExchangeTab(UICommandBuilder cmd, UIEventBuilder events, CoinScan scan) {
       this.fromCoinIndex = Math.max(0, Math.min(this.fromCoinIndex, this.enabledTypes.length - 1));
       this.toCoinIndex = Math.max(0, Math.min(this.toCoinIndex, this.enabledTypes.length - 1));
       CoinType fromType = this.enabledTypes[this.fromCoinIndex];
       CoinType toType = this.enabledTypes[this.toCoinIndex];
-      Map<CoinType, Integer> coinBreakdown = CoinManager.getBreakdown(player);
       cmd.set("#FromCoinIcon.ItemId", fromType.getItemId());
       cmd.set("#FromCoinName.Text", this.getCoinName(fromType));
-      cmd.set("#FromCoinHave.Text", this.t("gui.bank.exchange.you_have", "You have: {0}", coinBreakdown.getOrDefault(fromType, 0)));
+      cmd.set("#FromCoinHave.Text", this.t("gui.bank.exchange.you_have", "You have: {0}", scan.count(fromType)));
       cmd.set("#ToCoinIcon.ItemId", toType.getItemId());
       cmd.set("#ToCoinName.Text", this.getCoinName(toType));
-      cmd.set("#ToCoinHave.Text", this.t("gui.bank.exchange.you_have", "You have: {0}", coinBreakdown.getOrDefault(toType, 0)));
+      cmd.set("#ToCoinHave.Text", this.t("gui.bank.exchange.you_have", "You have: {0}", scan.count(toType)));
       events.addEventBinding(CustomUIEventBindingType.Activating, "#FromPrev", EventData.of("Action", "FromPrev"), false);
       events.addEventBinding(CustomUIEventBindingType.Activating, "#FromNext", EventData.of("Action", "FromNext"), false);
       events.addEventBinding(CustomUIEventBindingType.Activating, "#ToPrev", EventData.of("Action", "ToPrev"), false);
@@ -342,17 +363,18 @@ public class BankGui extends InteractiveCustomUIPage<BankGui.BankGuiData> {
       events.addEventBinding(CustomUIEventBindingType.Activating, "#ExchangeQuickMax", EventData.of("Action", "ExchangeMax"), false);
       events.addEventBinding(CustomUIEventBindingType.Activating, "#ConfirmExchange", EventData.of("Action", "ConfirmExchange"), false);
       long amount = this.parseAmountSimple(this.amountInput);
-      int available = coinBreakdown.getOrDefault(fromType, 0);
       if (amount > 0L && fromType != toType) {
-         long sourceValue = fromType.getValue() * amount;
+         long sourceValue = this.exactProduct(fromType.getValue(), amount);
          long targetValue = toType.getValue();
-         if (sourceValue >= targetValue) {
+         if (sourceValue < 0L) {
+            cmd.set("#ExchangeResultText.Text", this.t("transaction.error.too_large", "Amount too large"));
+         } else if (sourceValue >= targetValue) {
             long resultAmount = sourceValue / targetValue;
             cmd.set(
                "#ExchangeResultText.Text", "USE: " + amount + " " + this.getCoinName(fromType) + "  -->  GET: " + resultAmount + " " + this.getCoinName(toType)
             );
          } else {
-            long needed = (long)Math.ceil((double)targetValue / fromType.getValue());
+            long needed = Math.ceilDiv(targetValue, fromType.getValue());
             cmd.set("#ExchangeResultText.Text", "Need at least " + needed + " " + this.getCoinName(fromType));
          }
       } else if (fromType == toType) {
@@ -401,6 +423,7 @@ public class BankGui extends InteractiveCustomUIPage<BankGui.BankGuiData> {
                }
 
                String cmd = data.action;
+               CompletableFuture<SecureTransaction.TransactionResult> pending = null;
                switch (cmd) {
                   case "Close":
                      this.close();
@@ -418,22 +441,22 @@ public class BankGui extends InteractiveCustomUIPage<BankGui.BankGuiData> {
                      this.handleQuickAmount(player, playerUuid, 1.0);
                      break;
                   case "DepositAll":
-                     this.executeDepositAll(player, playerUuid);
+                     pending = this.executeDepositAll(player, playerUuid);
                      break;
                   case "WithdrawAll":
-                     this.executeWithdrawAll(player, playerUuid);
+                     pending = this.executeWithdrawAll(player, playerUuid);
                      break;
                   case "Consolidate":
                      this.executeConsolidate(player);
                      break;
                   case "ConfirmDeposit":
-                     this.executeDeposit(player, playerUuid);
+                     pending = this.executeDeposit(player, playerUuid);
                      break;
                   case "ConfirmWithdraw":
-                     this.executeWithdraw(player, playerUuid);
+                     pending = this.executeWithdraw(player, playerUuid);
                      break;
                   case "ConfirmExchange":
-                     this.executeExchange(player);
+                     pending = this.executeExchange(player);
                      break;
                   case "FromPrev":
                      this.fromCoinIndex = this.cycleIndex(this.fromCoinIndex, -1);
@@ -455,74 +478,57 @@ public class BankGui extends InteractiveCustomUIPage<BankGui.BankGuiData> {
 
                this.lastClickTime = System.currentTimeMillis();
                this.refreshUI(ref, store);
+               if (pending != null) {
+                  this.showResult(pending, ref, store);
+               }
             }
          }
       }
    }
 
-   private void executeDeposit(Player player, UUID playerUuid) {
+   private CompletableFuture<SecureTransaction.TransactionResult> executeDeposit(Player player, UUID playerUuid) {
       long pocketBalance = CoinManager.countCoins(player);
       long amount = this.parseAmount(this.amountInput, pocketBalance);
       if (amount <= 0L) {
          this.playerRef.sendMessage(Message.raw(this.t("gui.bank.error.invalid_amount", "Enter a valid amount")).color(Color.RED));
+         return null;
       } else {
-         SecureTransaction.TransactionResult result = SecureTransaction.executeSecureDeposit(player, playerUuid, amount);
-         if (result.isSuccess()) {
-            this.amountInput = "";
-            this.playerRef.sendMessage(Message.raw(result.getMessage()).color(Color.GREEN));
-         } else if (result.isMoneySafe() && result.getTxHash() != null) {
-            this.playerRef.sendMessage(Message.raw(result.getMessage()).color(Color.YELLOW));
-         } else {
-            this.playerRef.sendMessage(Message.raw(result.getMessage()).color(Color.RED));
-         }
+         return SecureTransaction.executeSecureDeposit(player, playerUuid, amount);
       }
    }
 
-   private void executeWithdraw(Player player, UUID playerUuid) {
+   private CompletableFuture<SecureTransaction.TransactionResult> executeWithdraw(Player player, UUID playerUuid) {
       long bankBalance = BankManager.getBankBalance(playerUuid);
       long amount = this.parseAmount(this.amountInput, bankBalance);
       if (amount <= 0L) {
          this.playerRef.sendMessage(Message.raw(this.t("gui.bank.error.invalid_amount", "Enter a valid amount")).color(Color.RED));
+         return null;
       } else {
-         SecureTransaction.TransactionResult result = SecureTransaction.executeSecureWithdraw(player, playerUuid, amount);
-         if (result.isSuccess()) {
-            this.amountInput = "";
-            this.playerRef.sendMessage(Message.raw(result.getMessage()).color(Color.GREEN));
-         } else if (result.isMoneySafe() && result.getTxHash() != null) {
-            this.playerRef.sendMessage(Message.raw(result.getMessage()).color(Color.YELLOW));
-         } else {
-            this.playerRef.sendMessage(Message.raw(result.getMessage()).color(Color.RED));
-         }
+         return SecureTransaction.executeSecureWithdraw(player, playerUuid, amount);
       }
    }
 
-   private void executeDepositAll(Player player, UUID playerUuid) {
-      long pocketBalance = CoinManager.countCoins(player);
+   private CompletableFuture<SecureTransaction.TransactionResult> executeDepositAll(Player player, UUID playerUuid) {
+      long pocketBalance = ContainerPolicy.get().takeValue(CoinLedger.get(player));
       if (pocketBalance <= 0L) {
          this.playerRef.sendMessage(Message.raw(this.t("gui.bank.error.no_pocket_coins", "No coins in pocket to deposit")).color(Color.YELLOW));
+         return null;
       } else {
-         SecureTransaction.TransactionResult result = SecureTransaction.executeSecureDeposit(player, playerUuid, pocketBalance);
-         if (result.isSuccess()) {
-            this.playerRef.sendMessage(Message.raw(result.getMessage()).color(Color.GREEN));
-         } else {
-            this.playerRef.sendMessage(Message.raw(result.getMessage()).color(Color.RED));
-         }
+         return SecureTransaction.executeSecureDeposit(player, playerUuid, pocketBalance);
       }
    }
 
-   private void executeWithdrawAll(Player player, UUID playerUuid) {
+   private CompletableFuture<SecureTransaction.TransactionResult> executeWithdrawAll(Player player, UUID playerUuid) {
       long bankBalance = BankManager.getBankBalance(playerUuid);
+      long fitting = InventorySpaceCalculator.maxFittingAmount(CoinLedger.get(player), bankBalance);
       if (bankBalance <= 0L) {
          this.playerRef.sendMessage(Message.raw(this.t("gui.bank.error.no_bank_coins", "No coins in bank to withdraw")).color(Color.YELLOW));
+         return null;
+      } else if (fitting <= 0L) {
+         this.playerRef.sendMessage(Message.raw(this.t("gui.bank.error.no_space", "Not enough inventory space")).color(Color.RED));
+         return null;
       } else {
-         SecureTransaction.TransactionResult result = SecureTransaction.executeSecureWithdraw(player, playerUuid, bankBalance);
-         if (result.isSuccess()) {
-            this.playerRef.sendMessage(Message.raw(result.getMessage()).color(Color.GREEN));
-         } else if (result.isMoneySafe() && result.getTxHash() != null) {
-            this.playerRef.sendMessage(Message.raw(result.getMessage()).color(Color.YELLOW));
-         } else {
-            this.playerRef.sendMessage(Message.raw(result.getMessage()).color(Color.RED));
-         }
+         return SecureTransaction.executeSecureWithdraw(player, playerUuid, fitting);
       }
    }
 
@@ -531,19 +537,36 @@ public class BankGui extends InteractiveCustomUIPage<BankGui.BankGuiData> {
       if (pocketBalance <= 0L) {
          this.playerRef.sendMessage(Message.raw(this.t("gui.bank.error.no_consolidate", "No coins to consolidate")).color(Color.YELLOW));
       } else {
-         CoinManager.consolidate(player);
-         this.playerRef.sendMessage(Message.raw(this.t("gui.bank.consolidate_success", "Coins consolidated to highest denominations")).color(Color.GREEN));
+         int writes = CoinManager.consolidate(player);
+         if (writes < 0) {
+            this.playerRef.sendMessage(Message.raw(this.t("gui.bank.error.consolidate_no_space", "Not enough inventory space to consolidate")).color(Color.RED));
+         } else if (writes == 0) {
+            this.playerRef.sendMessage(Message.raw(this.t("gui.bank.consolidate_already", "Coins are already consolidated")).color(Color.YELLOW));
+         } else {
+            this.playerRef.sendMessage(Message.raw(this.t("gui.bank.consolidate_success", "Coins consolidated to highest denominations")).color(Color.GREEN));
+         }
       }
    }
 
-   private void executeExchange(Player player) {
+   private CompletableFuture<SecureTransaction.TransactionResult> executeExchange(Player player) {
       CoinType[] types = this.enabledTypes;
       CoinType fromType = types[this.fromCoinIndex];
       CoinType toType = types[this.toCoinIndex];
       long amount = this.parseAmountSimple(this.amountInput);
       if (amount > 0L && amount <= 2147483647L) {
-         SecureTransaction.TransactionResult result = SecureTransaction.executeSecureExchange(player, this.playerRef.getUuid(), fromType, (int)amount, toType);
-         if (result.isSuccess()) {
+         return SecureTransaction.executeSecureExchange(player, this.playerRef.getUuid(), fromType, (int)amount, toType);
+      } else {
+         this.playerRef.sendMessage(Message.raw(this.t("gui.bank.error.invalid_amount", "Enter a valid amount")).color(Color.RED));
+         return null;
+      }
+   }
+
+   private void showResult(CompletableFuture<SecureTransaction.TransactionResult> pending, Ref<EntityStore> ref, Store<EntityStore> store) {
+      World world = store.getExternalData().getWorld();
+      pending.whenCompleteAsync((result, error) -> {
+         if (error != null) {
+            this.playerRef.sendMessage(Message.raw(this.t("gui.bank.error.transaction_failed", "Transaction failed - check your bank balance")).color(Color.RED));
+         } else if (result.isSuccess()) {
             this.amountInput = "";
             this.playerRef.sendMessage(Message.raw(result.getMessage()).color(Color.GREEN));
          } else if (result.isMoneySafe() && result.getTxHash() != null) {
@@ -551,15 +574,17 @@ public class BankGui extends InteractiveCustomUIPage<BankGui.BankGuiData> {
          } else {
             this.playerRef.sendMessage(Message.raw(result.getMessage()).color(Color.RED));
          }
-      } else {
-         this.playerRef.sendMessage(Message.raw(this.t("gui.bank.error.invalid_amount", "Enter a valid amount")).color(Color.RED));
-      }
+
+         if (ref.isValid()) {
+            this.refreshUI(ref, store);
+         }
+      }, world);
    }
 
    private void handleQuickAmount(Player player, UUID playerUuid, double percentage) {
       long max = switch (this.currentTab) {
-         case DEPOSIT -> CoinManager.countCoins(player);
-         case WITHDRAW -> BankManager.getBankBalance(playerUuid);
+         case DEPOSIT -> ContainerPolicy.get().takeValue(CoinLedger.get(player));
+         case WITHDRAW -> InventorySpaceCalculator.maxFittingAmount(CoinLedger.get(player), BankManager.getBankBalance(playerUuid));
          default -> 0L;
       };
       this.amountInput = String.valueOf(Math.max(1L, (long)(max * percentage)));
@@ -586,9 +611,8 @@ public class BankGui extends InteractiveCustomUIPage<BankGui.BankGuiData> {
          } else {
             long resultCoins = fromType.getValue() / toType.getValue();
             int MAX_INVENTORY_SLOTS = 45;
-            int MAX_STACK_SIZE = 999;
-            long MAX_COINS = 44955L;
-            return resultCoins <= 44955L;
+            long MAX_COINS = (long) MAX_INVENTORY_SLOTS * DenominationTable.get().maxStack(toType);
+            return resultCoins <= MAX_COINS;
          }
       }
    }
@@ -648,7 +672,7 @@ public class BankGui extends InteractiveCustomUIPage<BankGui.BankGuiData> {
                if (val <= 0L) {
                   return 0L;
                } else {
-                  long maxBalance = (long)EcotaleAPI.getMaxBalance();
+                  long maxBalance = BankUnits.fromApi(EcotaleAPI.getMaxBalance());
                   return Math.min(val, maxBalance);
                }
             } catch (NumberFormatException var9) {
@@ -667,7 +691,7 @@ public class BankGui extends InteractiveCustomUIPage<BankGui.BankGuiData> {
                if (val <= 0L) {
                   return 0L;
                } else {
-                  long maxBalance = (long)EcotaleAPI.getMaxBalance();
+                  long maxBalance = BankUnits.fromApi(EcotaleAPI.getMaxBalance());
                   return Math.min(val, maxBalance);
                }
             } catch (NumberFormatException var7) {
@@ -681,6 +705,14 @@ public class BankGui extends InteractiveCustomUIPage<BankGui.BankGuiData> {
       }
    }
 
+   private long exactProduct(long value, long count) {
+      try {
+         return Math.multiplyExact(value, count);
+      } catch (ArithmeticException var5) {
+         return -1L;
+      }
+   }
+
    private void refreshUI(Ref<EntityStore> ref, Store<EntityStore> store) {
       UICommandBuilder cmd = new UICommandBuilder();
       UIEventBuilder events = new UIEventBuilder();
@@ -750,12 +782,17 @@ public class BankGui extends InteractiveCustomUIPage<BankGui.BankGuiData> {
 
    private void renderCoinPreview(UICommandBuilder cmd, String targetSelector, long amount, boolean isDeposit) {
       cmd.clear(targetSelector);
-      if (amount > 0L) {
-         Map<CoinType, Integer> breakdown = CoinManager.calculateOptimalBreakdown(amount);
+      if (amount > 0L && !isDeposit && CoinPouch.isEnabled()) {
+         // Withdrawals go into a pouch
+         cmd.append(targetSelector, "Pages/Ecotale_CoinPreviewItem.ui");
+         cmd.set(targetSelector + "[0] #CoinIcon.ItemId", CoinPouch.ITEM_ID);
+         cmd.set(targetSelector + "[0] #CoinQty.Text", this.formatLong(amount));
+      } else if (amount > 0L) {
+         CoinVector breakdown = CoinManager.calculateOptimalBreakdown(amount, CoinVector.scratch());
          int idx = 0;
 
          for (CoinType type : CoinType.valuesDescending()) {
-            int count = breakdown.getOrDefault(type, 0);
+            long count = breakdown.get(type);
             if (count > 0) {
                cmd.append(targetSelector, "Pages/Ecotale_CoinPreviewItem.ui");
                String itemSelector = targetSelector + "[" + idx + "]";
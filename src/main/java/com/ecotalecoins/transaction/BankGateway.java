@@ -0,0 +1,605 @@
+package com.ecotalecoins.transaction;
+
+import com.ecotale.api.EcotaleAPI;
+import com.ecotalecoins.currency.BalanceCache;
+import com.ecotalecoins.currency.BankUnits;
+import com.ecotalecoins.util.UuidLongMap;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * Write-coalescing front for EcotaleAPI bank calls.
+ *
+ * Deposits are appended to a local buffer file and added to the account's
+ * buffered total. A background flush pays each account's total into the bank
+ * with one EcotaleAPI call per interval, however many deposits it covers.
+ * A withdrawal covered by the account's buffered deposits is netted against
+ * them without calling the bank; otherwise it is checked against the local
+ * view of the balance and settled together with the buffered part in one call.
+ *
+ * The buffer is replayed on startup, so buffered deposits survive a crash.
+ * Every settlement is bracketed by SETTLING and SETTLED (or FAILED) records.
+ * One cut short by a crash may or may not have reached the bank, so it is
+ * never paid again: replay takes it out of the buffered totals and parks it
+ * as a REVIEW record, kept across restarts and logged with its batch id on
+ * each start, so an admin can match it against the TX_* entries in the bank
+ * history.
+ *
+ * Until {@link #open} is called, calls go straight to EcotaleAPI.
+ *
+ * @author Ecotale
+ * @since 1.2.0
+ */
+public final class BankGateway {
+
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 50L;
+
+    private static final byte ADD = 1;
+    private static final byte SETTLING = 2;
+    private static final byte SETTLED = 3;
+    private static final byte FAILED = 4;
+    private static final byte REVIEW = 5;
+    // [crc32][kind][uuid msb][uuid lsb][amount][batch]
+    private static final int RECORD_BYTES = 4 + 1 + 8 + 8 + 8 + 8;
+    // Rewrite the buffer from memory once it grows past this
+    private static final long COMPACT_BYTES = 1L << 20;
+
+    // Buffer state, guarded by monitor
+    private static final Object monitor = new Object();
+    private static final UuidLongMap pending = new UuidLongMap();
+    private static final UuidLongMap pendingOps = new UuidLongMap();
+    private static final UuidLongMap inFlight = new UuidLongMap();
+    // Settlements cut short by a crash, waiting for an admin; never paid in
+    private static final Map<Settlement, Long> unsettled = new HashMap<>();
+    private static Buffer buffer;
+
+    private static final Object flushLock = new Object();
+    private static ScheduledExecutorService flusher;
+
+    private static final LongAdder flushes = new LongAdder();
+    private static final LongAdder accounts = new LongAdder();
+    private static final LongAdder operations = new LongAdder();
+    private static final LongAdder netted = new LongAdder();
+    private static final LongAdder failures = new LongAdder();
+    private static final LongAccumulator maxBatch = new LongAccumulator(Math::max, 0L);
+
+    private BankGateway() {}
+
+    // ========== Lifecycle ==========
+
+    /**
+     * Open the deposit buffer, replaying anything a previous run left in it,
+     * and start flushing every {@code flushIntervalMillis}.
+     */
+    public static void open(@Nonnull Path path, @Nonnull TransactionJournal.FsyncPolicy policy, long flushIntervalMillis) throws IOException {
+        close();
+
+        synchronized (monitor) {
+            replay(path);
+            buffer = Buffer.open(path, policy);
+            buffer.rewrite(snapshot());
+        }
+
+        long interval = Math.max(1L, flushIntervalMillis);
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "EcotaleCoins-BankFlush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(BankGateway::flush, interval, interval, TimeUnit.MILLISECONDS);
+        flusher = executor;
+    }
+
+    /**
+     * Stop flushing, pay out what is buffered and close the buffer.
+     * Anything the bank refuses stays in the buffer for the next start.
+     */
+    public static void close() {
+        ScheduledExecutorService executor = flusher;
+        flusher = null;
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        flush();
+
+        synchronized (monitor) {
+            if (buffer == null) return;
+            if (pending.size() > 0) {
+                com.ecotale.util.EcoLogger.warn("Bank buffer closed with " + pending.size() + " accounts unpaid - they will be retried on next start");
+            }
+            try {
+                buffer.close();
+            } catch (IOException e) {
+                com.ecotale.util.EcoLogger.warn("Failed to close bank buffer: " + e.getMessage());
+            }
+            buffer = null;
+            pending.clear();
+            pendingOps.clear();
+            inFlight.clear();
+            unsettled.clear();
+        }
+    }
+
+    // ========== Bank Operations ==========
+
+    /**
+     * Balance as the plugin sees it: the bank's balance plus deposits not yet paid in.
+     */
+    public static long getBalance(@Nonnull UUID player) {
+        // Bank first: a flush landing in between can only make this read low
+        long bank = BalanceCache.get(player);
+        synchronized (monitor) {
+            try {
+                return Math.addExact(bank, Math.addExact(pending.get(player, 0L), inFlight.get(player, 0L)));
+            } catch (ArithmeticException e) {
+                return Long.MAX_VALUE;
+            }
+        }
+    }
+
+    /**
+     * Credit a player's bank. Buffered and paid in by the next flush.
+     * @return false if it could neither be buffered nor paid in directly
+     */
+    public static boolean deposit(@Nonnull UUID player, long amount) {
+        if (amount <= 0) return false;
+
+        Buffer current;
+        long position = -1;
+        synchronized (monitor) {
+            current = buffer;
+            if (current != null) {
+                try {
+                    // A total that would overflow is refused before it is buffered
+                    Math.addExact(Math.addExact(pending.get(player, 0L), inFlight.get(player, 0L)), amount);
+                    position = current.append(record(ADD, player, amount, 0L));
+                    pending.add(player, amount);
+                    pendingOps.add(player, 1);
+                } catch (IOException e) {
+                    com.ecotale.util.EcoLogger.warn("Bank buffer write failed, depositing directly: " + e.getMessage());
+                } catch (ArithmeticException e) {
+                    return false;
+                }
+            }
+        }
+
+        if (position < 0) {
+            // Unbuffered: one exact call or nothing, so the caller can safely undo on failure
+            if (!BankUnits.isExact(amount)) {
+                return false;
+            }
+            boolean paid = payIn(player, amount, "TX_BATCH:" + TransactionId.format(TransactionId.next())) == amount;
+            if (paid) {
+                BalanceCache.apply(player, amount);
+            }
+            return paid;
+        }
+        sync(current, position);
+        return true;
+    }
+
+    /**
+     * Debit a player's bank.
+     * @param reference transaction id shown in the bank history if the bank is called
+     * @return false if the balance is too low or the bank refused
+     */
+    public static boolean withdraw(@Nonnull UUID player, long amount, long reference) {
+        if (amount <= 0) return false;
+
+        // Local check first - a withdrawal the bank would refuse costs no call
+        if (getBalance(player) < amount) {
+            return false;
+        }
+
+        Buffer current;
+        long settling;
+        long position = -1;
+        synchronized (monitor) {
+            current = buffer;
+            long buffered = pending.get(player, 0L);
+            if (current != null && buffered >= amount) {
+                // Covered by deposits that haven't reached the bank yet
+                try {
+                    position = current.append(record(ADD, player, -amount, 0L));
+                } catch (IOException e) {
+                    com.ecotale.util.EcoLogger.warn("Bank buffer write failed: " + e.getMessage());
+                    return false;
+                }
+                pending.add(player, -amount);
+                netted.increment();
+            }
+            settling = position >= 0 ? 0L : buffered;
+            if (settling > 0) {
+                try {
+                    position = current.append(record(SETTLING, player, settling, reference));
+                } catch (IOException e) {
+                    com.ecotale.util.EcoLogger.warn("Bank buffer write failed: " + e.getMessage());
+                    return false;
+                }
+                pending.remove(player, 0L);
+                pendingOps.remove(player, 0L);
+                inFlight.add(player, settling);
+            }
+        }
+
+        if (position >= 0) {
+            sync(current, position);
+            if (settling == 0) return true;
+        }
+
+        // The buffered deposits pay for part of it; only the rest comes out of the bank
+        boolean withdrawn;
+        try {
+            withdrawn = EcotaleAPI.withdraw(player, BankUnits.toApi(amount - settling), "TX_WITHDRAW:" + TransactionId.format(reference));
+        } catch (RuntimeException e) {
+            com.ecotale.util.EcoLogger.warn("Bank withdrawal failed for " + player + ": " + e.getMessage());
+            withdrawn = false;
+        }
+
+        synchronized (monitor) {
+            if (withdrawn) {
+                BalanceCache.apply(player, settling - amount);
+            } else {
+                // The bank disagreed with the local balance - reread it next time
+                BalanceCache.invalidate(player);
+            }
+            if (settling > 0) {
+                inFlight.add(player, -settling);
+                if (!withdrawn) {
+                    pending.add(player, settling);
+                }
+                position = appendQuietly(record(withdrawn ? SETTLED : FAILED, player, settling, reference));
+            }
+        }
+        if (settling > 0) {
+            sync(current, position);
+        }
+        return withdrawn;
+    }
+
+    /**
+     * Deposit into Ecotale Core. Totals past what a double holds exactly are paid
+     * in exact pieces.
+     * @return how much was paid in - less than {@code amount} if the bank refused a piece
+     */
+    private static long payIn(UUID player, long amount, String reason) {
+        long paid = 0L;
+        try {
+            while (paid < amount) {
+                long piece = Math.min(amount - paid, BankUnits.MAX_EXACT);
+                if (!EcotaleAPI.deposit(player, BankUnits.toApi(piece), reason)) {
+                    break;
+                }
+                paid += piece;
+            }
+        } catch (RuntimeException e) {
+            com.ecotale.util.EcoLogger.warn("Bank deposit failed for " + player + ": " + e.getMessage());
+        }
+        return paid;
+    }
+
+    // ========== Flushing ==========
+
+    /**
+     * Pay every account's buffered deposits into the bank, one call per account.
+     */
+    public static void flush() {
+        synchronized (flushLock) {
+            long batch = TransactionId.next();
+            List<UUID> players = new ArrayList<>();
+            List<long[]> totals = new ArrayList<>();
+            Buffer current;
+            long position;
+
+            synchronized (monitor) {
+                current = buffer;
+                if (current == null || pending.size() == 0) return;
+
+                pending.forEach((player, amount) -> {
+                    players.add(player);
+                    totals.add(new long[] {amount, pendingOps.get(player, 1L)});
+                });
+                ByteBuffer records = ByteBuffer.allocate(players.size() * RECORD_BYTES);
+                for (int i = 0; i < players.size(); i++) {
+                    records.put(record(SETTLING, players.get(i), totals.get(i)[0], batch));
+                }
+                records.flip();
+                try {
+                    position = current.append(records);
+                } catch (IOException e) {
+                    com.ecotale.util.EcoLogger.warn("Bank buffer write failed, flush skipped: " + e.getMessage());
+                    return;
+                }
+                for (int i = 0; i < players.size(); i++) {
+                    inFlight.add(players.get(i), totals.get(i)[0]);
+                }
+                pending.clear();
+                pendingOps.clear();
+            }
+            sync(current, position);
+
+            // One reason string for the whole batch
+            String reason = "TX_BATCH:" + TransactionId.format(batch);
+            long[] paid = new long[players.size()];
+            for (int i = 0; i < players.size(); i++) {
+                paid[i] = payIn(players.get(i), totals.get(i)[0], reason);
+                if (paid[i] == totals.get(i)[0]) {
+                    accounts.increment();
+                    operations.add(totals.get(i)[1]);
+                    maxBatch.accumulate(totals.get(i)[1]);
+                } else {
+                    failures.increment();
+                }
+            }
+            flushes.increment();
+
+            synchronized (monitor) {
+                ByteBuffer records = ByteBuffer.allocate(players.size() * RECORD_BYTES);
+                for (int i = 0; i < players.size(); i++) {
+                    UUID player = players.get(i);
+                    long amount = totals.get(i)[0];
+                    // Cache and in-flight total change together, so balance reads never count it twice
+                    inFlight.add(player, -amount);
+                    BalanceCache.apply(player, paid[i]);
+                    if (paid[i] < amount) {
+                        // Keep the unpaid part buffered; the next flush retries
+                        pending.add(player, amount - paid[i]);
+                        pendingOps.add(player, totals.get(i)[1]);
+                        com.ecotale.util.EcoLogger.warn("Bank refused " + (amount - paid[i]) + " for " + player + " (" + reason + ") - kept in buffer");
+                    }
+                    records.put(record(paid[i] > 0 ? SETTLED : FAILED, player, paid[i], batch));
+                }
+                records.flip();
+                position = appendQuietly(records);
+
+                if (current.size() > COMPACT_BYTES && inFlight.size() == 0) {
+                    try {
+                        current.rewrite(snapshot());
+                    } catch (IOException e) {
+                        com.ecotale.util.EcoLogger.warn("Bank buffer compaction failed: " + e.getMessage());
+                    }
+                }
+            }
+            sync(current, position);
+        }
+    }
+
+    // ========== Statistics ==========
+
+    /**
+     * Batching counters since startup.
+     * @param flushes    flushes that had anything to pay in
+     * @param accounts   deposit calls made by flushes (one per account per flush)
+     * @param operations deposits paid in by those calls
+     * @param maxBatch   most deposits paid in by a single call
+     * @param netted     withdrawals settled against buffered deposits, without a call
+     * @param failures   flushed deposits the bank refused (retried later)
+     */
+    public record Stats(long flushes, long accounts, long operations, long maxBatch, long netted, long failures) {
+        /**
+         * Deposits per bank call.
+         */
+        public double averageBatch() {
+            return accounts == 0 ? 0 : (double) operations / accounts;
+        }
+    }
+
+    @Nonnull
+    public static Stats getStats() {
+        return new Stats(flushes.sum(), accounts.sum(), operations.sum(), maxBatch.get(), netted.sum(), failures.sum());
+    }
+
+    // ========== Internals ==========
+
+    private static long appendQuietly(ByteBuffer records) {
+        try {
+            return buffer != null ? buffer.append(records) : -1;
+        } catch (IOException e) {
+            com.ecotale.util.EcoLogger.warn("Bank buffer write failed: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private static void sync(Buffer current, long position) {
+        if (current == null || position < 0) return;
+        try {
+            current.sync(position);
+        } catch (IOException e) {
+            com.ecotale.util.EcoLogger.warn("Bank buffer sync failed: " + e.getMessage());
+        }
+    }
+
+    /** One ADD record per buffered account and the parked settlements; caller holds the monitor. */
+    private static ByteBuffer snapshot() {
+        ByteBuffer records = ByteBuffer.allocate((pending.size() + unsettled.size()) * RECORD_BYTES);
+        pending.forEach((player, amount) -> records.put(record(ADD, player, amount, 0L)));
+        for (Map.Entry<Settlement, Long> entry : unsettled.entrySet()) {
+            records.put(record(REVIEW, entry.getKey().player(), entry.getValue(), entry.getKey().batch()));
+        }
+        records.flip();
+        return records;
+    }
+
+    private static ByteBuffer record(byte kind, UUID player, long amount, long batch) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+        record.position(4);
+        record.put(kind);
+        record.putLong(player.getMostSignificantBits());
+        record.putLong(player.getLeastSignificantBits());
+        record.putLong(amount);
+        record.putLong(batch);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, RECORD_BYTES - 4);
+        record.putInt(0, (int) crc.getValue());
+        record.flip();
+        return record;
+    }
+
+    /** Rebuild the buffered totals from the file; caller holds the monitor. */
+    private static void replay(Path path) throws IOException {
+        pending.clear();
+        pendingOps.clear();
+        inFlight.clear();
+        unsettled.clear();
+        if (!Files.exists(path)) return;
+
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(path));
+        CRC32 crc = new CRC32();
+        // Settlements with no outcome yet, by batch and account
+        Map<Settlement, Long> open = new HashMap<>();
+
+        while (data.remaining() >= RECORD_BYTES) {
+            int checksum = data.getInt();
+            crc.reset();
+            crc.update(data.array(), data.position(), RECORD_BYTES - 4);
+            if ((int) crc.getValue() != checksum) {
+                // Torn tail from a crash
+                break;
+            }
+            byte kind = data.get();
+            UUID player = new UUID(data.getLong(), data.getLong());
+            long amount = data.getLong();
+            long batch = data.getLong();
+
+            switch (kind) {
+                case ADD -> pending.add(player, amount);
+                case SETTLING -> open.put(new Settlement(batch, player), amount);
+                case SETTLED -> {
+                    open.remove(new Settlement(batch, player));
+                    pending.add(player, -amount);
+                }
+                case FAILED -> open.remove(new Settlement(batch, player));
+                case REVIEW -> unsettled.put(new Settlement(batch, player), amount);
+                default -> { }
+            }
+        }
+
+        // Whether these reached the bank is unknown; paying them again could pay twice
+        for (Map.Entry<Settlement, Long> entry : open.entrySet()) {
+            pending.add(entry.getKey().player(), -entry.getValue());
+            unsettled.merge(entry.getKey(), entry.getValue(), Long::sum);
+        }
+        for (Map.Entry<Settlement, Long> entry : unsettled.entrySet()) {
+            com.ecotale.util.EcoLogger.warn("Bank buffer: " + entry.getValue() + " for " + entry.getKey().player()
+                + " may already be in the bank - check the bank history for TX_*:" + TransactionId.format(entry.getKey().batch())
+                + "; held for review, not paid again");
+        }
+    }
+
+    private record Settlement(long batch, UUID player) {}
+
+    /**
+     * The buffer file. Appends are positioned by a running byte count, so
+     * {@link #sync(long)} still works after the file is rewritten.
+     */
+    private static final class Buffer {
+        private final Path path;
+        private final TransactionJournal.FsyncPolicy policy;
+        private final Object syncLock = new Object();
+        private FileChannel channel;
+        private long appended;
+        private long fileBytes;
+        private volatile long durable;
+
+        private Buffer(Path path, TransactionJournal.FsyncPolicy policy, FileChannel channel) {
+            this.path = path;
+            this.policy = policy;
+            this.channel = channel;
+        }
+
+        static Buffer open(Path path, TransactionJournal.FsyncPolicy policy) throws IOException {
+            Path parent = path.getParent();
+            if (parent != null && !Files.exists(parent)) {
+                Files.createDirectories(parent);
+            }
+            return new Buffer(path, policy, openChannel(path));
+        }
+
+        private static FileChannel openChannel(Path path) throws IOException {
+            return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+
+        // Appends and rewrites run under the gateway monitor
+
+        long append(ByteBuffer records) throws IOException {
+            while (records.hasRemaining()) {
+                int written = channel.write(records);
+                appended += written;
+                fileBytes += written;
+            }
+            return appended;
+        }
+
+        long size() {
+            return fileBytes;
+        }
+
+        /**
+         * Replace the file with the given records, atomically.
+         */
+        void rewrite(ByteBuffer records) throws IOException {
+            Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                fileBytes = 0;
+                while (records.hasRemaining()) {
+                    fileBytes += out.write(records);
+                }
+                out.force(false);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel.close();
+            channel = openChannel(path);
+            // Everything appended so far is in the rewritten file, already forced
+            durable = appended;
+        }
+
+        /**
+         * Wait until everything up to {@code position} is on disk. Callers that
+         * queue behind a sync usually find it already covered their records.
+         */
+        void sync(long position) throws IOException {
+            if (policy == TransactionJournal.FsyncPolicy.NEVER || durable >= position) return;
+            synchronized (syncLock) {
+                if (durable >= position) return;
+                long target;
+                FileChannel current;
+                synchronized (monitor) {
+                    target = appended;
+                    current = channel;
+                }
+                current.force(false);
+                durable = Math.max(durable, target);
+            }
+        }
+
+        void close() throws IOException {
+            channel.force(false);
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.ecotalecoins.transaction;
+
+import javax.annotation.Nonnull;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.BitSet;
+import java.util.HexFormat;
+import java.util.zip.CRC32;
+
+/**
+ * Issued and redeemed banknotes, with the key that signs them.
+ *
+ * Notes get dense serials from 1, so the redeemed set is a {@link BitSet}:
+ * one bit per note ever issued, an exact answer without touching disk. The
+ * exact set lives in an append-only file of fixed-size records
+ * {@code [kind][serial][txId][value][crc32]}, forced to disk before a call
+ * returns - a note is never handed out, or paid for, before its record is
+ * durable. Replay stops at the first torn record, which is cut off so new
+ * records follow the last intact one.
+ *
+ * A note's signature is an HMAC-SHA256 of its serial and value under a key
+ * kept next to the registry. Notes only redeem on a server holding the key
+ * and the registry they were issued from.
+ *
+ * @author Ecotale
+ * @since 1.2.0
+ */
+public final class BanknoteRegistry implements Closeable {
+
+    private static final byte ISSUED = 1;
+    private static final byte REDEEMED = 2;
+    private static final int RECORD_BYTES = 1 + 8 + 8 + 8 + 4;
+    private static final int KEY_BYTES = 32;
+    // 128 bits of the MAC is plenty for a value no one can query offline
+    private static final int SIGNATURE_BYTES = 16;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    private final Path path;
+    private final FileChannel channel;
+    private final SecretKeySpec key;
+
+    // Guarded by this
+    private final BitSet redeemed;
+    private long lastSerial;
+    private long redeemedCount;
+    private long issuedValue;
+    private long redeemedValue;
+    private boolean closed;
+
+    private BanknoteRegistry(Path path, FileChannel channel, SecretKeySpec key, BitSet redeemed,
+                             long lastSerial, long redeemedCount, long issuedValue, long redeemedValue) {
+        this.path = path;
+        this.channel = channel;
+        this.key = key;
+        this.redeemed = redeemed;
+        this.lastSerial = lastSerial;
+        this.redeemedCount = redeemedCount;
+        this.issuedValue = issuedValue;
+        this.redeemedValue = redeemedValue;
+    }
+
+    /**
+     * Open (or create) the registry, replaying it into memory. The signing key
+     * is read from {@code keyFile}, or generated there on first use.
+     */
+    @Nonnull
+    public static BanknoteRegistry open(@Nonnull Path path, @Nonnull Path keyFile) throws IOException {
+        Path parent = path.getParent();
+        if (parent != null && !Files.exists(parent)) {
+            Files.createDirectories(parent);
+        }
+        SecretKeySpec key = new SecretKeySpec(loadKey(keyFile), MAC_ALGORITHM);
+
+        BitSet redeemed = new BitSet();
+        long lastSerial = 0;
+        long redeemedCount = 0;
+        long issuedValue = 0;
+        long redeemedValue = 0;
+        long intact = 0;
+
+        if (Files.exists(path)) {
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(path));
+            CRC32 crc = new CRC32();
+            while (data.remaining() >= RECORD_BYTES) {
+                int start = data.position();
+                crc.reset();
+                crc.update(data.array(), start, RECORD_BYTES - 4);
+                byte kind = data.get();
+                long serial = data.getLong();
+                data.getLong(); // txId, for audits
+                long value = data.getLong();
+                if ((int) crc.getValue() != data.getInt() || serial <= 0 || serial >= Integer.MAX_VALUE) {
+                    break;
+                }
+                if (kind == ISSUED) {
+                    lastSerial = Math.max(lastSerial, serial);
+                    issuedValue += value;
+                } else if (kind == REDEEMED) {
+                    if (!redeemed.get((int) serial)) {
+                        redeemed.set((int) serial);
+                        redeemedCount++;
+                        redeemedValue += value;
+                    }
+                } else {
+                    break;
+                }
+                intact = data.position();
+            }
+        }
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() > intact) {
+            com.ecotale.util.EcoLogger.warn("Banknote registry " + path + " had a torn tail, dropping " + (channel.size() - intact) + " bytes");
+            channel.truncate(intact);
+        }
+        channel.position(intact);
+
+        return new BanknoteRegistry(path, channel, key, redeemed, lastSerial, redeemedCount, issuedValue, redeemedValue);
+    }
+
+    private static byte[] loadKey(Path keyFile) throws IOException {
+        if (Files.exists(keyFile)) {
+            byte[] key = Files.readAllBytes(keyFile);
+            if (key.length != KEY_BYTES) {
+                throw new IOException("Banknote key " + keyFile + " must be " + KEY_BYTES + " bytes, is " + key.length);
+            }
+            return key;
+        }
+
+        byte[] key = new byte[KEY_BYTES];
+        new SecureRandom().nextBytes(key);
+        Files.write(keyFile, key, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        try {
+            Files.setPosixFilePermissions(keyFile, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system - the data directory's own permissions apply
+        }
+        return key;
+    }
+
+    @Nonnull
+    public Path getPath() {
+        return path;
+    }
+
+    // ========== Notes ==========
+
+    /**
+     * Record a new note and return its serial. Durable when this returns.
+     */
+    public synchronized long issue(long txId, long value) throws IOException {
+        if (lastSerial + 1 >= Integer.MAX_VALUE) {
+            throw new IOException("Banknote serials exhausted");
+        }
+        long serial = lastSerial + 1;
+        write(ISSUED, serial, txId, value);
+        lastSerial = serial;
+        issuedValue += value;
+        return serial;
+    }
+
+    /**
+     * Mark a note as spent. Durable when this returns.
+     * @return false if the note was never issued here or is already spent
+     */
+    public synchronized boolean redeem(long serial, long txId, long value) throws IOException {
+        if (!isIssued(serial) || redeemed.get((int) serial)) {
+            return false;
+        }
+        write(REDEEMED, serial, txId, value);
+        redeemed.set((int) serial);
+        redeemedCount++;
+        redeemedValue += value;
+        return true;
+    }
+
+    public synchronized boolean isIssued(long serial) {
+        return serial > 0 && serial <= lastSerial;
+    }
+
+    public synchronized boolean isRedeemed(long serial) {
+        return isIssued(serial) && redeemed.get((int) serial);
+    }
+
+    private void write(byte kind, long serial, long txId, long value) throws IOException {
+        if (closed) {
+            throw new IOException("Banknote registry is closed");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES);
+        buffer.put(kind);
+        buffer.putLong(serial);
+        buffer.putLong(txId);
+        buffer.putLong(value);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, RECORD_BYTES - 4);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+
+        long start = channel.position();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            // Leave no half record for the next one to follow
+            channel.truncate(start);
+            channel.position(start);
+            throw e;
+        }
+    }
+
+    // ========== Signatures ==========
+
+    /**
+     * Signature binding a serial to its face value.
+     */
+    @Nonnull
+    public String sign(long serial, long value) {
+        return HexFormat.of().formatHex(mac(serial, value));
+    }
+
+    /**
+     * Whether a signature was made by {@link #sign} for exactly this serial and value.
+     */
+    public boolean verify(long serial, long value, String signature) {
+        if (signature == null || signature.length() != SIGNATURE_BYTES * 2) {
+            return false;
+        }
+        byte[] given;
+        try {
+            given = HexFormat.of().parseHex(signature);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return MessageDigest.isEqual(mac(serial, value), given);
+    }
+
+    private byte[] mac(long serial, long value) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+            mac.update("EcotaleCoins-Banknote".getBytes(StandardCharsets.UTF_8));
+            mac.update(ByteBuffer.allocate(16).putLong(serial).putLong(value).array());
+            byte[] full = mac.doFinal();
+            byte[] truncated = new byte[SIGNATURE_BYTES];
+            System.arraycopy(full, 0, truncated, 0, SIGNATURE_BYTES);
+            return truncated;
+        } catch (GeneralSecurityException e) {
+            // HmacSHA256 is required of every JVM
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ========== Statistics ==========
+
+    /**
+     * Counts and values since the registry was created.
+     */
+    public record Stats(long issued, long redeemed, long issuedValue, long redeemedValue) {
+        /** Value of notes issued but not yet redeemed (or voided). */
+        public long outstandingValue() {
+            return issuedValue - redeemedValue;
+        }
+    }
+
+    @Nonnull
+    public synchronized Stats getStats() {
+        return new Stats(lastSerial, redeemedCount, issuedValue, redeemedValue);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        channel.close();
+    }
+}
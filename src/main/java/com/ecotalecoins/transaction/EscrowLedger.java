@@ -0,0 +1,68 @@
+package com.ecotalecoins.transaction;
+
+import com.ecotalecoins.util.UuidLongMap;
+
+import javax.annotation.Nonnull;
+import java.util.UUID;
+
+/**
+ * Value taken from a player's inventory that has not reached its destination yet.
+ *
+ * An exchange takes coins and gives the new ones in the same world-thread stage,
+ * so in the common case nothing is ever held. When the new coins can't be
+ * delivered, the value is held here and the transaction is journaled as
+ * {@code ESCROWED} until it is paid into the player's bank. If that payment
+ * fails or the server stops first, startup recovery pays out every
+ * {@code ESCROWED} transaction from the journal.
+ *
+ * @author Ecotale
+ * @since 1.2.0
+ */
+public final class EscrowLedger {
+
+    private static final UuidLongMap held = new UuidLongMap();
+    private static long total;
+
+    private EscrowLedger() {}
+
+    /**
+     * Hold value for a player.
+     */
+    public static synchronized void hold(@Nonnull UUID player, long value) {
+        if (value <= 0) return;
+        held.add(player, value);
+        total += value;
+    }
+
+    /**
+     * Release held value once it has been paid out.
+     */
+    public static synchronized void release(@Nonnull UUID player, long value) {
+        long current = held.get(player, 0L);
+        long released = Math.min(current, Math.max(0L, value));
+        if (released == 0) return;
+        held.add(player, -released);
+        total -= released;
+    }
+
+    /**
+     * Value currently held for a player.
+     */
+    public static synchronized long getHeld(@Nonnull UUID player) {
+        return held.get(player, 0L);
+    }
+
+    /**
+     * Value currently held for all players.
+     */
+    public static synchronized long getTotalHeld() {
+        return total;
+    }
+
+    /**
+     * Number of players with value held.
+     */
+    public static synchronized int getAccountCount() {
+        return held.size();
+    }
+}
@@ -0,0 +1,168 @@
+package com.ecotalecoins.transaction;
+
+import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Per-player serial executor for coin and bank mutations.
+ *
+ * Each player has a mailbox: submitted operations run one after another, in
+ * submission order, and each completes its own future. Different players'
+ * operations run independently. No thread blocks while a player's operation
+ * waits its turn - the next one is chained onto the previous one's future.
+ *
+ * Operations are built from stages that hop between two executors:
+ * inventory work runs on the player's world thread ({@link #onWorld}) and
+ * EcotaleAPI calls and journal writes run on virtual threads ({@link #onBank}),
+ * so the world tick never waits on the bank.
+ *
+ * The mailbox table only holds players with work in flight.
+ *
+ * @author Ecotale
+ * @since 1.2.0
+ */
+public final class PlayerMailbox {
+
+    private static final ExecutorService bankExecutor =
+        Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("EcotaleCoins-Bank-", 0).factory());
+
+    // Tail of each busy player's chain; removed once the chain drains
+    private static final ConcurrentHashMap<UUID, CompletableFuture<?>> tails = new ConcurrentHashMap<>();
+
+    private static final LongAdder submitted = new LongAdder();
+    private static final LongAdder queued = new LongAdder();
+
+    private PlayerMailbox() {}
+
+    /**
+     * Run an operation after every operation already submitted for this player.
+     * The operation starts its own stages (see {@link #onWorld} and {@link #onBank});
+     * the next operation starts once the returned stage completes, whatever the outcome.
+     */
+    @Nonnull
+    public static <T> CompletableFuture<T> submit(@Nonnull UUID player, @Nonnull Supplier<CompletableFuture<T>> operation) {
+        submitted.increment();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CompletableFuture<Void> turn = new CompletableFuture<>();
+        CompletableFuture<T> next = turn.thenCompose(ignored -> start(operation));
+
+        // Only swap the tail inside compute; the operation itself starts outside it
+        CompletableFuture<?>[] previous = new CompletableFuture<?>[1];
+        tails.compute(player, (id, tail) -> {
+            previous[0] = tail;
+            return next;
+        });
+
+        if (previous[0] == null) {
+            turn.complete(null);
+        } else {
+            queued.increment();
+            previous[0].whenComplete((value, error) -> turn.complete(null));
+        }
+
+        next.whenComplete((value, error) -> {
+            tails.remove(player, next);
+            if (error != null) {
+                result.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error);
+            } else {
+                result.complete(value);
+            }
+        });
+        return result;
+    }
+
+    private static <T> CompletableFuture<T> start(Supplier<CompletableFuture<T>> operation) {
+        try {
+            return operation.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // ========== Stages ==========
+
+    /**
+     * Run a stage on the world thread (inventory reads and writes).
+     */
+    @Nonnull
+    public static <T> CompletableFuture<T> onWorld(@Nonnull World world, @Nonnull Supplier<T> stage) {
+        return CompletableFuture.supplyAsync(stage, world);
+    }
+
+    /**
+     * Run a stage on a virtual thread (EcotaleAPI calls, journal writes).
+     */
+    @Nonnull
+    public static <T> CompletableFuture<T> onBank(@Nonnull Supplier<T> stage) {
+        return CompletableFuture.supplyAsync(stage, bankExecutor);
+    }
+
+    @Nonnull
+    public static Executor bankExecutor() {
+        return bankExecutor;
+    }
+
+    /**
+     * The world a player is in, or null if the player is no longer in one.
+     */
+    @Nullable
+    public static World worldOf(@Nonnull Player player) {
+        Ref<EntityStore> ref = player.getReference();
+        if (ref == null || !ref.isValid()) return null;
+        return ref.getStore().getExternalData().getWorld();
+    }
+
+    // ========== Statistics ==========
+
+    /**
+     * Operations submitted since startup.
+     */
+    public static long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    /**
+     * Operations that had to wait behind another operation for the same player.
+     */
+    public static long getQueuedCount() {
+        return queued.sum();
+    }
+
+    /**
+     * Players with operations in flight.
+     */
+    public static int getBusyPlayers() {
+        return tails.size();
+    }
+
+    /**
+     * Stop accepting bank stages and wait for running ones, so their journal
+     * records are written before the journal closes.
+     * @return false if stages were still running when the wait ran out
+     */
+    public static boolean shutdown(long timeoutMillis) {
+        bankExecutor.shutdown();
+        try {
+            return bankExecutor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
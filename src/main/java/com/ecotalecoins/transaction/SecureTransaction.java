@@ -1,17 +1,30 @@
 package com.ecotalecoins.transaction;
-import com.ecotale.api.EcotaleAPI;
+import com.ecotalecoins.currency.Banknote;
+import com.ecotalecoins.currency.CoinDropper;
 import com.ecotalecoins.currency.CoinManager;
+import com.ecotalecoins.currency.CoinScan;
 import com.ecotalecoins.currency.CoinType;
+import com.ecotalecoins.currency.ContainerPolicy;
 import com.ecotalecoins.currency.InventorySpaceCalculator;
+import com.hypixel.hytale.component.Ref;
 import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.inventory.ItemStack;
+import com.hypixel.hytale.server.core.modules.entity.component.TransformComponent;
+import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import javax.annotation.Nonnull;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 import static com.ecotalecoins.util.TranslationHelper.t;
 
@@ -22,11 +35,19 @@ import static com.ecotalecoins.util.TranslationHelper.t;
  */
 public class SecureTransaction {
     
-    // Player locks to ensure isolation
-    private static final Map<UUID, ReentrantLock> playerLocks = new ConcurrentHashMap<>();
+    // Recent transactions (latest state of each; mirrored to the journal)
+    public static final int DEFAULT_LOG_CAPACITY = 4096;
+    public static final long DEFAULT_LOG_MAX_AGE_MILLIS = 24L * 60 * 60 * 1000;
+    private static volatile TransactionLog transactionLog = new TransactionLog(DEFAULT_LOG_CAPACITY, DEFAULT_LOG_MAX_AGE_MILLIS);
     
-    // Transaction log (in-memory for now, can be persisted)
-    private static final Map<String, TransactionRecord> transactionLog = new ConcurrentHashMap<>();
+    // Unfinished transactions replayed from the journal, resolved by recoverPendingTransactions
+    private static final List<TransactionRecord> pendingRecovery = new ArrayList<>();
+    
+    // Write-ahead journal, null until opened (records then live in memory only)
+    private static volatile TransactionJournal journal;
+    
+    // Issued and redeemed banknotes, null until opened (notes then can't be issued or redeemed)
+    private static volatile BanknoteRegistry banknotes;
     
     /**
      * Result of a secure transaction.
@@ -35,41 +56,44 @@ public class SecureTransaction {
         private final boolean success;
         private final boolean moneySafe;
         private final String message;
-        private final String txHash;
+        private final long txId;
         
-        private TransactionResult(boolean success, boolean moneySafe, String message, String txHash) {
+        private TransactionResult(boolean success, boolean moneySafe, String message, long txId) {
             this.success = success;
             this.moneySafe = moneySafe;
             this.message = message;
-            this.txHash = txHash;
+            this.txId = txId;
         }
         
-        public static TransactionResult success(String message, String txHash) {
-            return new TransactionResult(true, true, message, txHash);
+        public static TransactionResult success(String message, long txId) {
+            return new TransactionResult(true, true, message, txId);
         }
         
-        public static TransactionResult failedButSafe(String message, String txHash) {
-            return new TransactionResult(false, true, message, txHash);
+        public static TransactionResult failedButSafe(String message, long txId) {
+            return new TransactionResult(false, true, message, txId);
         }
         
         public static TransactionResult rejected(String message) {
-            return new TransactionResult(false, true, message, null);
+            return new TransactionResult(false, true, message, 0L);
         }
         
         public boolean isSuccess() { return success; }
         public boolean isMoneySafe() { return moneySafe; }
         public String getMessage() { return message; }
-        public String getTxHash() { return txHash; }
+        /** Transaction ID, or 0 if the transaction was rejected before it started. */
+        public long getTxId() { return txId; }
+        /** Display form of the transaction ID, or null if there is none. */
+        public String getTxHash() { return txId != 0 ? TransactionId.format(txId) : null; }
     }
     
     /**
      * Transaction record for logging and recovery.
      */
     public static class TransactionRecord {
-        public final String txHash;
+        public final long txId;
         public final UUID playerUuid;
-        public final String type; // EXCHANGE, DEPOSIT, WITHDRAW
-        public final String status; // PENDING, COMMITTED, ROLLED_BACK
+        public final String type; // EXCHANGE, DEPOSIT, WITHDRAW, NOTE_ISSUE, NOTE_REDEEM
+        public final String status; // PENDING, ESCROWED, DELIVERING, then COMMITTED, REJECTED, ROLLED_BACK_TO_BANK, ...
         public final CoinType fromCoin;
         public final int fromAmount;
         public final CoinType toCoin;
@@ -78,10 +102,20 @@ public class SecureTransaction {
         public final long timestamp;
         public final String errorMessage;
         
-        public TransactionRecord(String txHash, UUID playerUuid, String type, String status,
+        public TransactionRecord(long txId, UUID playerUuid, String type, String status,
                                 CoinType fromCoin, int fromAmount, CoinType toCoin, long toAmount,
                                 long escrowValue, String errorMessage) {
-            this.txHash = txHash;
+            this(txId, playerUuid, type, status, fromCoin, fromAmount, toCoin, toAmount,
+                escrowValue, errorMessage, System.currentTimeMillis());
+        }
+        
+        /**
+         * Restore a record with its original timestamp (journal replay).
+         */
+        public TransactionRecord(long txId, UUID playerUuid, String type, String status,
+                                CoinType fromCoin, int fromAmount, CoinType toCoin, long toAmount,
+                                long escrowValue, String errorMessage, long timestamp) {
+            this.txId = txId;
             this.playerUuid = playerUuid;
             this.type = type;
             this.status = status;
@@ -90,420 +124,770 @@ public class SecureTransaction {
             this.toCoin = toCoin;
             this.toAmount = toAmount;
             this.escrowValue = escrowValue;
-            this.timestamp = System.currentTimeMillis();
+            this.timestamp = timestamp;
             this.errorMessage = errorMessage;
         }
+        
+        /**
+         * Display form of the transaction ID.
+         */
+        public String getTxHash() {
+            return TransactionId.format(txId);
+        }
+        
+        /**
+         * Whether the transaction reached an outcome (nothing left to recover).
+         */
+        public boolean isFinal() {
+            return !"PENDING".equals(status) && !"ESCROWED".equals(status) && !"DELIVERING".equals(status);
+        }
     }
     
     /**
      * Execute a secure coin exchange.
      * Money is NEVER lost - in worst case, value goes to player's bank.
+     * 
+     * Runs in the player's mailbox. Coins are taken and the new coins given in one
+     * world-thread stage, so a successful exchange never touches the bank. The escrow
+     * intent (DELIVERING, with the value) is journaled before that stage. If the new
+     * coins can't be delivered, the value is held in the {@link EscrowLedger}, journaled
+     * as ESCROWED before the stage ends, and paid into the player's bank. The future
+     * completes on a bank thread.
      */
-    public static TransactionResult executeSecureExchange(
+    @Nonnull
+    public static CompletableFuture<TransactionResult> executeSecureExchange(
             @Nonnull Player player,
             @Nonnull UUID playerUuid,
             @Nonnull CoinType fromType,
             int fromAmount,
             @Nonnull CoinType toType) {
         
-                String txHash = generateTxHash(playerUuid, fromType, fromAmount, toType);
-        
-        // Check for replay attack
-        if (transactionLog.containsKey(txHash)) {
-            return TransactionResult.rejected("Duplicate transaction detected");
-        }
-        
         // Validate same coin type
         if (fromType == toType) {
-            return TransactionResult.rejected("Cannot exchange same coin type");
+            return rejectedFuture("Cannot exchange same coin type");
         }
         
         // Validate amount
         if (fromAmount <= 0) {
-            return TransactionResult.rejected("Invalid amount");
+            return rejectedFuture("Invalid amount");
         }
         
         // Calculate exchange
-        long sourceValue = fromType.getValue() * fromAmount;
+        long sourceValue;
+        try {
+            sourceValue = Math.multiplyExact(fromType.getValue(), (long) fromAmount);
+        } catch (ArithmeticException e) {
+            return rejectedFuture(t("transaction.error.too_large", "Amount too large"));
+        }
         long targetValue = toType.getValue();
         
         if (sourceValue < targetValue) {
-            long needed = (long) Math.ceil((double) targetValue / fromType.getValue());
-            return TransactionResult.rejected("Need at least " + needed + " " + fromType.getDisplayName());
+            long needed = Math.ceilDiv(targetValue, fromType.getValue());
+            return rejectedFuture("Need at least " + needed + " " + fromType.getDisplayName());
         }
         
         long resultAmount = sourceValue / targetValue;
         
         // Overflow protection
         if (resultAmount > 10_000_000) {
-            return TransactionResult.rejected(t("transaction.error.too_large", "Amount too large"));
+            return rejectedFuture(t("transaction.error.too_large", "Amount too large"));
         }
         
-        // Get player lock for isolation
-        ReentrantLock lock = playerLocks.computeIfAbsent(playerUuid, k -> new ReentrantLock());
-        lock.lock();
+        // Calculate actual source used (avoid rounding issues)
+        long usedSourceValue = resultAmount * targetValue;
+        int actualSourceUsed = (int) (usedSourceValue / fromType.getValue());
         
-        try {
-                        Map<CoinType, Integer> breakdown = CoinManager.getBreakdown(player);
-            int available = breakdown.getOrDefault(fromType, 0);
-            
-            if (available < fromAmount) {
-                return TransactionResult.rejected(t("transaction.error.insufficient_funds", 
-                    "Not enough {0} (have {1}, need {2})", fromType.getDisplayName(), available, fromAmount));
+        World world = PlayerMailbox.worldOf(player);
+        if (world == null) {
+            return rejectedFuture(t("transaction.error.no_world", "You are not in a world"));
+        }
+        
+        long txId = TransactionId.next();
+        TransactionRecord record = new TransactionRecord(
+            txId, playerUuid, "EXCHANGE", "PENDING",
+            fromType, actualSourceUsed, toType, resultAmount,
+            usedSourceValue, null
+        );
+        
+        return PlayerMailbox.submit(playerUuid, () -> PlayerMailbox.onBank(() -> {
+            // Log as PENDING before any changes
+            if (!logTransaction(record)) {
+                return TransactionResult.rejected(t("transaction.error.journal", "Transactions are unavailable right now"));
             }
-            
-            // Calculate actual source used (avoid rounding issues)
-            long usedSourceValue = resultAmount * targetValue;
-            int actualSourceUsed = (int) (usedSourceValue / fromType.getValue());
-            
-            // Pre-check space (Intelligent check)
-            InventorySpaceCalculator.SpaceResult space = 
-                InventorySpaceCalculator.canFitSpecific(player, toType, (int) resultAmount);
-            
-            if (!space.canFit()) {
-                return TransactionResult.rejected("Not enough inventory space (need " + 
-                    space.slotsNeeded() + " new slots, have " + space.slotsAvailable() + ")");
+            return null;
+        }).thenCompose(rejected -> rejected != null ? CompletableFuture.completedFuture(rejected) : PlayerMailbox.onWorld(world, () ->
+            // Checks only - nothing changes until the escrow intent is durable
+            checkExchange(CoinScan.of(player), fromType, fromAmount, toType, resultAmount)
+        ).thenCompose(checked -> checked.rejection != null ? CompletableFuture.completedFuture(checked) : PlayerMailbox.onBank(() ->
+            // Escrow intent: from here on the value may leave the inventory
+            advanceTransaction(txId, "DELIVERING") ? Outcome.PROCEED
+                : Outcome.rejected(t("transaction.error.journal", "Transactions are unavailable right now"))
+        )).thenCompose(checked -> (checked.rejection != null ? CompletableFuture.completedFuture(checked) : PlayerMailbox.onWorld(world, () -> {
+            // The inventory may have changed since the checks
+            CoinScan scan = CoinScan.of(player);
+            Outcome recheck = checkExchange(scan, fromType, fromAmount, toType, resultAmount);
+            if (recheck.rejection != null) {
+                return recheck;
             }
             
-                        // Log as PENDING before any changes
-            TransactionRecord record = new TransactionRecord(
-                txHash, playerUuid, "EXCHANGE", "PENDING",
-                fromType, actualSourceUsed, toType, resultAmount,
-                usedSourceValue, null
-            );
-            transactionLog.put(txHash, record);
-            
             // Take coins from player
             boolean taken = CoinManager.takeSpecificCoins(player, fromType, actualSourceUsed);
             if (!taken) {
-                updateTransactionStatus(txHash, "REJECTED", "Failed to take coins");
-                return TransactionResult.rejected(t("transaction.error.take_failed", "Failed to take coins from inventory"));
+                return Outcome.rejected(t("transaction.error.take_failed", "Failed to take coins from inventory"));
             }
             
-            // Deposit to bank as ESCROW (money is now SAFE in bank)
-            EcotaleAPI.deposit(playerUuid, (double) usedSourceValue, "TX_ESCROW:" + txHash);
-            
-            // === PHASE 4: RE-VERIFY (TOCTOU Protection) ===
-            space = InventorySpaceCalculator.canFitSpecific(player, toType, (int) resultAmount);
-            
-            if (!space.canFit()) {
-                // Space was taken during transaction!
-                // Money is SAFE in bank - inform player
-                updateTransactionStatus(txHash, "ROLLED_BACK_TO_BANK", 
-                    "Inventory space changed during transaction - value saved to bank");
-                
-                return TransactionResult.failedButSafe(
-                    t("transaction.error.safe_deposit", 
-                    "No inventory space - your {0} has been deposited to your bank instead", formatValue(usedSourceValue)),
-                    txHash
-                );
+            try {
+                // === PHASE 4: RE-VERIFY (TOCTOU Protection) ===
+                // Taking coins changed the inventory, so the earlier scan is stale
+                InventorySpaceCalculator.SpaceResult space = 
+                    InventorySpaceCalculator.canFitSpecific(scan.rescan(player), toType, (int) resultAmount);
+                if (space.canFit() && CoinManager.giveSpecificCoins(player, toType, (int) resultAmount)) {
+                    return Outcome.PROCEED;
+                }
+            } catch (RuntimeException e) {
+                com.ecotale.util.EcoLogger.warn("TX " + TransactionId.format(txId) + ": giving exchanged coins failed: " + e.getMessage());
             }
             
-                        // Withdraw escrow from bank
-            EcotaleAPI.withdraw(playerUuid, (double) usedSourceValue, "TX_COMPLETE:" + txHash);
-            
-            // Give new coins
-            boolean given = CoinManager.giveSpecificCoins(player, toType, (int) resultAmount);
+            // The value is out of the inventory but not delivered - hold it until the bank has it.
+            // Journaled before this stage ends (a rare path, worth one sync on the world thread),
+            // so a crash from here on can't lose it
+            EscrowLedger.hold(playerUuid, usedSourceValue);
+            if (advanceTransaction(txId, "ESCROWED")) {
+                return Outcome.NOT_DELIVERED;
+            }
+            // Unjournaled escrow would be lost in a crash (recovery reads DELIVERING as
+            // nothing owed), so the player keeps the coins instead
+            EscrowLedger.release(playerUuid, usedSourceValue);
+            returnCoins(player, txId, fromType, actualSourceUsed, usedSourceValue);
+            return Outcome.rejected(t("transaction.error.journal", "Transactions are unavailable right now"));
+        })).thenCompose(outcome -> PlayerMailbox.onBank(() -> {
+            if (outcome.rejection != null) {
+                updateTransactionStatus(txId, "REJECTED", outcome.rejection);
+                return TransactionResult.rejected(outcome.rejection);
+            }
             
-            if (!given) {
-                // This shouldn't happen after re-verify, but handle gracefully
-                // Put value back in bank
-                EcotaleAPI.deposit(playerUuid, (double) usedSourceValue, "TX_FALLBACK:" + txHash);
-                updateTransactionStatus(txHash, "ROLLED_BACK_TO_BANK", 
-                    "Could not give coins - value returned to bank");
+            if (outcome == Outcome.NOT_DELIVERED) {
+                if (!payOutEscrow(playerUuid, txId, usedSourceValue)) {
+                    return TransactionResult.failedButSafe(
+                        t("transaction.error.escrow_held", 
+                        "Could not deliver coins - your {0} is held safely and will be paid into your bank", formatValue(usedSourceValue)),
+                        txId
+                    );
+                }
+                updateTransactionStatus(txId, "ROLLED_BACK_TO_BANK", 
+                    "Could not give coins - value paid into bank");
                 
                 return TransactionResult.failedButSafe(
                     t("transaction.error.delivery_failed", 
                     "Could not deliver coins - your {0} has been deposited to your bank", formatValue(usedSourceValue)),
-                    txHash
+                    txId
                 );
             }
             
-                        updateTransactionStatus(txHash, "COMMITTED", null);
+            updateTransactionStatus(txId, "COMMITTED", null);
             
             return TransactionResult.success(
                 t("transaction.success.exchange", 
                 "Exchanged {0} {1} for {2} {3}", 
                 actualSourceUsed, fromType.getDisplayName(), resultAmount, toType.getDisplayName()),
-                txHash
+                txId
             );
-            
-        } finally {
-            lock.unlock();
+        })))));
+    }
+    
+    /**
+     * Balance and space checks for an exchange, against one scan.
+     */
+    private static Outcome checkExchange(CoinScan scan, CoinType fromType, int fromAmount, CoinType toType, long resultAmount) {
+        int available = (int) ContainerPolicy.get().takeCount(scan, fromType);
+        if (available < fromAmount) {
+            return Outcome.rejected(t("transaction.error.insufficient_funds", 
+                "Not enough {0} (have {1}, need {2})", fromType.getDisplayName(), available, fromAmount));
+        }
+        
+        // Pre-check space (Intelligent check)
+        InventorySpaceCalculator.SpaceResult space = 
+            InventorySpaceCalculator.canFitSpecific(scan, toType, (int) resultAmount);
+        if (!space.canFit()) {
+            return Outcome.rejected("Not enough inventory space (need " + 
+                space.slotsNeeded() + " new slots, have " + space.slotsAvailable() + ")");
+        }
+        return Outcome.PROCEED;
+    }
+    
+    /**
+     * Run a delivery stage on the world thread. Anything but a clean {@code true} -
+     * the world refusing the task, the stage throwing - reads as not delivered, so
+     * the caller's bank stage always runs and can put the money back.
+     */
+    private static CompletableFuture<Boolean> deliver(World world, long txId, Supplier<Boolean> stage) {
+        CompletableFuture<Boolean> delivery;
+        try {
+            delivery = PlayerMailbox.onWorld(world, stage);
+        } catch (RuntimeException e) {
+            delivery = CompletableFuture.failedFuture(e);
         }
+        return delivery.handle((given, error) -> {
+            if (error != null) {
+                com.ecotale.util.EcoLogger.warn("TX " + TransactionId.format(txId) + ": delivery failed: " + error);
+            }
+            return error == null && Boolean.TRUE.equals(given);
+        });
+    }
+    
+    /**
+     * Put undelivered value back in the player's bank. If the bank refuses it, the
+     * value is held in the {@link EscrowLedger} and journaled as ESCROWED, so
+     * recovery pays it in on the next start.
+     * @return false if the value is held in escrow instead of back in the bank
+     */
+    private static boolean returnToBank(UUID playerUuid, long txId, long value, String reason) {
+        if (depositQuietly(playerUuid, txId, value)) {
+            updateTransactionStatus(txId, "ROLLED_BACK_TO_BANK", reason);
+            return true;
+        }
+        holdInEscrow(playerUuid, txId, value, reason + " (bank refused, held in escrow)");
+        return false;
+    }
+    
+    /**
+     * Hold value the bank refused and journal the transaction as ESCROWED for exactly
+     * that value, so the next startup pays it in.
+     */
+    private static void holdInEscrow(UUID playerUuid, long txId, long value, String reason) {
+        EscrowLedger.hold(playerUuid, value);
+        TransactionRecord current = transactionLog.get(txId);
+        if (current != null) {
+            TransactionRecord held = new TransactionRecord(
+                txId, playerUuid, current.type, "ESCROWED",
+                current.fromCoin, current.fromAmount, current.toCoin, current.toAmount,
+                value, reason, current.timestamp
+            );
+            transactionLog.put(held);
+            journalStatus(held);
+        }
+        com.ecotale.util.EcoLogger.warn("TX " + TransactionId.format(txId) + ": " + value + " held in escrow for " + playerUuid + " until the bank accepts it");
+    }
+    
+    /**
+     * Credit the bank, treating an exception like a refusal.
+     */
+    private static boolean depositQuietly(UUID playerUuid, long txId, long value) {
+        try {
+            return BankGateway.deposit(playerUuid, value);
+        } catch (RuntimeException e) {
+            com.ecotale.util.EcoLogger.warn("Bank deposit failed for " + TransactionId.format(txId) + ": " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Put coins taken by a transaction back in the inventory (world thread), or drop
+     * them at the player's feet if they no longer fit.
+     */
+    private static void returnCoins(Player player, long txId, CoinType type, int amount, long value) {
+        try {
+            if (CoinManager.giveSpecificCoins(player, type, amount)) {
+                return;
+            }
+        } catch (RuntimeException e) {
+            com.ecotale.util.EcoLogger.warn("TX " + TransactionId.format(txId) + ": returning coins failed: " + e.getMessage());
+        }
+        Ref<EntityStore> ref = player.getReference();
+        TransformComponent transform = ref != null && ref.isValid()
+            ? ref.getStore().getComponent(ref, TransformComponent.getComponentType()) : null;
+        if (transform == null) {
+            com.ecotale.util.EcoLogger.warn("TX " + TransactionId.format(txId) + ": could not return " + value + " to " + player.getUuid());
+            return;
+        }
+        CoinDropper.dropFromWorldTask(ref.getStore(), transform.getPosition().clone(), value);
+    }
+    
+    /**
+     * Pay value held in escrow into the player's bank.
+     * @return false if the bank refused it; the value stays held for recovery
+     */
+    private static boolean payOutEscrow(UUID playerUuid, long txId, long value) {
+        boolean paid = depositQuietly(playerUuid, txId, value);
+        if (paid) {
+            EscrowLedger.release(playerUuid, value);
+        } else {
+            com.ecotale.util.EcoLogger.warn("TX " + TransactionId.format(txId) + ": " + value + " held in escrow for " + playerUuid + " until the bank accepts it");
+        }
+        return paid;
     }
     
     /**
      * Execute a secure bank withdrawal.
      * Money stays in bank until coins are successfully delivered to inventory.
-     * If delivery fails, money remains safely in bank.
+     * If delivery fails, money is returned to the bank.
+     * 
+     * Runs in the player's mailbox: space is checked on the world thread, the bank is
+     * debited on a virtual thread, then the coins are given on the world thread.
      */
-    public static TransactionResult executeSecureWithdraw(
+    @Nonnull
+    public static CompletableFuture<TransactionResult> executeSecureWithdraw(
             @Nonnull Player player,
             @Nonnull UUID playerUuid,
             long amount) {
         
-                String txHash = generateWithdrawTxHash(playerUuid, amount);
-        
-        // Check for replay attack
-        if (transactionLog.containsKey(txHash)) {
-            return TransactionResult.rejected("Duplicate transaction detected");
-        }
-        
         // Validate amount
         if (amount <= 0) {
-            return TransactionResult.rejected(t("transaction.error.invalid_amount", "Invalid amount"));
+            return rejectedFuture(t("transaction.error.invalid_amount", "Invalid amount"));
         }
         
-        // Get player lock for isolation
-        ReentrantLock lock = playerLocks.computeIfAbsent(playerUuid, k -> new ReentrantLock());
-        lock.lock();
+        World world = PlayerMailbox.worldOf(player);
+        if (world == null) {
+            return rejectedFuture(t("transaction.error.no_world", "You are not in a world"));
+        }
         
-        try {
-                        long bankBalance = com.ecotalecoins.currency.BankManager.getBankBalance(playerUuid);
-            
-            if (bankBalance < amount) {
-                return TransactionResult.rejected(t("transaction.error.bank_insufficient", 
-                    "Insufficient bank balance (have {0}, need {1})", formatValue(bankBalance), formatValue(amount)));
-            }
-            
+        long txId = TransactionId.next();
+        
+        return PlayerMailbox.submit(playerUuid, () -> PlayerMailbox.onWorld(world, () -> {
             // Pre-check space (Intelligent check)
+            // Operations for this player are serialised by the mailbox, so nothing
+            // of ours touches the inventory again before delivery.
             InventorySpaceCalculator.SpaceResult space = 
-                InventorySpaceCalculator.canFitAmount(player, amount);
+                InventorySpaceCalculator.canFitAmount(CoinScan.of(player), amount);
             
             if (!space.canFit()) {
-                return TransactionResult.rejected("Not enough inventory space (need " + 
-                    space.slotsNeeded() + " new slots, have " + space.slotsAvailable() + ")");
+                String message = "Not enough inventory space (need " + 
+                    space.slotsNeeded() + " new slots, have " + space.slotsAvailable() + ")";
+                if (Banknote.isEnabled() && banknotes != null) {
+                    message += t("transaction.hint.banknote", " - a banknote takes one slot: /bank note {0}", amount);
+                }
+                return TransactionResult.rejected(message);
+            }
+            return null;
+        }).thenCompose(rejected -> rejected != null ? CompletableFuture.completedFuture(rejected) : PlayerMailbox.onBank(() -> {
+            long bankBalance = com.ecotalecoins.currency.BankManager.getBankBalance(playerUuid);
+            
+            if (bankBalance < amount) {
+                return TransactionResult.rejected(t("transaction.error.bank_insufficient", 
+                    "Insufficient bank balance (have {0}, need {1})", formatValue(bankBalance), formatValue(amount)));
             }
             
             // === PHASE 3: LOG PENDING ===
             TransactionRecord record = new TransactionRecord(
-                txHash, playerUuid, "WITHDRAW", "PENDING",
+                txId, playerUuid, "WITHDRAW", "PENDING",
                 null, 0, null, amount,
                 amount, null
             );
-            transactionLog.put(txHash, record);
-            
-            // === PHASE 4: RE-VERIFY (TOCTOU Protection) ===
-            // Check space again right before attempting delivery
-            space = InventorySpaceCalculator.canFitAmount(player, amount);
-            
-            if (!space.canFit()) {
-                updateTransactionStatus(txHash, "REJECTED", "Inventory space changed");
-                return TransactionResult.rejected(t("transaction.error.space_changed", "Inventory space changed - please try again"));
+            if (!logTransaction(record)) {
+                return TransactionResult.rejected(t("transaction.error.journal", "Transactions are unavailable right now"));
             }
             
-                        // Withdraw from bank (this is atomic in EcotaleAPI)
-            boolean withdrawn = EcotaleAPI.withdraw(playerUuid, (double) amount, "TX_WITHDRAW:" + txHash);
+            // Withdraw from bank (netted against unflushed deposits where possible)
+            boolean withdrawn = BankGateway.withdraw(playerUuid, amount, txId);
             if (!withdrawn) {
-                updateTransactionStatus(txHash, "REJECTED", "Bank withdrawal failed");
+                updateTransactionStatus(txId, "REJECTED", "Bank withdrawal failed");
                 return TransactionResult.rejected(t("transaction.error.bank_withdraw_failed", "Bank withdrawal failed"));
             }
-            
+            return null;
+        })).thenCompose(rejected -> rejected != null ? CompletableFuture.completedFuture(rejected) : deliver(world, txId, () ->
             // Give coins to player
-            boolean given = CoinManager.giveCoins(player, amount);
-            
+            CoinManager.giveCoins(player, amount)
+        ).thenCompose(given -> PlayerMailbox.onBank(() -> {
             if (!given) {
                 // CRITICAL: Put money back in bank immediately
-                EcotaleAPI.deposit(playerUuid, (double) amount, "TX_ROLLBACK:" + txHash);
-                updateTransactionStatus(txHash, "ROLLED_BACK_TO_BANK", 
-                    "Could not deliver coins - value returned to bank");
+                if (!returnToBank(playerUuid, txId, amount, "Could not deliver coins - value returned to bank")) {
+                    return TransactionResult.failedButSafe(
+                        t("transaction.error.escrow_held", 
+                        "Could not deliver coins - your {0} is held safely and will be paid into your bank", formatValue(amount)),
+                        txId
+                    );
+                }
                 
                 return TransactionResult.failedButSafe(
                     t("transaction.error.delivery_failed", 
                     "Could not deliver coins - your {0} remains safely in your bank", formatValue(amount)),
-                    txHash
+                    txId
                 );
             }
             
-                        updateTransactionStatus(txHash, "COMMITTED", null);
+            updateTransactionStatus(txId, "COMMITTED", null);
             
             return TransactionResult.success(
                 t("transaction.success.withdraw", "Withdrew {0} from bank", formatValue(amount)),
-                txHash
+                txId
             );
-            
-        } finally {
-            lock.unlock();
-        }
-    }
-    
-    /**
-     * Generate unique transaction hash for withdraw operations.
-     */
-    private static String generateWithdrawTxHash(UUID playerUuid, long amount) {
-        String data = playerUuid.toString() + "|WITHDRAW|" + 
-                     System.nanoTime() + "|" +
-                     amount + "|" +
-                     UUID.randomUUID().toString(); // Nonce
-        
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(data.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
-            }
-            return "W" + hexString.toString().substring(0, 15); // W prefix for withdraw
-        } catch (NoSuchAlgorithmException e) {
-            return "W" + UUID.randomUUID().toString().substring(0, 15);
-        }
+        }))));
     }
     
     /**
      * Execute a secure bank deposit.
-     * Tracks balance before/after to deposit exactly what was taken.
-     * If coins are removed mid-transaction, only the actual taken amount is deposited.
+     * Coins are taken all-or-nothing, so exactly the requested amount is deposited.
+     * 
+     * Runs in the player's mailbox: logged on a virtual thread, coins taken on the
+     * world thread, then the bank is credited on a virtual thread.
      */
-    public static TransactionResult executeSecureDeposit(
+    @Nonnull
+    public static CompletableFuture<TransactionResult> executeSecureDeposit(
             @Nonnull Player player,
             @Nonnull UUID playerUuid,
             long requestedAmount) {
         
-                String txHash = generateDepositTxHash(playerUuid, requestedAmount);
-        
-        // Check for replay attack
-        if (transactionLog.containsKey(txHash)) {
-            return TransactionResult.rejected(t("transaction.error.duplicate", "Duplicate transaction detected"));
-        }
-        
         // Validate amount
         if (requestedAmount <= 0) {
-            return TransactionResult.rejected(t("transaction.error.invalid_amount", "Invalid amount"));
+            return rejectedFuture(t("transaction.error.invalid_amount", "Invalid amount"));
         }
         
-        // Get player lock for isolation
-        ReentrantLock lock = playerLocks.computeIfAbsent(playerUuid, k -> new ReentrantLock());
-        lock.lock();
+        World world = PlayerMailbox.worldOf(player);
+        if (world == null) {
+            return rejectedFuture(t("transaction.error.no_world", "You are not in a world"));
+        }
         
-        try {
-                        long balanceBefore = CoinManager.countCoins(player);
+        long txId = TransactionId.next();
+        
+        // Note: Bank limit validation should be done before calling this method
+        
+        // === PHASE 3: LOG PENDING ===
+        TransactionRecord record = new TransactionRecord(
+            txId, playerUuid, "DEPOSIT", "PENDING",
+            null, 0, null, requestedAmount,
+            requestedAmount, null
+        );
+        
+        return PlayerMailbox.submit(playerUuid, () -> PlayerMailbox.onBank(() -> {
+            if (!logTransaction(record)) {
+                return TransactionResult.rejected(t("transaction.error.journal", "Transactions are unavailable right now"));
+            }
+            return null;
+        }).thenCompose(rejected -> rejected != null ? CompletableFuture.completedFuture(rejected) : PlayerMailbox.onWorld(world, () -> {
+            CoinScan scan = CoinScan.of(player);
+            long balanceBefore = ContainerPolicy.get().takeValue(scan);
             
             if (balanceBefore < requestedAmount) {
-                return TransactionResult.rejected(t("transaction.error.insufficient_funds", 
+                return Outcome.rejected(t("transaction.error.insufficient_funds", 
                     "Insufficient pocket balance (have {0}, need {1})", formatValue(balanceBefore), formatValue(requestedAmount)));
             }
             
-            // Note: Bank limit validation should be done before calling this method
+            // Take coins - all or nothing: change is planned with the payment,
+            // so a successful take removed exactly the requested value
+            boolean taken = CoinManager.takeCoins(player, scan, requestedAmount);
+            return taken ? Outcome.PROCEED : Outcome.rejected(t("transaction.error.take_failed", "Could not take coins from inventory"));
+        }).thenCompose(outcome -> PlayerMailbox.onBank(() -> {
+            if (outcome.rejection != null) {
+                updateTransactionStatus(txId, "REJECTED", outcome.rejection);
+                return TransactionResult.rejected(outcome.rejection);
+            }
+            
+            // === PHASE 5: DEPOSIT EXACTLY WHAT WAS TAKEN ===
+            if (!depositQuietly(playerUuid, txId, requestedAmount)) {
+                // The coins are gone from the inventory - hold their value until the bank takes it
+                holdInEscrow(playerUuid, txId, requestedAmount, "Coins taken but the bank refused the deposit");
+                return TransactionResult.failedButSafe(t("transaction.error.deposit_held", 
+                    "The bank refused the deposit - your {0} is held safely and will be paid into your bank", formatValue(requestedAmount)),
+                    txId);
+            }
+            
+            updateTransactionStatus(txId, "COMMITTED", null);
+            return TransactionResult.success(
+                t("transaction.success.deposit", "Deposited {0} to bank", formatValue(requestedAmount)),
+                txId
+            );
+        }))));
+    }
+    
+    /**
+     * Withdraw {@code amount} from the bank as a single banknote.
+     * 
+     * Runs in the player's mailbox like a withdrawal: room for the note is checked on
+     * the world thread, then the note is registered and the bank debited on a virtual
+     * thread, then the note is given on the world thread. If it can't be delivered the
+     * note is voided and the money returned to the bank.
+     */
+    @Nonnull
+    public static CompletableFuture<TransactionResult> executeSecureIssueNote(
+            @Nonnull Player player,
+            @Nonnull UUID playerUuid,
+            long amount) {
+        
+        if (amount <= 0) {
+            return rejectedFuture(t("transaction.error.invalid_amount", "Invalid amount"));
+        }
+        BanknoteRegistry registry = banknotes;
+        if (!Banknote.isEnabled() || registry == null) {
+            return rejectedFuture(t("transaction.error.banknotes_disabled", "The bank does not issue banknotes"));
+        }
+        
+        World world = PlayerMailbox.worldOf(player);
+        if (world == null) {
+            return rejectedFuture(t("transaction.error.no_world", "You are not in a world"));
+        }
+        
+        long txId = TransactionId.next();
+        // The note made on the bank thread, handed to the delivery stage
+        ItemStack[] note = new ItemStack[1];
+        long[] serial = new long[1];
+        
+        return PlayerMailbox.submit(playerUuid, () -> PlayerMailbox.onWorld(world, () ->
+            Banknote.hasRoom(CoinScan.of(player)) ? null
+                : TransactionResult.rejected(t("transaction.error.no_room_note", "You need one free slot for a banknote"))
+        ).thenCompose(rejected -> rejected != null ? CompletableFuture.completedFuture(rejected) : PlayerMailbox.onBank(() -> {
+            long bankBalance = com.ecotalecoins.currency.BankManager.getBankBalance(playerUuid);
+            if (bankBalance < amount) {
+                return TransactionResult.rejected(t("transaction.error.bank_insufficient", 
+                    "Insufficient bank balance (have {0}, need {1})", formatValue(bankBalance), formatValue(amount)));
+            }
             
-            // === PHASE 3: LOG PENDING ===
             TransactionRecord record = new TransactionRecord(
-                txHash, playerUuid, "DEPOSIT", "PENDING",
-                null, 0, null, requestedAmount,
-                requestedAmount, null
+                txId, playerUuid, "NOTE_ISSUE", "PENDING",
+                null, 0, null, amount,
+                amount, null
             );
-            transactionLog.put(txHash, record);
+            if (!logTransaction(record)) {
+                return TransactionResult.rejected(t("transaction.error.journal", "Transactions are unavailable right now"));
+            }
             
-                        // Take coins - this may partially succeed if player manipulates inventory
-            boolean takenFully = CoinManager.takeCoins(player, requestedAmount);
+            // Registered before the bank is touched, so no note exists that the registry doesn't know
+            try {
+                serial[0] = registry.issue(txId, amount);
+            } catch (IOException e) {
+                com.ecotale.util.EcoLogger.warn("Banknote registry write failed for " + TransactionId.format(txId) + ": " + e.getMessage());
+                updateTransactionStatus(txId, "REJECTED", "Banknote registry unavailable");
+                return TransactionResult.rejected(t("transaction.error.journal", "Transactions are unavailable right now"));
+            }
             
-            // Calculate ACTUAL amount taken by comparing balances
-            long balanceAfter = CoinManager.countCoins(player);
-            long actuallyTaken = balanceBefore - balanceAfter;
+            if (!BankGateway.withdraw(playerUuid, amount, txId)) {
+                voidNote(registry, serial[0], txId, amount);
+                updateTransactionStatus(txId, "REJECTED", "Bank withdrawal failed");
+                return TransactionResult.rejected(t("transaction.error.bank_withdraw_failed", "Bank withdrawal failed"));
+            }
+            note[0] = Banknote.create(serial[0], amount, registry.sign(serial[0], amount));
+            return null;
+        })).thenCompose(rejected -> rejected != null ? CompletableFuture.completedFuture(rejected) : deliver(world, txId, () ->
+            Banknote.give(player, CoinScan.of(player), note[0])
+        ).thenCompose(given -> PlayerMailbox.onBank(() -> {
+            if (!given) {
+                // Nobody holds the note - void it and put the money back
+                voidNote(registry, serial[0], txId, amount);
+                if (!returnToBank(playerUuid, txId, amount, "Could not deliver banknote - value returned to bank")) {
+                    return TransactionResult.failedButSafe(
+                        t("transaction.error.escrow_held", 
+                        "Could not deliver coins - your {0} is held safely and will be paid into your bank", formatValue(amount)),
+                        txId
+                    );
+                }
+                
+                return TransactionResult.failedButSafe(
+                    t("transaction.error.note_delivery_failed", 
+                    "Could not deliver the banknote - your {0} remains safely in your bank", formatValue(amount)),
+                    txId
+                );
+            }
             
-            if (actuallyTaken <= 0) {
-                updateTransactionStatus(txHash, "REJECTED", "Could not take any coins");
-                return TransactionResult.rejected(t("transaction.error.take_failed", "Could not take coins from inventory"));
+            updateTransactionStatus(txId, "COMMITTED", null);
+            return TransactionResult.success(
+                t("transaction.success.note_issue", "Withdrew {0} as a banknote", formatValue(amount)),
+                txId
+            );
+        }))));
+    }
+    
+    /**
+     * Redeem every banknote in the player's inventory into their bank, in one transaction.
+     * 
+     * Notes are found and checked on the world and bank threads, logged as PENDING, then
+     * taken on the world thread. Each note is marked spent in the {@link BanknoteRegistry}
+     * before its value is deposited, so a copied note pays out once. Forged and spent
+     * notes are left where they are and reported.
+     */
+    @Nonnull
+    public static CompletableFuture<TransactionResult> executeSecureRedeemNotes(
+            @Nonnull Player player,
+            @Nonnull UUID playerUuid) {
+        
+        BanknoteRegistry registry = banknotes;
+        if (registry == null) {
+            return rejectedFuture(t("transaction.error.banknotes_unavailable", "Banknotes can't be redeemed right now"));
+        }
+        
+        World world = PlayerMailbox.worldOf(player);
+        if (world == null) {
+            return rejectedFuture(t("transaction.error.no_world", "You are not in a world"));
+        }
+        
+        long txId = TransactionId.next();
+        // Notes that passed the checks, and their total
+        List<Banknote.Held> valid = new ArrayList<>();
+        long[] total = new long[1];
+        int[] invalid = new int[1];
+        
+        return PlayerMailbox.submit(playerUuid, () -> PlayerMailbox.onWorld(world, () ->
+            Banknote.find(player)
+        ).thenCompose(found -> PlayerMailbox.onBank(() -> {
+            if (found.isEmpty()) {
+                return TransactionResult.rejected(t("transaction.error.no_notes", "You have no banknotes"));
+            }
+            for (Banknote.Held held : found) {
+                if (held.value() <= 0 || !registry.verify(held.serial(), held.value(), held.signature())
+                        || !registry.isIssued(held.serial()) || registry.isRedeemed(held.serial())
+                        || total[0] > Long.MAX_VALUE - held.value()) {
+                    invalid[0]++;
+                    continue;
+                }
+                valid.add(held);
+                total[0] += held.value();
+            }
+            if (valid.isEmpty()) {
+                return TransactionResult.rejected(t("transaction.error.notes_invalid", 
+                    "{0} banknote(s) already redeemed or not valid here", invalid[0]));
             }
             
-            // === PHASE 5: DEPOSIT EXACTLY WHAT WAS TAKEN ===
-            EcotaleAPI.deposit(playerUuid, (double) actuallyTaken, "TX_DEPOSIT:" + txHash);
+            TransactionRecord record = new TransactionRecord(
+                txId, playerUuid, "NOTE_REDEEM", "PENDING",
+                null, valid.size(), null, total[0],
+                total[0], null
+            );
+            if (!logTransaction(record)) {
+                return TransactionResult.rejected(t("transaction.error.journal", "Transactions are unavailable right now"));
+            }
+            return null;
+        })).thenCompose(rejected -> rejected != null ? CompletableFuture.completedFuture(rejected) : PlayerMailbox.onWorld(world, () ->
+            Banknote.remove(player, valid)
+        ).thenCompose(removed -> PlayerMailbox.onBank(() -> {
+            if (removed.isEmpty()) {
+                updateTransactionStatus(txId, "REJECTED", "Banknotes moved before they were taken");
+                return TransactionResult.rejected(t("transaction.error.notes_moved", "Your banknotes moved - try again"));
+            }
             
-            // Update transaction status
-            if (takenFully && actuallyTaken == requestedAmount) {
-                updateTransactionStatus(txHash, "COMMITTED", null);
-                return TransactionResult.success(
-                    t("transaction.success.deposit", "Deposited {0} to bank", formatValue(actuallyTaken)),
-                    txHash
-                );
-            } else {
-                // Partial deposit - inform player
-                updateTransactionStatus(txHash, "PARTIAL_COMMIT", 
-                    "Requested " + requestedAmount + " but only " + actuallyTaken + " was available");
-                
-                return TransactionResult.success(
-                    t("transaction.success.deposit", "Deposited {0} to bank (partial)", formatValue(actuallyTaken)),
-                    txHash
-                );
+            long paid = 0;
+            int redeemed = 0;
+            try {
+                for (Banknote.Held held : removed) {
+                    // A copy redeemed meanwhile by someone else is worth nothing
+                    if (registry.redeem(held.serial(), txId, held.value())) {
+                        paid += held.value();
+                        redeemed++;
+                    }
+                }
+            } catch (IOException e) {
+                // Notes already marked spent are paid; the rest were taken but not redeemed
+                com.ecotale.util.EcoLogger.warn("Banknote registry write failed for " + TransactionId.format(txId) + ": " + e.getMessage());
+                boolean deposited = paid == 0 || BankGateway.deposit(playerUuid, paid);
+                updateTransactionStatus(txId, "NEEDS_REVIEW", "Registry write failed after " + redeemed + " of "
+                    + removed.size() + " banknotes (" + paid + (deposited ? " paid" : " not paid") + ")");
+                return TransactionResult.rejected(t("transaction.error.notes_review", 
+                    "Some banknotes could not be redeemed - ask an admin to check transaction {0}", TransactionId.format(txId)));
             }
             
-        } finally {
-            lock.unlock();
+            if (paid > 0 && !depositQuietly(playerUuid, txId, paid)) {
+                // The notes are spent - hold their value until the bank takes it
+                holdInEscrow(playerUuid, txId, paid, "Banknotes redeemed but the bank refused the deposit");
+                return TransactionResult.failedButSafe(t("transaction.error.deposit_held", 
+                    "The bank refused the deposit - your {0} is held safely and will be paid into your bank", formatValue(paid)),
+                    txId);
+            }
+            
+            updateTransactionStatus(txId, "COMMITTED", paid != total[0] ? "Paid " + paid + " of " + total[0] : null);
+            return TransactionResult.success(
+                t("transaction.success.note_redeem", "Redeemed {0} banknote(s) for {1}", redeemed, formatValue(paid)),
+                txId
+            );
+        }))));
+    }
+    
+    /**
+     * Mark a note that never reached a player as spent, so it can't be redeemed.
+     */
+    private static void voidNote(BanknoteRegistry registry, long serial, long txId, long value) {
+        try {
+            registry.redeem(serial, txId, value);
+        } catch (IOException e) {
+            // The note item was never handed out, so nothing can redeem it anyway
+            com.ecotale.util.EcoLogger.warn("Could not void banknote #" + serial + " for " + TransactionId.format(txId) + ": " + e.getMessage());
         }
     }
     
+    private static CompletableFuture<TransactionResult> rejectedFuture(String message) {
+        return CompletableFuture.completedFuture(TransactionResult.rejected(message));
+    }
+    
     /**
-     * Generate unique transaction hash for deposit operations.
+     * Result of a transaction's world-thread stage, handed to the next bank stage.
      */
-    private static String generateDepositTxHash(UUID playerUuid, long amount) {
-        String data = playerUuid.toString() + "|DEPOSIT|" + 
-                     System.nanoTime() + "|" +
-                     amount + "|" +
-                     UUID.randomUUID().toString(); // Nonce
+    private static final class Outcome {
+        static final Outcome PROCEED = new Outcome(null);
+        static final Outcome NOT_DELIVERED = new Outcome(null);
         
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(data.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
+        final String rejection;
+        
+        private Outcome(String rejection) {
+            this.rejection = rejection;
+        }
+        
+        static Outcome rejected(String message) {
+            return new Outcome(message);
+        }
+    }
+    
+    /**
+     * Record a new transaction in the log and the journal.
+     * @return false if the journal write failed (the transaction must not proceed)
+     */
+    private static boolean logTransaction(TransactionRecord record) {
+        // Journal first, so a record that failed to persist never enters the log
+        TransactionJournal current = journal;
+        if (current != null) {
+            try {
+                current.append(record);
+            } catch (IOException e) {
+                com.ecotale.util.EcoLogger.warn("Transaction journal write failed for " + record.getTxHash() + ": " + e.getMessage());
+                return false;
             }
-            return "D" + hexString.toString().substring(0, 15); // D prefix for deposit
-        } catch (NoSuchAlgorithmException e) {
-            return "D" + UUID.randomUUID().toString().substring(0, 15);
         }
+        transactionLog.put(record);
+        return true;
     }
     
     /**
-     * Generate unique transaction hash for replay protection.
+     * Move a transaction into a phase where money moves, durably.
+     * @return false if the journal write failed (the phase must not start)
      */
-    private static String generateTxHash(UUID playerUuid, CoinType fromType, int amount, CoinType toType) {
-        String data = playerUuid.toString() + "|" + 
-                     System.nanoTime() + "|" +
-                     fromType.name() + "|" +
-                     amount + "|" +
-                     toType.name() + "|" +
-                     UUID.randomUUID().toString(); // Nonce
-        
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(data.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) hexString.append('0');
-                hexString.append(hex);
+    private static boolean advanceTransaction(long txId, String status) {
+        TransactionRecord updated = transactionLog.updateStatus(txId, status, null);
+        if (updated == null) {
+            return false;
+        }
+        TransactionJournal current = journal;
+        if (current != null) {
+            try {
+                current.append(updated);
+            } catch (IOException e) {
+                com.ecotale.util.EcoLogger.warn("Transaction journal write failed for " + updated.getTxHash() + " -> " + status + ": " + e.getMessage());
+                return false;
             }
-            return hexString.toString().substring(0, 16); // Short hash for readability
-        } catch (NoSuchAlgorithmException e) {
-            // Fallback to simple unique ID
-            return UUID.randomUUID().toString().substring(0, 16);
         }
+        return true;
     }
     
     /**
      * Update transaction status in log.
      */
-    private static void updateTransactionStatus(String txHash, String status, String errorMessage) {
-        TransactionRecord old = transactionLog.get(txHash);
-        if (old != null) {
-            TransactionRecord updated = new TransactionRecord(
-                old.txHash, old.playerUuid, old.type, status,
-                old.fromCoin, old.fromAmount, old.toCoin, old.toAmount,
-                old.escrowValue, errorMessage
-            );
-            transactionLog.put(txHash, updated);
-            
-            // Debug log for transactions
-            com.ecotale.util.EcoLogger.debug("TX " + txHash + " -> " + status + 
-                (errorMessage != null ? " (" + errorMessage + ")" : ""));
+    private static void updateTransactionStatus(long txId, String status, String errorMessage) {
+        TransactionRecord updated = transactionLog.updateStatus(txId, status, errorMessage);
+        if (updated != null) {
+            journalStatus(updated);
         }
     }
     
+    private static void journalStatus(TransactionRecord updated) {
+        // Money has already moved - a failed journal write can only be reported
+        TransactionJournal current = journal;
+        if (current != null) {
+            try {
+                current.append(updated);
+            } catch (IOException e) {
+                com.ecotale.util.EcoLogger.warn("Transaction journal write failed for " + updated.getTxHash() + " -> " + updated.status + ": " + e.getMessage());
+            }
+        }
+        
+        // Debug log for transactions
+        com.ecotale.util.EcoLogger.debug("TX " + updated.getTxHash() + " -> " + updated.status + 
+            (updated.errorMessage != null ? " (" + updated.errorMessage + ")" : ""));
+    }
+    
     /**
      * Format value for display.
      */
@@ -516,31 +900,202 @@ public class SecureTransaction {
         return String.valueOf(value);
     }
     
+    // ========== Log ==========
+    
+    /**
+     * Set how many transactions are kept in memory and for how long.
+     * Entries already logged are carried over, newest first, up to the new capacity.
+     */
+    public static synchronized void configureLog(int capacity, long maxAgeMillis) {
+        TransactionLog old = transactionLog;
+        TransactionLog log = new TransactionLog(capacity, maxAgeMillis);
+        List<TransactionRecord> carried = old.recent(capacity);
+        for (int i = carried.size() - 1; i >= 0; i--) {
+            log.put(carried.get(i));
+        }
+        transactionLog = log;
+    }
+    
     /**
-     * Get transaction log for admin inspection.
+     * Most recent transactions for admin inspection, newest first.
      */
-    public static Map<String, TransactionRecord> getTransactionLog() {
-        return new ConcurrentHashMap<>(transactionLog);
+    @Nonnull
+    public static List<TransactionRecord> getRecentTransactions(int limit) {
+        return transactionLog.recent(limit);
     }
     
     /**
-     * Recovery on startup - find pending transactions.
-     * Called from plugin onEnable.
+     * Look up a transaction still held in the log.
+     */
+    @Nullable
+    public static TransactionRecord getTransaction(long txId) {
+        return transactionLog.get(txId);
+    }
+    
+    // ========== Journal ==========
+    
+    /**
+     * Open the transaction journal, replaying the previous run's records into the log.
+     * The new journal starts with the unfinished and NEEDS_REVIEW records, so they
+     * survive any number of restarts; a copy of the previous journal is kept next
+     * to it with a {@code .prev} suffix.
+     */
+    public static void openJournal(@Nonnull Path path, @Nonnull TransactionJournal.FsyncPolicy policy, long groupCommitMillis) throws IOException {
+        closeJournal();
+        
+        // Latest state of each transaction; the log may not retain old ones,
+        // so unfinished transactions are kept aside until recovery resolves them
+        List<TransactionRecord> records = TransactionJournal.read(path);
+        Map<Long, TransactionRecord> latest = new LinkedHashMap<>();
+        for (TransactionRecord record : records) {
+            latest.remove(record.txId);
+            latest.put(record.txId, record);
+            TransactionId.advancePast(record.txId);
+        }
+        synchronized (pendingRecovery) {
+            pendingRecovery.clear();
+            for (TransactionRecord record : latest.values()) {
+                transactionLog.put(record);
+                if (!record.isFinal()) {
+                    pendingRecovery.add(record);
+                }
+            }
+        }
+        
+        // The new journal starts with every record recovery still has to act on,
+        // or an admin still has to look at; it only replaces the old one once
+        // those are on disk, so a crash at any point leaves one complete journal
+        int carried = 0;
+        if (Files.exists(path)) {
+            Path next = path.resolveSibling(path.getFileName() + ".next");
+            Files.deleteIfExists(next);
+            try (TransactionJournal rotated = TransactionJournal.open(next, TransactionJournal.FsyncPolicy.NEVER, 0)) {
+                for (TransactionRecord record : latest.values()) {
+                    if (!record.isFinal() || "NEEDS_REVIEW".equals(record.status)) {
+                        rotated.append(record);
+                        carried++;
+                    }
+                }
+            }
+            Path previous = path.resolveSibling(path.getFileName() + ".prev");
+            Files.copy(path, previous, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(next, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        
+        journal = TransactionJournal.open(path, policy, groupCommitMillis);
+        com.ecotale.util.EcoLogger.debug("Transaction journal opened (" + policy + "), replayed " + records.size()
+            + " records, carried over " + carried);
+    }
+    
+    // ========== Banknotes ==========
+    
+    /**
+     * Open the banknote registry; {@code keyFile} holds the key notes are signed with.
+     */
+    public static void openBanknotes(@Nonnull Path path, @Nonnull Path keyFile) throws IOException {
+        closeBanknotes();
+        BanknoteRegistry registry = BanknoteRegistry.open(path, keyFile);
+        banknotes = registry;
+        BanknoteRegistry.Stats stats = registry.getStats();
+        com.ecotale.util.EcoLogger.debug("Banknote registry opened, " + stats.issued() + " issued, " + stats.redeemed() + " redeemed");
+    }
+    
+    /**
+     * Close the banknote registry.
+     */
+    public static void closeBanknotes() {
+        BanknoteRegistry current = banknotes;
+        banknotes = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                com.ecotale.util.EcoLogger.warn("Failed to close banknote registry: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Banknote counts and values, or null if the registry isn't open.
+     */
+    @Nullable
+    public static BanknoteRegistry.Stats getBanknoteStats() {
+        BanknoteRegistry current = banknotes;
+        return current != null ? current.getStats() : null;
+    }
+    
+    /**
+     * Flush and close the transaction journal.
+     */
+    public static void closeJournal() {
+        TransactionJournal current = journal;
+        journal = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                com.ecotale.util.EcoLogger.warn("Failed to close transaction journal: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Recovery on startup - resolve transactions the journal shows as unfinished.
+     * Called from plugin setup after {@link #openJournal}.
+     * 
+     * ESCROWED transactions took the player's coins (or bank money) but never delivered;
+     * the value was held in the {@link EscrowLedger}, so it is paid into the bank now.
+     * If the bank refuses it, the record is journaled again and retried next startup.
+     * Anything else may have moved money without recording the outcome and is flagged
+     * for an admin, who can match the transaction hash against the TX_WITHDRAW entries
+     * in the bank history (deposits reach the bank as TX_BATCH totals, see {@link BankGateway}).
      */
     public static void recoverPendingTransactions() {
-        for (TransactionRecord record : transactionLog.values()) {
-            if ("PENDING".equals(record.status)) {
-                // This is a warning - always log
-                com.ecotale.util.EcoLogger.warn("Found pending transaction " + record.txHash);
-                com.ecotale.util.EcoLogger.warn("  Player: " + record.playerUuid);
-                com.ecotale.util.EcoLogger.warn("  Escrow value: " + record.escrowValue);
-                com.ecotale.util.EcoLogger.warn("  Transaction should have been rolled back to bank.");
-                
-                // Mark as recovered - the money is in the bank escrow
-                updateTransactionStatus(record.txHash, "RECOVERED_TO_BANK", 
-                    "Server crashed during transaction - funds safe in bank");
+        List<TransactionRecord> pending;
+        synchronized (pendingRecovery) {
+            pending = new ArrayList<>(pendingRecovery);
+            pendingRecovery.clear();
+        }
+        
+        for (TransactionRecord record : pending) {
+            // This is a warning - always log
+            com.ecotale.util.EcoLogger.warn("Found unfinished transaction " + record.getTxHash() + " (" + record.type + ", " + record.status + ")");
+            com.ecotale.util.EcoLogger.warn("  Player: " + record.playerUuid);
+            com.ecotale.util.EcoLogger.warn("  Escrow value: " + record.escrowValue);
+            
+            if ("ESCROWED".equals(record.status)) {
+                EscrowLedger.hold(record.playerUuid, record.escrowValue);
+                if (payOutEscrow(record.playerUuid, record.txId, record.escrowValue)) {
+                    com.ecotale.util.EcoLogger.warn("  Held value paid into the player's bank.");
+                    resolveRecovered(record, "RECOVERED_TO_BANK", 
+                        "Server stopped before coins were delivered - value paid into bank");
+                } else {
+                    // Carry the record into the new journal so the next startup retries it
+                    journalStatus(record);
+                }
+            } else if ("EXCHANGE".equals(record.type) && "DELIVERING".equals(record.status)) {
+                // Take and give run in one world task, and a failed give is journaled ESCROWED
+                // before that task ends - so the coins were either exchanged or never taken
+                resolveRecovered(record, "RECOVERED_NOTHING_OWED", 
+                    "Server stopped during delivery - no value was held");
+            } else {
+                com.ecotale.util.EcoLogger.warn("  Outcome unknown - check the bank history for TX_*:" + record.getTxHash());
+                resolveRecovered(record, "NEEDS_REVIEW", 
+                    "Server crashed during " + record.status + " phase");
             }
         }
     }
+    
+    private static void resolveRecovered(TransactionRecord record, String status, String errorMessage) {
+        TransactionRecord updated = transactionLog.updateStatus(record.txId, status, errorMessage);
+        if (updated == null) {
+            // Already aged out of the log - the journal still needs the outcome
+            updated = new TransactionRecord(
+                record.txId, record.playerUuid, record.type, status,
+                record.fromCoin, record.fromAmount, record.toCoin, record.toAmount,
+                record.escrowValue, errorMessage, record.timestamp
+            );
+        }
+        journalStatus(updated);
+    }
 }
-
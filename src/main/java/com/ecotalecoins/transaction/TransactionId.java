@@ -0,0 +1,138 @@
+package com.ecotalecoins.transaction;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snowflake-style 64-bit transaction IDs.
+ *
+ * Layout, high to low: 41 bits of milliseconds since {@link #EPOCH_MILLIS},
+ * 10 bits of node id and a 12-bit sequence. IDs are generated lock-free and
+ * never go backwards: if the clock stalls or steps back, or a millisecond's
+ * sequence runs out, the generator borrows the next millisecond instead of
+ * waiting. {@link #advancePast(long)} lets startup skip past IDs already in
+ * the journal, so IDs stay unique across restarts even if the clock moved.
+ *
+ * IDs are compared and looked up as longs; {@link #format(long)} turns one
+ * into a fixed-width string only for display and bank history reasons.
+ *
+ * @author Ecotale
+ * @since 1.2.0
+ */
+public final class TransactionId {
+
+    /** 2026-01-01T00:00:00Z */
+    public static final long EPOCH_MILLIS = 1767225600000L;
+    public static final int MAX_NODE_ID = (1 << 10) - 1;
+
+    private static final int SEQUENCE_BITS = 12;
+    private static final int NODE_BITS = 10;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    // Crockford base32: no I, L, O or U, so IDs read back unambiguously
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int FORMATTED_LENGTH = 13;
+
+    // Last issued (timestamp << SEQUENCE_BITS | sequence), node bits excluded
+    private static final AtomicLong last = new AtomicLong();
+    private static volatile long nodeBits;
+
+    private TransactionId() {
+    }
+
+    /**
+     * Set this server's node id (0 to {@value #MAX_NODE_ID}).
+     * Servers sharing a bank should use different ids.
+     */
+    public static void setNodeId(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        nodeBits = (long) nodeId << SEQUENCE_BITS;
+    }
+
+    /**
+     * Next unique ID. Never returns 0.
+     */
+    public static long next() {
+        long now = (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        while (true) {
+            long prev = last.get();
+            // Same or earlier millisecond: continue the sequence, rolling into the next millisecond
+            long candidate = now > prev ? now : prev + 1;
+            if (last.compareAndSet(prev, candidate)) {
+                return compose(candidate);
+            }
+        }
+    }
+
+    /**
+     * Make sure every later ID is greater than {@code id}.
+     */
+    public static void advancePast(long id) {
+        long floor = decompose(id);
+        while (true) {
+            long prev = last.get();
+            if (prev >= floor || last.compareAndSet(prev, floor)) return;
+        }
+    }
+
+    private static long compose(long timeAndSequence) {
+        long time = timeAndSequence >>> SEQUENCE_BITS;
+        return (time << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | (timeAndSequence & SEQUENCE_MASK);
+    }
+
+    private static long decompose(long id) {
+        return ((id >>> (NODE_BITS + SEQUENCE_BITS)) << SEQUENCE_BITS) | (id & SEQUENCE_MASK);
+    }
+
+    /**
+     * Creation time of an ID, in epoch milliseconds.
+     */
+    public static long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    // ========== Display ==========
+
+    /**
+     * Fixed-width, 13 character form. Sorts in the same order as the IDs.
+     */
+    @Nonnull
+    public static String format(long id) {
+        char[] chars = new char[FORMATTED_LENGTH];
+        long rest = id;
+        for (int i = FORMATTED_LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (rest & 31)];
+            rest >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Parse the form produced by {@link #format(long)} (case-insensitive).
+     * @throws IllegalArgumentException if the text is not a formatted ID
+     */
+    public static long parse(@Nonnull String text) {
+        if (text.length() != FORMATTED_LENGTH) {
+            throw new IllegalArgumentException("Not a transaction id: " + text);
+        }
+        long id = 0;
+        for (int i = 0; i < FORMATTED_LENGTH; i++) {
+            int digit = digit(Character.toUpperCase(text.charAt(i)));
+            // The first character only carries the top 4 bits
+            if (digit < 0 || (i == 0 && digit > 15)) {
+                throw new IllegalArgumentException("Not a transaction id: " + text);
+            }
+            id = (id << 5) | digit;
+        }
+        return id;
+    }
+
+    private static int digit(char c) {
+        for (int i = 0; i < ALPHABET.length; i++) {
+            if (ALPHABET[i] == c) return i;
+        }
+        return -1;
+    }
+}
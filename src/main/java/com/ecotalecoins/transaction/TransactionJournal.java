@@ -0,0 +1,380 @@
+package com.ecotalecoins.transaction;
+
+import com.ecotalecoins.currency.CoinType;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of transaction records.
+ *
+ * Each record is written as {@code [length][crc32][payload]}. On read, a
+ * record with a bad checksum or a short tail ends the replay, so a write torn
+ * by a crash is dropped instead of being misread.
+ *
+ * Durability follows the {@link FsyncPolicy}. With {@code GROUP}, appenders
+ * wait for a background thread that forces the file once for everything
+ * written since its last sync, so concurrent transactions share one fsync.
+ *
+ * @author Ecotale
+ * @since 1.2.0
+ */
+public final class TransactionJournal implements Closeable {
+
+    private static final byte FORMAT_VERSION = 2;
+    private static final int HEADER_BYTES = 8;
+    // Far above any real record; guards against reading garbage lengths
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+    private static final int MAX_STRING_BYTES = 4096;
+
+    /**
+     * When appended records are forced to disk.
+     */
+    public enum FsyncPolicy {
+        /** Force after every record. Safest, one disk sync per phase. */
+        ALWAYS,
+        /** Batch records from concurrent transactions into one sync. */
+        GROUP,
+        /** Leave it to the OS; forced only on close. */
+        NEVER;
+
+        @Nonnull
+        public static FsyncPolicy parse(@Nullable String name, @Nonnull FsyncPolicy fallback) {
+            if (name == null) return fallback;
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return fallback;
+            }
+        }
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final FsyncPolicy policy;
+    private final long groupCommitMillis;
+    private final Object writeLock = new Object();
+
+    // Group commit state, guarded by syncMonitor
+    private final Object syncMonitor = new Object();
+    private final Thread syncThread;
+    private long writtenUpTo;
+    private long durableUpTo;
+    private long syncCount;
+    private IOException syncFailure;
+    private boolean closed;
+
+    private TransactionJournal(Path path, FileChannel channel, FsyncPolicy policy, long groupCommitMillis) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.policy = policy;
+        this.groupCommitMillis = Math.max(0L, groupCommitMillis);
+        this.writtenUpTo = channel.size();
+        this.durableUpTo = writtenUpTo;
+
+        if (policy == FsyncPolicy.GROUP) {
+            this.syncThread = new Thread(this::syncLoop, "EcotaleCoins-JournalSync");
+            this.syncThread.setDaemon(true);
+            this.syncThread.start();
+        } else {
+            this.syncThread = null;
+        }
+    }
+
+    /**
+     * Open (or create) a journal for appending.
+     */
+    @Nonnull
+    public static TransactionJournal open(@Nonnull Path path, @Nonnull FsyncPolicy policy, long groupCommitMillis) throws IOException {
+        Path parent = path.getParent();
+        if (parent != null && !Files.exists(parent)) {
+            Files.createDirectories(parent);
+        }
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return new TransactionJournal(path, channel, policy, groupCommitMillis);
+    }
+
+    @Nonnull
+    public Path getPath() {
+        return path;
+    }
+
+    // ========== Writing ==========
+
+    /**
+     * Append a record. Returns once it is durable according to the fsync policy.
+     */
+    public void append(@Nonnull SecureTransaction.TransactionRecord record) throws IOException {
+        ByteBuffer buffer = encode(record);
+        long end;
+
+        synchronized (writeLock) {
+            if (closed) {
+                throw new IOException("Transaction journal is closed");
+            }
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            end = channel.position();
+        }
+
+        switch (policy) {
+            case ALWAYS -> {
+                channel.force(false);
+                synchronized (syncMonitor) {
+                    syncCount++;
+                }
+            }
+            case GROUP -> awaitDurable(end);
+            case NEVER -> { }
+        }
+    }
+
+    private void awaitDurable(long position) throws IOException {
+        synchronized (syncMonitor) {
+            if (position > writtenUpTo) {
+                writtenUpTo = position;
+                syncMonitor.notifyAll();
+            }
+            while (durableUpTo < position) {
+                if (syncFailure != null) {
+                    throw new IOException("Transaction journal sync failed", syncFailure);
+                }
+                if (closed) {
+                    throw new IOException("Transaction journal closed before sync");
+                }
+                try {
+                    syncMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for journal sync");
+                }
+            }
+        }
+    }
+
+    private void syncLoop() {
+        while (true) {
+            synchronized (syncMonitor) {
+                while (writtenUpTo <= durableUpTo && !closed) {
+                    try {
+                        syncMonitor.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) return;
+            }
+
+            // Give concurrent transactions a moment to join this sync
+            if (groupCommitMillis > 0) {
+                try {
+                    Thread.sleep(groupCommitMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+
+            long target;
+            synchronized (syncMonitor) {
+                target = writtenUpTo;
+            }
+
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                synchronized (syncMonitor) {
+                    syncFailure = e;
+                    syncMonitor.notifyAll();
+                }
+                return;
+            }
+
+            synchronized (syncMonitor) {
+                durableUpTo = Math.max(durableUpTo, target);
+                syncCount++;
+                syncMonitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Number of disk syncs performed so far (for comparing fsync policies).
+     */
+    public long getSyncCount() {
+        synchronized (syncMonitor) {
+            return syncCount;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            if (closed) return;
+            try {
+                channel.force(false);
+            } finally {
+                synchronized (syncMonitor) {
+                    durableUpTo = writtenUpTo = channel.position();
+                    closed = true;
+                    syncMonitor.notifyAll();
+                }
+                channel.close();
+            }
+        }
+        if (syncThread != null) {
+            syncThread.interrupt();
+        }
+    }
+
+    // ========== Reading ==========
+
+    /**
+     * Read every intact record, in append order.
+     * Reading stops at the first truncated or corrupt record.
+     */
+    @Nonnull
+    public static List<SecureTransaction.TransactionRecord> read(@Nonnull Path path) throws IOException {
+        List<SecureTransaction.TransactionRecord> records = new ArrayList<>();
+        if (!Files.exists(path)) {
+            return records;
+        }
+
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(path));
+        CRC32 crc = new CRC32();
+
+        while (data.remaining() >= HEADER_BYTES) {
+            int length = data.getInt();
+            int checksum = data.getInt();
+            if (length <= 0 || length > MAX_RECORD_BYTES || length > data.remaining()) {
+                break;
+            }
+
+            crc.reset();
+            crc.update(data.array(), data.position(), length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            ByteBuffer payload = data.slice(data.position(), length);
+            data.position(data.position() + length);
+            SecureTransaction.TransactionRecord record = decode(payload);
+            if (record == null) {
+                break;
+            }
+            records.add(record);
+        }
+
+        return records;
+    }
+
+    // ========== Encoding ==========
+
+    private static ByteBuffer encode(SecureTransaction.TransactionRecord record) {
+        byte[] type = bytes(record.type);
+        byte[] status = bytes(record.status);
+        byte[] error = bytes(record.errorMessage);
+
+        int length = 1 + 8 + 16 + 8
+            + stringSize(type) + stringSize(status)
+            + 1 + 4 + 1 + 8 + 8
+            + stringSize(error);
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + length);
+        buffer.position(HEADER_BYTES);
+        buffer.put(FORMAT_VERSION);
+        buffer.putLong(record.timestamp);
+        buffer.putLong(record.playerUuid.getMostSignificantBits());
+        buffer.putLong(record.playerUuid.getLeastSignificantBits());
+        buffer.putLong(record.txId);
+        putString(buffer, type);
+        putString(buffer, status);
+        buffer.put(record.fromCoin != null ? (byte) record.fromCoin.ordinal() : -1);
+        buffer.putInt(record.fromAmount);
+        buffer.put(record.toCoin != null ? (byte) record.toCoin.ordinal() : -1);
+        buffer.putLong(record.toAmount);
+        buffer.putLong(record.escrowValue);
+        putString(buffer, error);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_BYTES, length);
+        buffer.putInt(0, length);
+        buffer.putInt(4, (int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    @Nullable
+    private static SecureTransaction.TransactionRecord decode(ByteBuffer payload) {
+        try {
+            if (payload.get() != FORMAT_VERSION) return null;
+            long timestamp = payload.getLong();
+            UUID playerUuid = new UUID(payload.getLong(), payload.getLong());
+            long txId = payload.getLong();
+            String type = getString(payload);
+            String status = getString(payload);
+            CoinType fromCoin = coin(payload.get());
+            int fromAmount = payload.getInt();
+            CoinType toCoin = coin(payload.get());
+            long toAmount = payload.getLong();
+            long escrowValue = payload.getLong();
+            String error = getString(payload);
+
+            return new SecureTransaction.TransactionRecord(
+                txId, playerUuid, type, status,
+                fromCoin, fromAmount, toCoin, toAmount,
+                escrowValue, error, timestamp
+            );
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static CoinType coin(byte ordinal) {
+        CoinType[] types = CoinType.values();
+        return ordinal >= 0 && ordinal < types.length ? types[ordinal] : null;
+    }
+
+    private static byte[] bytes(String s) {
+        if (s == null) return null;
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        return bytes.length > MAX_STRING_BYTES ? Arrays.copyOf(bytes, MAX_STRING_BYTES) : bytes;
+    }
+
+    private static int stringSize(byte[] bytes) {
+        return 2 + (bytes != null ? bytes.length : 0);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putShort((short) -1);
+        } else {
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,269 @@
+package com.ecotalecoins.transaction;
+
+import com.ecotalecoins.currency.CoinType;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Bounded in-memory log of recent transactions.
+ *
+ * Records live in a fixed-capacity ring of primitive columns; the oldest
+ * entry is overwritten when the ring is full or has outlived the retention
+ * age. A separate open-addressing index maps transaction IDs to ring slots
+ * for lookups and status updates, which are done in place.
+ * Memory use is fixed by the capacity, whatever the uptime.
+ *
+ * Reads materialise {@link SecureTransaction.TransactionRecord} snapshots
+ * for only the entries asked for.
+ *
+ * @author Ecotale
+ * @since 1.2.0
+ */
+public final class TransactionLog {
+
+    private static final String[] TYPES = {"EXCHANGE", "DEPOSIT", "WITHDRAW", "NOTE_ISSUE", "NOTE_REDEEM"};
+    private static final String[] STATUSES = {
+        "PENDING", "ESCROWED", "DELIVERING",
+        "COMMITTED", "REJECTED", "ROLLED_BACK_TO_BANK", "RECOVERED_TO_BANK", "NEEDS_REVIEW",
+        "RECOVERED_NOTHING_OWED"
+    };
+    private static final CoinType[] COINS = CoinType.values();
+    private static final int EMPTY = -1;
+
+    private final int capacity;
+    private final long maxAgeMillis;
+
+    // Ring columns, indexed by slot
+    private final long[] txId;
+    private final long[] timestamp;
+    private final long[] playerMost;
+    private final long[] playerLeast;
+    private final byte[] type;
+    private final byte[] status;
+    private final byte[] fromCoin;
+    private final int[] fromAmount;
+    private final byte[] toCoin;
+    private final long[] toAmount;
+    private final long[] escrowValue;
+    private final String[] errorMessage;
+
+    // Oldest entry and number of live entries
+    private int head;
+    private int size;
+
+    // Linear-probing index: txId -> slot
+    private final int[] index;
+    private final int indexMask;
+
+    /**
+     * @param capacity     maximum number of transactions kept
+     * @param maxAgeMillis entries older than this are dropped; 0 keeps them until overwritten
+     */
+    public TransactionLog(int capacity, long maxAgeMillis) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.maxAgeMillis = Math.max(0L, maxAgeMillis);
+
+        this.txId = new long[capacity];
+        this.timestamp = new long[capacity];
+        this.playerMost = new long[capacity];
+        this.playerLeast = new long[capacity];
+        this.type = new byte[capacity];
+        this.status = new byte[capacity];
+        this.fromCoin = new byte[capacity];
+        this.fromAmount = new int[capacity];
+        this.toCoin = new byte[capacity];
+        this.toAmount = new long[capacity];
+        this.escrowValue = new long[capacity];
+        this.errorMessage = new String[capacity];
+
+        // At most half full, so probes stay short
+        int indexSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+        this.index = new int[indexSize];
+        this.indexMask = indexSize - 1;
+        Arrays.fill(index, EMPTY);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // ========== Writes ==========
+
+    /**
+     * Add a transaction, or overwrite it in place if the ID is already present.
+     */
+    public synchronized void put(@Nonnull SecureTransaction.TransactionRecord record) {
+        int slot = find(record.txId);
+        if (slot == EMPTY) {
+            evictExpired(System.currentTimeMillis());
+            if (size == capacity) {
+                evictOldest();
+            }
+            slot = (head + size) % capacity;
+            size++;
+            txId[slot] = record.txId;
+            insertIndex(slot);
+        }
+
+        timestamp[slot] = record.timestamp;
+        playerMost[slot] = record.playerUuid.getMostSignificantBits();
+        playerLeast[slot] = record.playerUuid.getLeastSignificantBits();
+        type[slot] = code(TYPES, record.type);
+        status[slot] = code(STATUSES, record.status);
+        fromCoin[slot] = record.fromCoin != null ? (byte) record.fromCoin.ordinal() : -1;
+        fromAmount[slot] = record.fromAmount;
+        toCoin[slot] = record.toCoin != null ? (byte) record.toCoin.ordinal() : -1;
+        toAmount[slot] = record.toAmount;
+        escrowValue[slot] = record.escrowValue;
+        errorMessage[slot] = record.errorMessage;
+    }
+
+    /**
+     * Change a transaction's status in place.
+     * @return the updated record, or null if the transaction is no longer in the log
+     */
+    @Nullable
+    public synchronized SecureTransaction.TransactionRecord updateStatus(long id, @Nonnull String newStatus,
+                                                                        @Nullable String error) {
+        int slot = find(id);
+        if (slot == EMPTY) return null;
+        status[slot] = code(STATUSES, newStatus);
+        errorMessage[slot] = error;
+        return materialise(slot);
+    }
+
+    // ========== Reads ==========
+
+    public synchronized boolean contains(long id) {
+        return find(id) != EMPTY;
+    }
+
+    @Nullable
+    public synchronized SecureTransaction.TransactionRecord get(long id) {
+        int slot = find(id);
+        return slot != EMPTY ? materialise(slot) : null;
+    }
+
+    /**
+     * Up to {@code limit} most recent transactions, newest first.
+     */
+    @Nonnull
+    public synchronized List<SecureTransaction.TransactionRecord> recent(int limit) {
+        int count = Math.min(Math.max(0, limit), size);
+        List<SecureTransaction.TransactionRecord> result = new ArrayList<>(count);
+        for (int i = size - 1; i >= size - count; i--) {
+            result.add(materialise((head + i) % capacity));
+        }
+        return result;
+    }
+
+    /**
+     * Transactions that have not reached an outcome yet, oldest first.
+     */
+    @Nonnull
+    public synchronized List<SecureTransaction.TransactionRecord> unfinished() {
+        List<SecureTransaction.TransactionRecord> result = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            int slot = (head + i) % capacity;
+            SecureTransaction.TransactionRecord record = materialise(slot);
+            if (!record.isFinal()) {
+                result.add(record);
+            }
+        }
+        return result;
+    }
+
+    private SecureTransaction.TransactionRecord materialise(int slot) {
+        return new SecureTransaction.TransactionRecord(
+            txId[slot], new UUID(playerMost[slot], playerLeast[slot]),
+            TYPES[type[slot]], STATUSES[status[slot]],
+            fromCoin[slot] >= 0 ? COINS[fromCoin[slot]] : null, fromAmount[slot],
+            toCoin[slot] >= 0 ? COINS[toCoin[slot]] : null, toAmount[slot],
+            escrowValue[slot], errorMessage[slot], timestamp[slot]
+        );
+    }
+
+    // ========== Retention ==========
+
+    private void evictExpired(long now) {
+        if (maxAgeMillis == 0) return;
+        while (size > 0 && now - timestamp[head] > maxAgeMillis) {
+            evictOldest();
+        }
+    }
+
+    private void evictOldest() {
+        removeIndex(head);
+        errorMessage[head] = null;
+        head = (head + 1) % capacity;
+        size--;
+    }
+
+    // ========== Index ==========
+
+    private int find(long id) {
+        int i = bucket(id);
+        while (true) {
+            int slot = index[i];
+            if (slot == EMPTY) return EMPTY;
+            if (txId[slot] == id) return slot;
+            i = (i + 1) & indexMask;
+        }
+    }
+
+    private void insertIndex(int slot) {
+        int i = bucket(txId[slot]);
+        while (index[i] != EMPTY) {
+            i = (i + 1) & indexMask;
+        }
+        index[i] = slot;
+    }
+
+    private void removeIndex(int slot) {
+        int i = bucket(txId[slot]);
+        while (index[i] != slot) {
+            i = (i + 1) & indexMask;
+        }
+
+        // Backward-shift deletion keeps probe chains intact without tombstones
+        int hole = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & indexMask;
+            int moved = index[j];
+            if (moved == EMPTY) break;
+            int home = bucket(txId[moved]);
+            boolean between = hole <= j ? (hole < home && home <= j) : (hole < home || home <= j);
+            if (!between) {
+                index[hole] = moved;
+                hole = j;
+            }
+        }
+        index[hole] = EMPTY;
+    }
+
+    private int bucket(long id) {
+        // IDs share their high bits and step by one, so mix before masking
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & indexMask;
+    }
+
+    private static byte code(String[] names, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) return (byte) i;
+        }
+        throw new IllegalArgumentException("Unknown transaction field value: " + name);
+    }
+}
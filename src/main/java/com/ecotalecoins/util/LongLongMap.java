@@ -0,0 +1,176 @@
+package com.ecotalecoins.util;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from long to long, stored in primitive arrays.
+ *
+ * The {@link UuidLongMap} layout with a single-word key: linear probing,
+ * grown at half load, backward-shift deletion.
+ * Not thread-safe - callers synchronise.
+ *
+ * @author Ecotale
+ * @since 1.2.0
+ */
+public final class LongLongMap {
+
+    private long[] keys;
+    private long[] values;
+    private boolean[] used;
+    private int mask;
+    private int size;
+
+    public LongLongMap() {
+        this(16);
+    }
+
+    public LongLongMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 4 - 1);
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean containsKey(long key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Value for the key, or {@code missing} if absent.
+     */
+    public long get(long key, long missing) {
+        int i = find(key);
+        return i >= 0 ? values[i] : missing;
+    }
+
+    public void put(long key, long value) {
+        int i = find(key);
+        if (i >= 0) {
+            values[i] = value;
+        } else {
+            insert(key, value);
+        }
+    }
+
+    /**
+     * Add to the key's value (absent counts as 0). A result of 0 removes the key.
+     * @return the new value
+     */
+    public long add(long key, long delta) {
+        int i = find(key);
+        if (i < 0) {
+            if (delta != 0) insert(key, delta);
+            return delta;
+        }
+        long value = values[i] + delta;
+        if (value == 0) {
+            delete(i);
+        } else {
+            values[i] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Remove the key.
+     * @return the removed value, or {@code missing} if absent
+     */
+    public long remove(long key, long missing) {
+        int i = find(key);
+        if (i < 0) return missing;
+        long value = values[i];
+        delete(i);
+        return value;
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    /**
+     * Visit every entry. The map must not be modified during the visit.
+     */
+    public void forEach(@Nonnull Visitor visitor) {
+        for (int i = 0; i < used.length; i++) {
+            if (used[i]) {
+                visitor.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Visitor {
+        void accept(long key, long value);
+    }
+
+    // ========== Internals ==========
+
+    private int find(long key) {
+        int i = slot(key);
+        while (used[i]) {
+            if (keys[i] == key) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(long key, long value) {
+        if ((size + 1) * 2 > used.length) {
+            grow();
+        }
+        int i = slot(key);
+        while (used[i]) {
+            i = (i + 1) & mask;
+        }
+        used[i] = true;
+        keys[i] = key;
+        values[i] = value;
+        size++;
+    }
+
+    private void delete(int index) {
+        // Backward-shift deletion keeps probe chains intact without tombstones
+        int hole = index;
+        int j = index;
+        while (true) {
+            j = (j + 1) & mask;
+            if (!used[j]) break;
+            int home = slot(keys[j]);
+            boolean between = hole <= j ? (hole < home && home <= j) : (hole < home || home <= j);
+            if (!between) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        used[hole] = false;
+        size--;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(oldUsed.length * 2);
+        size = 0;
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i]) insert(oldKeys[i], oldValues[i]);
+        }
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
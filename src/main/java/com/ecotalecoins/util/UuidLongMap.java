@@ -0,0 +1,186 @@
+package com.ecotalecoins.util;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Open-addressing map from UUID to long, stored in primitive arrays.
+ *
+ * No boxing and no per-entry objects: keys are kept as their two halves.
+ * Linear probing, grown at half load, backward-shift deletion.
+ * Not thread-safe - callers synchronise.
+ *
+ * @author Ecotale
+ * @since 1.2.0
+ */
+public final class UuidLongMap {
+
+    private long[] most;
+    private long[] least;
+    private long[] values;
+    private boolean[] used;
+    private int mask;
+    private int size;
+
+    public UuidLongMap() {
+        this(16);
+    }
+
+    public UuidLongMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 4 - 1);
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        most = new long[capacity];
+        least = new long[capacity];
+        values = new long[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean containsKey(@Nonnull UUID key) {
+        return find(key.getMostSignificantBits(), key.getLeastSignificantBits()) >= 0;
+    }
+
+    /**
+     * Value for the key, or {@code missing} if absent.
+     */
+    public long get(@Nonnull UUID key, long missing) {
+        int i = find(key.getMostSignificantBits(), key.getLeastSignificantBits());
+        return i >= 0 ? values[i] : missing;
+    }
+
+    public void put(@Nonnull UUID key, long value) {
+        long hi = key.getMostSignificantBits();
+        long lo = key.getLeastSignificantBits();
+        int i = find(hi, lo);
+        if (i >= 0) {
+            values[i] = value;
+        } else {
+            insert(hi, lo, value);
+        }
+    }
+
+    /**
+     * Add to the key's value (absent counts as 0). A result of 0 removes the key.
+     * @return the new value
+     */
+    public long add(@Nonnull UUID key, long delta) {
+        long hi = key.getMostSignificantBits();
+        long lo = key.getLeastSignificantBits();
+        int i = find(hi, lo);
+        if (i < 0) {
+            if (delta != 0) insert(hi, lo, delta);
+            return delta;
+        }
+        long value = values[i] + delta;
+        if (value == 0) {
+            delete(i);
+        } else {
+            values[i] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Remove the key.
+     * @return the removed value, or {@code missing} if absent
+     */
+    public long remove(@Nonnull UUID key, long missing) {
+        int i = find(key.getMostSignificantBits(), key.getLeastSignificantBits());
+        if (i < 0) return missing;
+        long value = values[i];
+        delete(i);
+        return value;
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    /**
+     * Visit every entry. The map must not be modified during the visit.
+     */
+    public void forEach(@Nonnull Visitor visitor) {
+        for (int i = 0; i < used.length; i++) {
+            if (used[i]) {
+                visitor.accept(new UUID(most[i], least[i]), values[i]);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Visitor {
+        void accept(UUID key, long value);
+    }
+
+    // ========== Internals ==========
+
+    private int find(long hi, long lo) {
+        int i = slot(hi, lo);
+        while (used[i]) {
+            if (most[i] == hi && least[i] == lo) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(long hi, long lo, long value) {
+        if ((size + 1) * 2 > used.length) {
+            grow();
+        }
+        int i = slot(hi, lo);
+        while (used[i]) {
+            i = (i + 1) & mask;
+        }
+        used[i] = true;
+        most[i] = hi;
+        least[i] = lo;
+        values[i] = value;
+        size++;
+    }
+
+    private void delete(int index) {
+        // Backward-shift deletion keeps probe chains intact without tombstones
+        int hole = index;
+        int j = index;
+        while (true) {
+            j = (j + 1) & mask;
+            if (!used[j]) break;
+            int home = slot(most[j], least[j]);
+            boolean between = hole <= j ? (hole < home && home <= j) : (hole < home || home <= j);
+            if (!between) {
+                most[hole] = most[j];
+                least[hole] = least[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        used[hole] = false;
+        size--;
+    }
+
+    private void grow() {
+        long[] oldMost = most;
+        long[] oldLeast = least;
+        long[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(oldUsed.length * 2);
+        size = 0;
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i]) insert(oldMost[i], oldLeast[i], oldValues[i]);
+        }
+    }
+
+    private int slot(long hi, long lo) {
+        long h = (hi ^ lo) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}